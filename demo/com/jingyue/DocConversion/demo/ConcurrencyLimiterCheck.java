@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.demo;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.transport.ConcurrencyLimiter;
+
+/**
+ * 自适应并发限制的检查程序，可直接运行，不访问网络。
+ * <p>
+ * 向 {@link ConcurrencyLimiter} 报告模拟的请求结果：查询状态、获取结果和提交转换的响应时间分别约为 20、100 和 400 毫秒，
+ * 交替出现。主机没有过载时，限制值不应降低，无论响应时间在 ±10% 内均匀波动，还是像实际网络那样呈对数正态分布
+ * （σ = {@value #SIGMA}，偶尔有数倍于平均值的慢请求）；随后查询状态的响应时间增加到 5 倍，模拟主机排队，限制值应当降低。
+ * 响应时间持续保持在 5 倍时，长期平均逐渐接受新的响应时间，限制值随后恢复，因此检查的是这一阶段达到的最低限制值。
+ * 结果不符合预期时以非零状态退出。
+ *
+ * @version 1.0
+ */
+public class ConcurrencyLimiterCheck {
+
+	private final static String[] PATHS = { "/execute/QueryStatus", "/execute/GetOutputResult", "/execute/Convert" };
+
+	private final static long[] RTTS = { 20, 100, 400 };
+
+	/** 每一轮同时发出的请求数。 */
+	private final static int CONCURRENCY = 12;
+
+	private final static int ROUNDS = 200;
+
+	/** 对数正态分布的响应时间的形状参数。 */
+	private final static double SIGMA = 0.3;
+
+	/**
+	 * 检查主程序。
+	 *
+	 * @param args
+	 *            命令行参数，未使用。
+	 * @throws Exception
+	 *             等待许可被中断。
+	 */
+	public static void main(String[] args) throws Exception {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.forHost("check://mixed-latency");
+		Random random = new Random(1);
+		int failures = 0;
+
+		ConcurrencyLimiter jittery = ConcurrencyLimiter.forHost("check://lognormal-latency");
+
+		run(jittery, random, 1, SIGMA);
+		System.out.println("对数正态分布的响应时间: " + jittery + "，降低次数: " + jittery.getDecreases());
+		if (jittery.getDecreases() != 0 || jittery.getLimit() < ConcurrencyLimiter.DEFAULT_INITIAL_LIMIT) {
+			System.out.println("  错误: 响应时间只是正常波动，限制值却降低了");
+			failures++;
+		}
+
+		run(limiter, random, 1, 0);
+		System.out.println("混合响应时间: " + limiter + "，降低次数: " + limiter.getDecreases());
+		if (limiter.getDecreases() != 0 || limiter.getLimit() < ConcurrencyLimiter.DEFAULT_INITIAL_LIMIT) {
+			System.out.println("  错误: 主机没有过载，限制值却降低了");
+			failures++;
+		}
+
+		int stable = limiter.getLimit();
+
+		int lowest = run(limiter, random, 5, 0);
+
+		System.out.println("查询状态变慢: " + limiter + "，最低限制值: " + lowest + "，降低次数: " + limiter.getDecreases());
+		if (limiter.getDecreases() == 0 || lowest > stable / 2) {
+			System.out.println("  错误: 主机排队，限制值却没有降低");
+			failures++;
+		}
+
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 报告 {@link #ROUNDS} 轮请求，每轮同时发出 {@link #CONCURRENCY} 个请求，依次使用各个路径。
+	 *
+	 * @param slowdown 查询状态的响应时间的倍数。
+	 * @param sigma    响应时间的对数的标准差；为 0 时响应时间在 ±10% 内均匀波动。
+	 * @return 返回期间达到的最低限制值。
+	 */
+	private static int run(ConcurrencyLimiter limiter, Random random, int slowdown, double sigma)
+			throws YuntuException {
+		int sent = 0;
+		int lowest = limiter.getLimit();
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.currentTimeMillis();
+			int acquired = 0;
+
+			while (acquired < CONCURRENCY && limiter.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+				acquired++;
+			}
+			for (int i = 0; i < acquired; i++, sent++) {
+				int kind = sent % PATHS.length;
+				long rtt = RTTS[kind] * (kind == 0 ? slowdown : 1);
+
+				if (sigma > 0) {
+					// 中位数不变，均值约高 σ²/2。
+					rtt = Math.max(1, Math.round(rtt * Math.exp(sigma * random.nextGaussian())));
+				} else {
+					rtt += (long) (rtt * 0.2 * (random.nextDouble() - 0.5));
+				}
+				limiter.onSuccess(PATHS[kind], start, rtt);
+				lowest = Math.min(lowest, limiter.getLimit());
+			}
+		}
+		return lowest;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.demo;
+
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.cloud.apigateway.sdk.utils.Client;
+import com.cloud.apigateway.sdk.utils.Request;
+import com.jingyue.DocConversion.internal.HttpUtils;
+
+/**
+ * 华为云 API 网关请求签名的性能对比程序，可直接运行，不访问网络。
+ * <p>
+ * 分别测量直接调用 SDK <code>Client.sign</code>（每次重新计算签名密钥和规范化内容）与使用
+ * {@link HttpUtils#sign} 缓存签名材料后，签名一个请求的平均耗时。
+ *
+ * @version 1.0
+ */
+public class SigningBenchmark {
+
+	private final static String HOST = "https://server.9yuntu.cn";
+
+	private final static String PATH = "/execute/GetOutputResult";
+
+	private final static int WARMUP = 20000;
+
+	private final static int ITERATIONS = 200000;
+
+	/**
+	 * 性能对比主程序。
+	 *
+	 * @param args
+	 *            命令行参数。可选的第一个参数为测量的请求次数。
+	 * @throws Exception
+	 *             签名异常。
+	 */
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+
+		run(false, WARMUP);
+		run(true, WARMUP);
+
+		long before = run(false, iterations);
+		long after = run(true, iterations);
+
+		System.out.println("请求次数: " + iterations);
+		System.out.println("Client.sign:     " + before / iterations + " ns/请求");
+		System.out.println("HttpUtils.sign:  " + after / iterations + " ns/请求");
+		System.out.printf("提速: %.1fx%n", (double) before / after);
+	}
+
+	private static long run(boolean cached, int iterations) throws Exception {
+		Map<String, String> headers = new HashMap<String, String>();
+		long sink = 0;
+
+		headers.put("Content-Type", "application/json");
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < iterations; i++) {
+			Map<String, String> querys = new HashMap<String, String>();
+
+			querys.put("outputType", "html");
+			querys.put("watermark", "九云图");
+			querys.put("docID", "d" + (i & 1023));
+			querys.put("key", "benchmark-access-key");
+			querys.put("secret", "benchmark-secret-key");
+			sink += (cached ? HttpUtils.sign(HOST, PATH, headers, querys) : sign(HOST, PATH, headers, querys))
+					.getAllHeaders().length;
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		if (sink == 0) {
+			System.out.println();
+		}
+		return elapsed;
+	}
+
+	/**
+	 * 未缓存签名材料时的签名方式：每个请求都构造新的 <code>Request</code> 并调用 <code>Client.sign</code>。
+	 */
+	private static HttpRequestBase sign(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) throws Exception {
+		Request request = new Request();
+
+		request.setKey(querys.remove("key"));
+		request.setSecret(querys.remove("secret"));
+		request.setMethod("GET");
+		request.setUrl(host + path);
+		for (Map.Entry<String, String> query : querys.entrySet()) {
+			request.addQueryStringParam(query.getKey(), URLEncoder.encode(query.getValue(), "utf-8"));
+		}
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			request.addHeader(header.getKey(), header.getValue());
+		}
+		request.setBody("yuntu");
+		return Client.sign(request);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.demo;
+
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.cloud.apigateway.sdk.utils.Client;
+import com.cloud.apigateway.sdk.utils.Request;
+import com.jingyue.DocConversion.internal.HttpUtils;
+
+/**
+ * 华为云 API 网关请求签名的一致性检查程序，可直接运行，不访问网络。
+ * <p>
+ * 对含空格、“+”、“~”、中文和空值的查询参数，以及交替使用的不同请求头，比较 {@link HttpUtils#sign}
+ * 与 SDK <code>Client.sign</code> 生成的请求地址、请求头和签名是否完全一致。有不一致时打印差异并以非零状态退出。
+ *
+ * @version 1.0
+ */
+public class SigningCheck {
+
+	private final static String HOST = "https://server.9yuntu.cn";
+
+	private final static String PATH = "/execute/GetOutputResult";
+
+	private final static String[] VALUES = { "a b", "a+b", "a~b", "九云图 文档.docx", "", "+ ~*%/?&=" };
+
+	/** 两次签名跨越了秒边界时的重试次数。 */
+	private final static int ATTEMPTS = 5;
+
+	/**
+	 * 检查主程序。
+	 *
+	 * @param args
+	 *            命令行参数，未使用。
+	 * @throws Exception
+	 *             签名异常。
+	 */
+	public static void main(String[] args) throws Exception {
+		List<Map<String, String>> headerSets = new ArrayList<Map<String, String>>();
+		Map<String, String> json = new HashMap<String, String>();
+		Map<String, String> text = new HashMap<String, String>();
+		int failures = 0;
+		int checks = 0;
+
+		json.put("Content-Type", "application/json");
+		text.put("Content-Type", "text/plain");
+		text.put("X-Trace", "签名 检查");
+		headerSets.add(json);
+		headerSets.add(text);
+		headerSets.add(null);
+
+		for (int round = 0; round < 2; round++) {
+			for (Map<String, String> headers : headerSets) {
+				for (String value : VALUES) {
+					Map<String, String> querys = new HashMap<String, String>();
+
+					querys.put("docID", "d1");
+					querys.put("watermark", value);
+					querys.put("key", "check-access-key");
+					querys.put("secret", "check-secret-key");
+					checks++;
+					if (!check(headers, querys)) {
+						failures++;
+					}
+				}
+			}
+		}
+
+		System.out.println("检查次数: " + checks + "，不一致: " + failures);
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 用两种方式签名同一个请求并比较结果。
+	 */
+	private static boolean check(Map<String, String> headers, Map<String, String> querys) throws Exception {
+		List<String> expected = null;
+		List<String> actual = null;
+
+		for (int i = 0; i < ATTEMPTS; i++) {
+			expected = describe(sign(HOST, PATH, headers, new HashMap<String, String>(querys)));
+			actual = describe(HttpUtils.sign(HOST, PATH, headers, new HashMap<String, String>(querys)));
+			if (expected.equals(actual)) {
+				return true;
+			}
+		}
+		System.out.println("不一致: headers=" + headers + " querys=" + querys);
+		System.out.println("  Client.sign:    " + expected);
+		System.out.println("  HttpUtils.sign: " + actual);
+		return false;
+	}
+
+	private static List<String> describe(HttpRequestBase request) {
+		List<String> lines = new ArrayList<String>();
+
+		for (Header header : request.getAllHeaders()) {
+			lines.add(header.getName().toLowerCase() + ": " + header.getValue());
+		}
+		Collections.sort(lines);
+		lines.add(0, request.getMethod() + " " + request.getURI().toASCIIString());
+		return lines;
+	}
+
+	/**
+	 * 参照签名方式：与 {@link SigningBenchmark} 相同，每个请求都构造新的 <code>Request</code> 并调用
+	 * <code>Client.sign</code>。
+	 */
+	private static HttpRequestBase sign(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) throws Exception {
+		Request request = new Request();
+
+		request.setKey(querys.remove("key"));
+		request.setSecret(querys.remove("secret"));
+		request.setMethod("GET");
+		request.setUrl(host + path);
+		for (Map.Entry<String, String> query : querys.entrySet()) {
+			request.addQueryStringParam(query.getKey(), URLEncoder.encode(query.getValue(), "utf-8"));
+		}
+		if (headers != null) {
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				request.addHeader(header.getKey(), header.getValue());
+			}
+		}
+		request.setBody("yuntu");
+		return Client.sign(request);
+	}
+}
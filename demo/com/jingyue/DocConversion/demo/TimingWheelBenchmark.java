@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.demo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.jingyue.DocConversion.internal.DaemonThreadFactory;
+import com.jingyue.DocConversion.internal.TimingWheel;
+
+/**
+ * 大量待查询文档下定时器的性能对比程序，可直接运行，不访问网络。
+ * <p>
+ * 分别在 {@link TimingWheel} 和 <code>ScheduledThreadPoolExecutor</code> 中预先放入 10 万、50 万和 100
+ * 万个待执行的任务（模拟等待下一次状态查询的文档），然后测量：
+ * <ul>
+ * <li>在已有任务之间调度一个新任务并取消一个旧任务的平均耗时；</li>
+ * <li>没有任务到期时，定时器线程平均每秒消耗的 CPU 时间。</li>
+ * </ul>
+ * 建议使用 <code>-Xmx2g</code> 运行。
+ *
+ * @version 1.0
+ */
+public class TimingWheelBenchmark {
+
+	private final static int[] PENDING = { 100000, 500000, 1000000 };
+
+	private final static int OPERATIONS = 200000;
+
+	/** 任务的延迟范围，单位为毫秒，使预先放入的任务在测量期间都不会到期。 */
+	private final static long MIN_DELAY = 60 * 1000;
+
+	private final static long MAX_DELAY = 10 * 60 * 1000;
+
+	/** 测量空闲 CPU 时间的时长，超过时间轮转一圈的时间，包含一次从粗粒度轮下移任务。 */
+	private final static long IDLE_MILLIS = 6000;
+
+	private final static Runnable TASK = () -> {
+	};
+
+	/**
+	 * 性能对比主程序。
+	 *
+	 * @param args
+	 *            命令行参数。可选的第一个参数为测量的调度次数。
+	 * @throws Exception
+	 *             测量被中断。
+	 */
+	public static void main(String[] args) throws Exception {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : OPERATIONS;
+
+		System.out.println("待执行任务数    定时器                         调度+取消 (ns)  空闲 CPU (ms/s)");
+		for (int pending : PENDING) {
+			run(new WheelTimer(), pending, operations);
+			run(new ExecutorTimer(), pending, operations);
+		}
+	}
+
+	private static void run(Timer timer, int pending, int operations) throws Exception {
+		Random random = new Random(pending);
+		Object[] handles = new Object[pending];
+
+		for (int i = 0; i < pending; i++) {
+			handles[i] = timer.schedule(delay(random));
+		}
+		// 预热。
+		churn(timer, handles, random, operations / 4);
+
+		long start = System.nanoTime();
+
+		churn(timer, handles, random, operations);
+
+		long elapsed = System.nanoTime() - start;
+
+		// 等待定时器线程处理完新增和取消的任务，再测量空闲时的 CPU 时间。
+		Thread.sleep(200);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long cpu = threads.getThreadCpuTime(timer.getThreadId());
+
+		Thread.sleep(IDLE_MILLIS);
+		cpu = threads.getThreadCpuTime(timer.getThreadId()) - cpu;
+
+		System.out.printf("%-15d %-30s %14d %16.2f%n", pending, timer.getName(), elapsed / operations,
+				cpu / 1e6 * 1000 / IDLE_MILLIS);
+		for (Object handle : handles) {
+			timer.cancel(handle);
+		}
+		timer.shutdown();
+	}
+
+	/**
+	 * 取消随机选出的任务，并调度一个新任务代替它。
+	 */
+	private static void churn(Timer timer, Object[] handles, Random random, int operations) {
+		for (int i = 0; i < operations; i++) {
+			int index = random.nextInt(handles.length);
+
+			timer.cancel(handles[index]);
+			handles[index] = timer.schedule(delay(random));
+		}
+	}
+
+	private static long delay(Random random) {
+		return MIN_DELAY + (long) (random.nextDouble() * (MAX_DELAY - MIN_DELAY));
+	}
+
+	private interface Timer {
+
+		String getName();
+
+		Object schedule(long delayMillis);
+
+		void cancel(Object handle);
+
+		long getThreadId();
+
+		void shutdown();
+	}
+
+	private static class WheelTimer implements Timer {
+
+		private final TimingWheel wheel = new TimingWheel("BenchmarkWheel");
+
+		private volatile long threadId = -1;
+
+		WheelTimer() {
+			wheel.schedule(() -> threadId = Thread.currentThread().getId(), 0, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public String getName() {
+			return "TimingWheel";
+		}
+
+		@Override
+		public Object schedule(long delayMillis) {
+			return wheel.schedule(TASK, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void cancel(Object handle) {
+			((TimingWheel.Timeout) handle).cancel();
+		}
+
+		@Override
+		public long getThreadId() {
+			return threadId;
+		}
+
+		@Override
+		public void shutdown() {
+			wheel.stop();
+		}
+	}
+
+	private static class ExecutorTimer implements Timer {
+
+		private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+				new DaemonThreadFactory("BenchmarkExecutor"));
+
+		private final long threadId;
+
+		ExecutorTimer() throws Exception {
+			executor.setRemoveOnCancelPolicy(true);
+			threadId = executor.submit(() -> Thread.currentThread().getId()).get();
+		}
+
+		@Override
+		public String getName() {
+			return "ScheduledThreadPoolExecutor";
+		}
+
+		@Override
+		public Object schedule(long delayMillis) {
+			return executor.schedule(TASK, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void cancel(Object handle) {
+			((ScheduledFuture<?>) handle).cancel(false);
+		}
+
+		@Override
+		public long getThreadId() {
+			return threadId;
+		}
+
+		@Override
+		public void shutdown() {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.demo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.jingyue.DocConversion.internal.TimingWheel;
+
+/**
+ * {@link TimingWheel} 按时执行任务的检查程序，可直接运行，不访问网络。
+ * <p>
+ * 在两个时间轮中调度延迟各不相同的任务，其中一部分在到期前取消，然后检查：
+ * <ul>
+ * <li>没有取消的任务恰好执行一次，不早于到期时间，最多晚 {@link #MAX_LATENESS} 个刻度；</li>
+ * <li>取消成功的任务从不执行；</li>
+ * <li>所有任务结束后，待执行的任务数为 0。</li>
+ * </ul>
+ * 小时间轮每个刻度 10 毫秒、共 16 个刻度，细粒度轮一圈 160 毫秒、粗粒度轮一圈 2.56 秒，任务的延迟最长 6 秒，因此同时覆盖
+ * 直接放入细粒度轮、从粗粒度轮下移、以及在粗粒度轮中等待多圈后下移的任务。默认大小的时间轮一圈约 5.12 秒，另有一批延迟 5.5 到
+ * 7 秒的任务检查它从粗粒度轮下移的任务。结果不符合预期时打印差异并以非零状态退出。
+ *
+ * @version 1.0
+ */
+public class TimingWheelCheck {
+
+	private final static long TICK_MILLIS = 10;
+
+	/** 允许的最大延迟，单位为刻度：任务在到期后的下一个刻度执行，另留一个刻度给线程调度。 */
+	private final static int MAX_LATENESS = 3;
+
+	private final static int SMALL_TASKS = 3000;
+
+	private final static long SMALL_MAX_DELAY = 6000;
+
+	private final static int DEFAULT_TASKS = 200;
+
+	private final static long DEFAULT_MIN_DELAY = 5500;
+
+	private final static long DEFAULT_MAX_DELAY = 7000;
+
+	/** 取消的任务所占的比例。 */
+	private final static double CANCELLED_RATIO = 0.3;
+
+	/**
+	 * 检查主程序。
+	 *
+	 * @param args
+	 *            命令行参数，未使用。
+	 * @throws Exception
+	 *             等待被中断。
+	 */
+	public static void main(String[] args) throws Exception {
+		Random random = new Random(1);
+		TimingWheel small = new TimingWheel("CheckSmall", TICK_MILLIS, 16);
+		TimingWheel standard = new TimingWheel("CheckDefault");
+		Batch smallBatch = new Batch("小时间轮", small, SMALL_TASKS);
+		Batch standardBatch = new Batch("默认时间轮", standard, DEFAULT_TASKS);
+		List<Task> tasks = new ArrayList<Task>();
+
+		for (int i = 0; i < SMALL_TASKS; i++) {
+			tasks.add(smallBatch.schedule(i, (long) (random.nextDouble() * SMALL_MAX_DELAY), random));
+		}
+		for (int i = 0; i < DEFAULT_TASKS; i++) {
+			tasks.add(standardBatch.schedule(i,
+					DEFAULT_MIN_DELAY + (long) (random.nextDouble() * (DEFAULT_MAX_DELAY - DEFAULT_MIN_DELAY)), random));
+		}
+
+		// 在到期前的随机时刻取消，有的还在粗粒度轮中，有的已经下移。
+		List<Task> cancellations = new ArrayList<Task>();
+
+		for (Task task : tasks) {
+			if (task.cancelAt >= 0) {
+				cancellations.add(task);
+			}
+		}
+		Collections.sort(cancellations, Comparator.comparingLong((Task task) -> task.cancelAt));
+		for (Task task : cancellations) {
+			long wait = task.cancelAt - System.nanoTime();
+
+			if (wait > 0) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			task.cancelled = task.timeout.cancel();
+		}
+
+		TimeUnit.MILLISECONDS.sleep(DEFAULT_MAX_DELAY + 1000 - TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+				- Math.min(smallBatch.start, standardBatch.start)));
+
+		int failures = smallBatch.verify(tasks) + standardBatch.verify(tasks);
+
+		small.stop();
+		standard.stop();
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 同一个时间轮中的一批任务。
+	 */
+	private static class Batch {
+
+		private final String name;
+
+		private final TimingWheel wheel;
+
+		private final AtomicIntegerArray runs;
+
+		private final AtomicLongArray ranAt;
+
+		private final long start = System.nanoTime();
+
+		Batch(String name, TimingWheel wheel, int size) {
+			this.name = name;
+			this.wheel = wheel;
+			this.runs = new AtomicIntegerArray(size);
+			this.ranAt = new AtomicLongArray(size);
+		}
+
+		Task schedule(final int index, long delay, Random random) {
+			long scheduledAt = System.nanoTime();
+			TimingWheel.Timeout timeout = wheel.schedule(() -> {
+				ranAt.set(index, System.nanoTime());
+				runs.incrementAndGet(index);
+			}, delay, TimeUnit.MILLISECONDS);
+			long due = scheduledAt + TimeUnit.MILLISECONDS.toNanos(delay);
+			long cancelAt = random.nextDouble() < CANCELLED_RATIO
+					? scheduledAt + (long) (random.nextDouble() * (due - scheduledAt) * 0.9)
+					: -1;
+
+			return new Task(this, index, due, cancelAt, timeout);
+		}
+
+		/**
+		 * 检查该批任务，返回不符合预期的任务数。
+		 */
+		int verify(List<Task> tasks) {
+			long maxLateness = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS * MAX_LATENESS);
+			long worst = 0;
+			int failures = 0;
+			int ran = 0;
+			int cancelled = 0;
+
+			for (Task task : tasks) {
+				if (task.batch != this) {
+					continue;
+				}
+
+				int count = runs.get(task.index);
+
+				if (task.cancelled) {
+					cancelled++;
+					if (count != 0) {
+						System.out.println(name + ": 不一致: 任务 " + task.index + " 已取消，却执行了 " + count + " 次");
+						failures++;
+					}
+					continue;
+				}
+				if (count != 1) {
+					System.out.println(name + ": 不一致: 任务 " + task.index + " 执行了 " + count + " 次");
+					failures++;
+					continue;
+				}
+				ran++;
+
+				long lateness = ranAt.get(task.index) - task.due;
+
+				worst = Math.max(worst, lateness);
+				if (lateness < 0 || lateness > maxLateness) {
+					System.out.println(name + ": 不一致: 任务 " + task.index + " 的执行时间与到期时间相差 "
+							+ TimeUnit.NANOSECONDS.toMillis(lateness) + " 毫秒");
+					failures++;
+				}
+			}
+			if (wheel.getPending() != 0) {
+				System.out.println(name + ": 不一致: 仍有 " + wheel.getPending() + " 个待执行的任务");
+				failures++;
+			}
+			System.out.println(name + ": 执行 " + ran + " 个，取消 " + cancelled + " 个，最大延迟 "
+					+ TimeUnit.NANOSECONDS.toMillis(worst) + " 毫秒，" + (failures == 0 ? "一致" : "不一致 " + failures + " 个"));
+			return failures;
+		}
+	}
+
+	private static class Task {
+
+		final Batch batch;
+
+		final int index;
+
+		/** 到期时间，即 <code>System.nanoTime()</code> 的值。 */
+		final long due;
+
+		/** 取消的时间；不取消时为 -1。 */
+		final long cancelAt;
+
+		final TimingWheel.Timeout timeout;
+
+		/** 是否取消成功。 */
+		volatile boolean cancelled = false;
+
+		Task(Batch batch, int index, long due, long cancelAt, TimingWheel.Timeout timeout) {
+			this.batch = batch;
+			this.index = index;
+			this.due = due;
+			this.cancelAt = cancelAt;
+			this.timeout = timeout;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import com.jingyue.DocConversion.internal.ZeroCopyUploader;
+
+/**
+ * 零拷贝上传（{@link ZeroCopyUploader}）解析响应的检查程序，可直接运行，只访问本机。
+ * <p>
+ * 在本机启动一个只接受一次连接的 HTTP 服务，读完上传的文件后返回预先写好的响应，检查：
+ * <ul>
+ * <li>服务端收到的文件与上传的文件完全一致；</li>
+ * <li>按 Content-Length、分块传输编码（含分块扩展和尾部字段）或连接关闭确定的响应内容被正确读出，1xx 响应被跳过；</li>
+ * <li>非 200 的状态码、格式错误的长度和不完整的响应内容以 <code>IOException</code> 失败。</li>
+ * </ul>
+ * 结果不符合预期时打印差异并以非零状态退出。
+ *
+ * @version 1.0
+ */
+public class UploadResponseCheck {
+
+	private final static String BODY = "{\"retCode\":0,\"docID\":\"九云图-1\"}";
+
+	private static int failures = 0;
+
+	/**
+	 * 检查主程序。
+	 *
+	 * @param args
+	 *            命令行参数，未使用。
+	 * @throws Exception
+	 *             无法创建临时文件或启动本机服务。
+	 */
+	public static void main(String[] args) throws Exception {
+		byte[] content = new byte[3 * 1024 * 1024 + 17];
+		File file = File.createTempFile("upload-check", ".bin");
+
+		new Random(1).nextBytes(content);
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(content);
+		}
+
+		byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+		String length = "HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n";
+
+		expect("Content-Length", file, content, concat(length, body, ""), BODY);
+		expect("连接关闭", file, content, concat("HTTP/1.1 200 OK\r\nConnection: close\r\n\r\n", body, ""), BODY);
+		expect("100 Continue", file, content,
+				concat("HTTP/1.1 100 Continue\r\n\r\n" + length, body, ""), BODY);
+		expect("分块传输", file, content, chunked(body), BODY);
+		expect("404", file, content, concat("HTTP/1.1 404 Not Found\r\nContent-Length: 9\r\n\r\n", new byte[0],
+				"not found"), null);
+		expect("错误的 Content-Length", file, content,
+				concat("HTTP/1.1 200 OK\r\nContent-Length: 12x\r\n\r\n", body, ""), null);
+		expect("负的 Content-Length", file, content,
+				concat("HTTP/1.1 200 OK\r\nContent-Length: -1\r\n\r\n", body, ""), null);
+		expect("错误的分块大小", file, content,
+				concat("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n", body, "\r\n0\r\n\r\n"), null);
+		expect("不完整的响应内容", file, content,
+				concat("HTTP/1.1 200 OK\r\nContent-Length: " + (body.length + 10) + "\r\n\r\n", body, ""), null);
+
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 上传文件并比较结果。
+	 *
+	 * @param expected 期望的响应内容；为 <code>null</code> 时期望上传以 <code>IOException</code> 失败。
+	 */
+	private static void expect(String name, File file, byte[] content, final byte[] response, String expected)
+			throws Exception {
+
+		final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		final long fileSize = content.length;
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+		Thread thread = new Thread(() -> {
+			try (Socket socket = server.accept()) {
+				readRequest(socket.getInputStream(), received, fileSize);
+				socket.getOutputStream().write(response);
+			} catch (IOException e) {
+				System.out.println(name + ": 本机服务失败: " + e);
+			}
+		});
+
+		thread.start();
+
+		String result;
+
+		try {
+			URL url = new URL("http://127.0.0.1:" + server.getLocalPort() + "/upload/check.bin");
+
+			result = ZeroCopyUploader.put(url, Collections.singletonMap("Content-Type", "application/octet-stream"),
+					file);
+		} catch (IOException e) {
+			result = null;
+			if (expected != null) {
+				System.out.println(name + ": 不一致: 上传失败 " + e);
+				failures++;
+			} else {
+				System.out.println(name + ": 失败（符合预期）: " + e.getMessage());
+			}
+		} finally {
+			thread.join();
+			server.close();
+		}
+		if (result != null) {
+			if (!result.equals(expected)) {
+				System.out.println(name + ": 不一致: 期望 " + expected + "，实际 " + result);
+				failures++;
+			} else {
+				System.out.println(name + ": 一致");
+			}
+		}
+		if (!Arrays.equals(received.toByteArray(), content)) {
+			System.out.println(name + ": 不一致: 服务端收到 " + received.size() + " 字节，文件 " + content.length + " 字节");
+			failures++;
+		}
+	}
+
+	/**
+	 * 读取请求头，再读取指定长度的请求内容。
+	 */
+	private static void readRequest(InputStream in, ByteArrayOutputStream body, long length) throws IOException {
+		int matched = 0;
+
+		// 请求头以空行结束。
+		while (matched < 4) {
+			int b = in.read();
+
+			if (b < 0) {
+				throw new IOException("请求头不完整");
+			}
+			matched = b == "\r\n\r\n".charAt(matched) ? matched + 1 : (b == '\r' ? 1 : 0);
+		}
+
+		byte[] buffer = new byte[8192];
+		long remaining = length;
+		int n;
+
+		while (remaining > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+			body.write(buffer, 0, n);
+			remaining -= n;
+		}
+	}
+
+	/**
+	 * 把响应内容分成几块，使用分块扩展和尾部字段。
+	 */
+	private static byte[] chunked(byte[] body) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int split = body.length / 3;
+
+		write(out, "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+		write(out, Integer.toHexString(split) + "\r\n");
+		out.write(body, 0, split);
+		write(out, "\r\n" + Integer.toHexString(body.length - split).toUpperCase() + ";name=value\r\n");
+		out.write(body, split, body.length - split);
+		write(out, "\r\n0\r\nX-Trailer: ignored\r\n\r\n");
+		return out.toByteArray();
+	}
+
+	private static byte[] concat(String head, byte[] body, String tail) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		write(out, head);
+		out.write(body, 0, body.length);
+		write(out, tail);
+		return out.toByteArray();
+	}
+
+	private static void write(ByteArrayOutputStream out, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+
+		out.write(bytes, 0, bytes.length);
+	}
+}
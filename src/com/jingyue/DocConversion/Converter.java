@@ -21,20 +21,75 @@ package com.jingyue.DocConversion;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.jingyue.DocConversion.common.DeadlineExceededException;
+import com.jingyue.DocConversion.common.WarmUpReport;
 import com.jingyue.DocConversion.common.YuntuDoc;
 import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.AsyncLimiter;
+import com.jingyue.DocConversion.internal.ConversionHistory;
+import com.jingyue.DocConversion.internal.DaemonThreadFactory;
+import com.jingyue.DocConversion.internal.Deadline;
 import com.jingyue.DocConversion.internal.HttpUtils;
+import com.jingyue.DocConversion.internal.LockManager;
+import com.jingyue.DocConversion.internal.MimeTypes;
+import com.jingyue.DocConversion.internal.OSSUtil;
+import com.jingyue.DocConversion.internal.SingleFlight;
+import com.jingyue.DocConversion.internal.StatusPoller;
 import com.jingyue.DocConversion.internal.UploadUtil;
+import com.jingyue.DocConversion.transport.CircuitBreaker;
+import com.jingyue.DocConversion.transport.CircuitBreakingTransport;
+import com.jingyue.DocConversion.transport.CircuitOpenException;
+import com.jingyue.DocConversion.transport.ConcurrencyLimiter;
+import com.jingyue.DocConversion.transport.ConcurrencyLimitingTransport;
+import com.jingyue.DocConversion.transport.LegacyTransport;
+import com.jingyue.DocConversion.transport.RateLimitExceededException;
+import com.jingyue.DocConversion.transport.RateLimitingTransport;
+import com.jingyue.DocConversion.transport.RetryPolicy;
+import com.jingyue.DocConversion.transport.RetryingTransport;
+import com.jingyue.DocConversion.transport.TrafficClass;
+import com.jingyue.DocConversion.transport.YuntuTransport;
 
 /**
  * 调用九云图文档转换服务的入口类。
@@ -99,6 +154,81 @@ public class Converter {
 
 	private int platform = PLATFORM_YUNTU;
 
+	/** 多服务端模式下的接入点；单服务端模式下为 <code>null</code>。 */
+	private List<YuntuEndpoint> endpoints = null;
+
+	/** 多服务端模式下，每个接入点保留提交记录的文档数。 */
+	private final static int MAX_PINNED_DOCS = 65536;
+
+	/** 多服务端模式下，文档 ID 与提交该文档的接入点。 */
+	private final Map<String, YuntuEndpoint> pinnedDocs = Collections
+			.synchronizedMap(new LinkedHashMap<String, YuntuEndpoint>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, YuntuEndpoint> eldest) {
+					return size() > MAX_PINNED_DOCS;
+				}
+			});
+
+	/** 合并并发的相同请求。 */
+	private final SingleFlight<Response> inFlight = new SingleFlight<Response>();
+
+	/** 合并并发的相同异步请求。 */
+	private final SingleFlight<String> inFlightAsync = new SingleFlight<String>();
+
+	/** 默认的传输层，所有使用默认传输层的实例共用一个重试预算。 */
+	private final static YuntuTransport DEFAULT_TRANSPORT = new RetryingTransport(
+			new RateLimitingTransport(new CircuitBreakingTransport(LegacyTransport.INSTANCE)));
+
+	/** 发送请求使用的传输层。 */
+	private YuntuTransport transport = DEFAULT_TRANSPORT;
+
+	/** 轮询文档转换状态的基础间隔，单位为毫秒。之后的间隔按几何级数增长。 */
+	private final static long POLL_INTERVAL = 500;
+
+	/** 提交转换后，自动轮询文档转换状态的次数。 */
+	private final static int MAX_POLLS = 3000;
+
+	/** 默认的异步任务线程池，所有使用默认线程池的实例共用。 */
+	private final static Executor DEFAULT_EXECUTOR = Executors
+			.newCachedThreadPool(new DaemonThreadFactory("YuntuConverter"));
+
+	/**
+	 * 发送状态查询的内部线程池，所有实例共用。状态查询不使用 {@link #executor}：同步方法的调用线程等待查询结果，
+	 * 查询若在有界的 {@link #executor} 中排队，可能永远得不到线程；直接执行的 {@link #executor} 则会在定时器线程中阻塞。
+	 * 线程数与每个主机 {@link TrafficClass#CONTROL} 类请求的最大并发数相同，更多的线程只会等待连接；修改最大并发数时随之调整，
+	 * 见 {@link #resizeStatusExecutor()}。
+	 */
+	private final static ThreadPoolExecutor STATUS_EXECUTOR = new ThreadPoolExecutor(
+			HttpUtils.getMaxConnections(TrafficClass.CONTROL), HttpUtils.getMaxConnections(TrafficClass.CONTROL), 60,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("YuntuStatus"));
+
+	static {
+		STATUS_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	/** 执行异步方法中阻塞步骤的线程池。 */
+	private Executor executor = DEFAULT_EXECUTOR;
+
+	/** 轮询正在转换的文档，查询在 {@link #STATUS_EXECUTOR} 中发送。 */
+	private final StatusPoller poller = new StatusPoller(this::checkStatus, STATUS_EXECUTOR, POLL_INTERVAL);
+
+	/** 上传本地文件时，是否使用零拷贝方式。 */
+	private boolean zeroCopyUpload = false;
+
+	/** 预热时默认预先建立的连接数。 */
+	public final static int DEFAULT_WARM_UP_CONNECTIONS = 2;
+
+	/** 预热时反复执行请求构建和响应解析代码的次数。 */
+	private final static int WARM_UP_ITERATIONS = 2000;
+
+	/** 预热时解析的样例响应。 */
+	private final static String WARM_UP_RESPONSE = "{\"retCode\":0,\"docID\":\"warmUp\",\"docStatusPage\":\"http://server.9yuntu.cn/\"}";
+
+	private final static String WARM_UP_OUTPUT = "[\"http://server.9yuntu.cn/1.html\",\"http://server.9yuntu.cn/2.html\"]";
+
 	/**
 	 * 构建九云图文档转换类。该方法未提供授权码，转换的结果会带有 “九云图 DEMO” 水印。
 	 */
@@ -138,10 +268,28 @@ public class Converter {
 		this.host = this.getHost(platform);
 	}
 
+	/**
+	 * 构建多服务端模式的九云图文档转换类。提交转换的请求（包括上传的文档）发往延迟最低且健康的接入点，接入点出现故障时自动切换到其他接入点；
+	 * 已提交的文档始终在提交时的接入点上查询状态和获取结果，不切换接入点。没有提交记录的文档在第一个接入点上查询。
+	 * 
+	 * @param endpoints 接入点，至少一个。
+	 * @see YuntuEndpoint
+	 */
+	public Converter(List<YuntuEndpoint> endpoints) {
+		setEndpoints(endpoints);
+	}
+
 	private String getHost(int platform) {
+		this.platform = platform;
+		return getPlatformHost(platform);
+	}
+
+	/**
+	 * 返回指定云平台的服务器网址。
+	 */
+	static String getPlatformHost(int platform) {
 		String host;
 
-		this.platform = platform;
 		switch (platform) {
 		case PLATFORM_ALI:
 			host = "http://api.9yuntu.cn";
@@ -163,6 +311,323 @@ public class Converter {
 		return host;
 	}
 
+	/**
+	 * 设置每个服务器主机允许的最大并发请求数，对所有 <code>Converter</code> 实例和所有流量类别生效。不同主机的请求互不影响，可并行执行。
+	 * 
+	 * @param max 每个主机的最大并发请求数。
+	 * @see #setMaxConnections(TrafficClass, int)
+	 */
+	public static void setMaxConnectionsPerHost(int max) {
+		HttpUtils.setMaxConnectionsPerHost(max);
+		resizeStatusExecutor();
+	}
+
+	/**
+	 * 获取每个服务器主机允许的最大并发转换控制请求数。
+	 * 
+	 * @return 每个主机的最大并发转换控制请求数。
+	 * @see #getMaxConnections(TrafficClass)
+	 */
+	public static int getMaxConnectionsPerHost() {
+		return HttpUtils.getMaxConnectionsPerHost();
+	}
+
+	/**
+	 * 设置一个流量类别在每个服务器主机上允许的最大并发请求数，也就是该类别在每个主机上的连接池大小，对所有 <code>Converter</code>
+	 * 实例生效。上传、转换控制和获取结果的请求分别使用独立的连接池和并发限制，一个类别的请求排队时不会占用其他类别的连接。
+	 * 
+	 * @param trafficClass 流量类别。
+	 * @param max          每个主机的最大并发请求数，默认值见 {@link TrafficClass}。
+	 */
+	public static void setMaxConnections(TrafficClass trafficClass, int max) {
+		HttpUtils.setMaxConnections(trafficClass, max);
+		if (trafficClass == TrafficClass.CONTROL) {
+			resizeStatusExecutor();
+		}
+	}
+
+	/**
+	 * 把 {@link #STATUS_EXECUTOR} 的线程数调整为当前的 {@link TrafficClass#CONTROL} 类最大并发数。
+	 */
+	private static void resizeStatusExecutor() {
+		synchronized (STATUS_EXECUTOR) {
+			int threads = HttpUtils.getMaxConnections(TrafficClass.CONTROL);
+
+			// The core size must never exceed the maximum: grow the maximum first, shrink it last.
+			if (threads > STATUS_EXECUTOR.getMaximumPoolSize()) {
+				STATUS_EXECUTOR.setMaximumPoolSize(threads);
+				STATUS_EXECUTOR.setCorePoolSize(threads);
+			} else {
+				STATUS_EXECUTOR.setCorePoolSize(threads);
+				STATUS_EXECUTOR.setMaximumPoolSize(threads);
+			}
+		}
+	}
+
+	/**
+	 * 获取一个流量类别在每个服务器主机上允许的最大并发请求数。
+	 * 
+	 * @param trafficClass 流量类别。
+	 * @return 每个主机的最大并发请求数。
+	 */
+	public static int getMaxConnections(TrafficClass trafficClass) {
+		return HttpUtils.getMaxConnections(trafficClass);
+	}
+
+	/**
+	 * 设置发送请求使用的传输层。默认的传输层使用 {@link LegacyTransport} 发送请求，按主机熔断（{@link CircuitBreakingTransport}），
+	 * 按授权码和服务接口限流，速率从网关的 429 响应中学习（{@link RateLimitingTransport}），并按照 {@link RetryPolicy#DEFAULT}
+	 * 自动重试暂时性故障（{@link RetryingTransport}）；设置其他传输层时，如需这些功能，请用这些类依次包装。需要自适应并发限制时，
+	 * 可以在 {@link RateLimitingTransport} 之内、{@link CircuitBreakingTransport} 之外加入 {@link ConcurrencyLimitingTransport}。
+	 * 
+	 * @param transport 发送请求使用的传输层。
+	 */
+	public void setTransport(YuntuTransport transport) {
+		if (transport == null) {
+			throw new IllegalArgumentException("transport");
+		}
+		this.transport = transport;
+	}
+
+	/**
+	 * 获取发送请求使用的传输层。
+	 * 
+	 * @return 发送请求使用的传输层。
+	 */
+	public YuntuTransport getTransport() {
+		return this.transport;
+	}
+
+	/**
+	 * 设置执行异步方法（例如 {@link #convertAsync(File)}）的线程池。上传文档、提交转换等阻塞步骤在该线程池中执行，
+	 * 调用线程不会被阻塞；等待文档转换完成期间不占用任何线程。默认使用所有实例共用的守护线程池。
+	 * <p>
+	 * 查询转换状态（包括同步和异步方法中的轮询）不使用该线程池，而在内部专用的线程池中发送。因此该线程池可以是有界的，
+	 * 也可以在调用线程中直接执行任务；同步方法等待转换完成时，不会因为该线程池已满而无法查询。
+	 * </p>
+	 * 
+	 * @param executor 执行异步方法的线程池。
+	 */
+	public void setExecutor(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor");
+		}
+		this.executor = executor;
+	}
+
+	/**
+	 * 获取执行异步方法的线程池。
+	 * 
+	 * @return 执行异步方法的线程池。
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * 设置多服务端模式的接入点。第一个接入点同时作为单个请求的默认接入点，例如 {@link #getCircuitBreaker()}。
+	 * 
+	 * @param endpoints 接入点，至少一个。
+	 */
+	public void setEndpoints(List<YuntuEndpoint> endpoints) {
+		if (endpoints == null || endpoints.isEmpty() || endpoints.contains(null)) {
+			throw new IllegalArgumentException("endpoints");
+		}
+
+		YuntuEndpoint first = endpoints.get(0);
+
+		this.endpoints = Collections.unmodifiableList(new ArrayList<YuntuEndpoint>(endpoints));
+		this.appCode = first.getAppCode();
+		this.appKey = first.getAppKey();
+		this.appSecret = first.getAppSecret();
+		this.host = this.getHost(first.getPlatform());
+	}
+
+	/**
+	 * 返回多服务端模式的接入点。
+	 * 
+	 * @return 接入点；单服务端模式下返回空列表。
+	 */
+	public List<YuntuEndpoint> getEndpoints() {
+		List<YuntuEndpoint> endpoints = this.endpoints;
+
+		return endpoints == null ? Collections.<YuntuEndpoint>emptyList() : endpoints;
+	}
+
+	/**
+	 * 返回被合并的请求数。多个线程同时发送相同的请求时（例如同时获取同一文档的 PDF、查询同一文档的状态，或转换同一个 URL），
+	 * 只有第一个请求被发送，其他线程等待并共享它的结果；该方法返回没有发送的请求数。
+	 * 
+	 * @return 被合并的请求数。
+	 */
+	public long getCoalescedRequests() {
+		return inFlight.getCoalescedCalls() + inFlightAsync.getCoalescedCalls();
+	}
+
+	/**
+	 * 返回当前服务器主机的熔断器，可用于查询主机的健康状态。只有使用 {@link CircuitBreakingTransport} 的传输层（包括默认的传输层）
+	 * 会更新熔断器的状态。
+	 * 
+	 * @return 当前服务器主机的熔断器。
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return CircuitBreaker.forHost(host);
+	}
+
+	/**
+	 * 返回当前服务器主机的自适应并发限制，可用于查询当前的限制值和排队长度。只有使用 {@link ConcurrencyLimitingTransport}
+	 * 的传输层会经过该限制，默认的传输层不使用。
+	 * 
+	 * @return 当前服务器主机的并发限制。
+	 */
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return ConcurrencyLimiter.forHost(host);
+	}
+
+	/**
+	 * 设置上传本地文件时是否使用零拷贝方式。
+	 * <p>
+	 * 启用后，<code>convert(File)</code> 和 <code>convert(Path)</code> 不再经过 OSS SDK，而是直接向 OSS
+	 * 发送签名的上传请求：HTTP 连接使用 <code>FileChannel.transferTo</code>（Linux 上即
+	 * sendfile）把文件交给网络层，文件内容不经过用户态内存；HTTPS 连接则通过复用的缓冲区流式发送。适合上传数百 MB 的 CAD 和 PDF
+	 * 文件。默认不启用。
+	 * </p>
+	 * 
+	 * @param zeroCopyUpload <code>true</code> 使用零拷贝方式上传。
+	 */
+	public void setZeroCopyUpload(boolean zeroCopyUpload) {
+		this.zeroCopyUpload = zeroCopyUpload;
+	}
+
+	/**
+	 * 判断上传本地文件时是否使用零拷贝方式。
+	 * 
+	 * @return <code>true</code> 使用零拷贝方式上传。
+	 */
+	public boolean isZeroCopyUpload() {
+		return this.zeroCopyUpload;
+	}
+
+	/**
+	 * 预热文档转换所需的资源，并预先建立 {@link #DEFAULT_WARM_UP_CONNECTIONS} 个连接。
+	 * 
+	 * @return 返回各预热步骤的耗时。
+	 * @throws YuntuException 域名解析失败或无法连接服务器。
+	 * @see #warmUp(int)
+	 */
+	public WarmUpReport warmUp() throws YuntuException {
+		return warmUp(DEFAULT_WARM_UP_CONNECTIONS);
+	}
+
+	/**
+	 * 预热文档转换所需的资源，使第一次转换即可达到稳定状态下的响应时间。依次执行以下步骤：
+	 * <ul>
+	 * <li>解析转换服务器、上传服务器和 OSS 存储的域名；</li>
+	 * <li>加载并初始化 MIME 类型表、锁管理器及其维护线程、JSON 解析器等类；</li>
+	 * <li>反复执行请求构建、签名和响应解析代码，使其被 JIT 编译；</li>
+	 * <li>通过当前传输层预先建立到转换服务器的 keep-alive 连接；多服务端模式下，到每个接入点都建立连接。只建立之后的请求会使用的连接：
+	 * 默认传输层下使用授权码的请求经由 <code>HttpURLConnection</code> 发送，无法预先建立连接，只缓存 TLS 会话。</li>
+	 * </ul>
+	 * 服务启动时可以在通过就绪检查前调用该方法。
+	 * 
+	 * @param connections 预先建立的连接数，最多为 {@link #getMaxConnectionsPerHost()}。
+	 * @return 返回各预热步骤的耗时。
+	 * @throws YuntuException 域名解析失败或无法连接服务器。
+	 */
+	public WarmUpReport warmUp(int connections) throws YuntuException {
+		WarmUpReport report = new WarmUpReport();
+		long start = System.nanoTime();
+
+		try {
+			List<String> urls = getHosts();
+
+			urls.add(UploadUtil.UPLOAD_HOST);
+			urls.add("http://" + OSSUtil.getDocumentsHost());
+			for (String url : urls) {
+				InetAddress.getAllByName(URI.create(url).getHost());
+			}
+		} catch (UnknownHostException e) {
+			throw new YuntuException(e);
+		}
+		start = addStep(report, WarmUpReport.STEP_DNS, start);
+
+		MimeTypes.getMimeType("docx");
+		LockManager.getInstance();
+		getYuntuDoc(WARM_UP_RESPONSE);
+		start = addStep(report, WarmUpReport.STEP_CLASSES, start);
+
+		try {
+			Map<String, String> headers = getHeaders();
+
+			for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+				Map<String, String> querys = getQueries();
+
+				querys.put("docID", "warmUp");
+				if (HttpUtils.isSigned(querys)) {
+					HttpUtils.sign(host, "/execute/QueryStatus", headers, querys);
+				} else {
+					HttpUtils.buildUrl(host, "/execute/QueryStatus", querys);
+				}
+				getYuntuDoc(WARM_UP_RESPONSE);
+				new JSONArray(WARM_UP_OUTPUT);
+			}
+		} catch (Exception e) {
+			throw new YuntuException(e);
+		}
+		start = addStep(report, WarmUpReport.STEP_JIT, start);
+
+		int warmed = 0;
+
+		if (endpoints == null) {
+			warmed = transport.warmUp(host, connections, HttpUtils.isSigned(getQueries()));
+		} else {
+			// Endpoints may share a host with different credentials; warm up each combination once.
+			Set<String> warmedUp = new HashSet<String>();
+
+			for (YuntuEndpoint endpoint : endpoints) {
+				boolean signed = HttpUtils.isSigned(
+						getQueries(endpoint.getAppCode(), endpoint.getAppKey(), endpoint.getAppSecret()));
+
+				if (warmedUp.add(signed + " " + endpoint.getHost())) {
+					warmed += transport.warmUp(endpoint.getHost(), connections, signed);
+				}
+			}
+		}
+		report.setConnections(warmed);
+		addStep(report, WarmUpReport.STEP_CONNECTIONS, start);
+		return report;
+	}
+
+	/**
+	 * 在 {@link #getExecutor()} 中预热文档转换所需的资源，并预先建立 {@link #DEFAULT_WARM_UP_CONNECTIONS} 个连接。
+	 * 
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含各预热步骤的耗时；预热失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 * @see #warmUp(int)
+	 */
+	public CompletableFuture<WarmUpReport> warmUpAsync() {
+		return warmUpAsync(DEFAULT_WARM_UP_CONNECTIONS);
+	}
+
+	/**
+	 * 在 {@link #getExecutor()} 中预热文档转换所需的资源。
+	 * 
+	 * @param connections 预先建立的连接数，最多为 {@link #getMaxConnectionsPerHost()}。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含各预热步骤的耗时；预热失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 * @see #warmUp(int)
+	 */
+	public CompletableFuture<WarmUpReport> warmUpAsync(final int connections) {
+		return callAsync(() -> warmUp(connections));
+	}
+
+	private static long addStep(WarmUpReport report, String step, long start) {
+		long now = System.nanoTime();
+
+		report.addStep(step, (now - start) / 1000000);
+		return now;
+	}
+
 	/**
 	 * 设置文档转换的参数配置。
 	 * 
@@ -190,15 +655,13 @@ public class Converter {
 	 */
 	public YuntuDoc convert(String docUrl) throws YuntuException {
 		if (docUrl != null && docUrl.toLowerCase().startsWith("http")) {
-			String path = "/execute/Convert";
-			Map<String, String> querys = getQueries();
-			Map<String, String> headers = getHeaders();
+			Map<String, String> params = new HashMap<String, String>();
 
-			querys.put("docURL", docUrl);
+			params.put("docURL", docUrl);
 
-			String body = HttpUtils.get(host, path, headers, querys);
+			Response response = send(null, "/execute/Convert", params);
 
-			return getYuntuDoc(body);
+			return getYuntuDoc(response.body, response.endpoint, getKind(docUrl, -1));
 		} else {
 			return convert(new File(docUrl));
 		}
@@ -213,14 +676,28 @@ public class Converter {
 	 */
 	public YuntuDoc convert(File file) throws YuntuException {
 		try {
-			return new UploadUtil(this.getConfig()).uploadToOSS(file);
+			UploadUtil uploadUtil = newUploadUtil();
+
+			uploadUtil.setZeroCopy(this.zeroCopyUpload);
+			return uploadUtil.uploadToOSS(file);
 		} catch (MalformedURLException e) {
 			throw new YuntuException(e);
 		} catch (IOException e) {
-			throw new YuntuException(e);
+			throw getUploadError(e);
 		}
 	}
 
+	/**
+	 * 转换指定的文档。
+	 * 
+	 * @param path 被转换的文档路径。
+	 * @return 返回一个 <code>YuntuDoc</code> 实例, 其中包含了文档转换状态等信息。
+	 * @throws YuntuException 文档转换异常。
+	 */
+	public YuntuDoc convert(Path path) throws YuntuException {
+		return convert(path.toFile());
+	}
+
 	/**
 	 * 转换指定的文档。
 	 * 
@@ -231,45 +708,379 @@ public class Converter {
 	 */
 	public YuntuDoc convert(InputStream inputStream, String fileName) throws YuntuException {
 		try {
-			return new UploadUtil(this.getConfig()).uploadToOSS(inputStream, fileName);
+			return newUploadUtil().uploadToOSS(inputStream, fileName);
 		} catch (MalformedURLException e) {
 			throw new YuntuException(e);
 		} catch (IOException e) {
-			throw new YuntuException(e);
+			throw getUploadError(e);
+		}
+	}
+
+	/**
+	 * 在指定的时限内转换指定的文档。
+	 * <p>
+	 * 获取上传凭证、上传、提交转换和轮询转换状态等步骤依次共享同一个时限：每个步骤排队等待的时间和连接、读取超时都不超过剩余的时间，
+	 * 卡住的请求不会长时间占用线程。轮询期间到达时限时，返回的文档状态为转换失败，消息为“转换超时！”。
+	 * </p>
+	 * 
+	 * @param docUrl  被转换的文档 URL。
+	 * @param timeout 时限。
+	 * @return 返回一个 <code>YuntuDoc</code> 实例, 其中包含了文档转换状态等信息。
+	 * @throws DeadlineExceededException 轮询之前的步骤超过了时限。
+	 * @throws YuntuException            文档转换异常。
+	 */
+	public YuntuDoc convert(String docUrl, Duration timeout) throws YuntuException {
+		return Deadline.within(timeout, () -> convert(docUrl));
+	}
+
+	/**
+	 * 在指定的时限内转换指定的文档，时限的分配方式见 {@link #convert(String, Duration)}。
+	 * 
+	 * @param file    被转换的文档。
+	 * @param timeout 时限。
+	 * @return 返回一个 <code>YuntuDoc</code> 实例, 其中包含了文档转换状态等信息。
+	 * @throws DeadlineExceededException 轮询之前的步骤超过了时限。
+	 * @throws YuntuException            文档转换异常。
+	 */
+	public YuntuDoc convert(File file, Duration timeout) throws YuntuException {
+		return Deadline.within(timeout, () -> convert(file));
+	}
+
+	/**
+	 * 在指定的时限内转换指定的文档，时限的分配方式见 {@link #convert(String, Duration)}。
+	 * 
+	 * @param path    被转换的文档路径。
+	 * @param timeout 时限。
+	 * @return 返回一个 <code>YuntuDoc</code> 实例, 其中包含了文档转换状态等信息。
+	 * @throws DeadlineExceededException 轮询之前的步骤超过了时限。
+	 * @throws YuntuException            文档转换异常。
+	 */
+	public YuntuDoc convert(Path path, Duration timeout) throws YuntuException {
+		return convert(path.toFile(), timeout);
+	}
+
+	/**
+	 * 在指定的时限内转换指定的文档，时限的分配方式见 {@link #convert(String, Duration)}。
+	 * 
+	 * @param inputStream 被转换的文档数据流。
+	 * @param fileName    被转换的文档的fileName（必须包含扩展名）。
+	 * @param timeout     时限。
+	 * @return 返回一个 <code>YuntuDoc</code> 实例, 其中包含了文档转换状态等信息。
+	 * @throws DeadlineExceededException 轮询之前的步骤超过了时限。
+	 * @throws YuntuException            文档转换异常。
+	 */
+	public YuntuDoc convert(InputStream inputStream, String fileName, Duration timeout) throws YuntuException {
+		return Deadline.within(timeout, () -> convert(inputStream, fileName));
+	}
+
+	/**
+	 * 返回上传失败时抛出的异常。调用线程的时限已过时，失败是由按时限缩短的超时造成的。
+	 */
+	private static YuntuException getUploadError(IOException e) {
+		return Deadline.isCurrentExpired() ? new DeadlineExceededException(e) : new YuntuException(e);
+	}
+
+	/**
+	 * 异步转换指定的文档。提交转换在 {@link #getExecutor()} 中执行，之后定时查询转换状态，等待转换完成期间不占用任何线程。
+	 * 
+	 * @param docUrl 被转换的文档 URL。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含文档转换状态等信息；转换失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 */
+	public CompletableFuture<YuntuDoc> convertAsync(final String docUrl) {
+		if (docUrl != null && docUrl.toLowerCase().startsWith("http")) {
+			return callAsync(() -> {
+				Map<String, String> params = new HashMap<String, String>();
+
+				params.put("docURL", docUrl);
+
+				Response response = send(null, "/execute/Convert", params);
+
+				return getSubmittedDoc(response.body, response.endpoint);
+			}).thenCompose(doc -> pollAsync(doc, getKind(docUrl, -1)));
+		} else {
+			return convertAsync(new File(docUrl));
 		}
 	}
 
+	/**
+	 * 异步转换指定的文档。上传文档和提交转换在 {@link #getExecutor()} 中执行，之后定时查询转换状态，等待转换完成期间不占用任何线程。
+	 * 
+	 * @param file 被转换的文档。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含文档转换状态等信息；转换失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 */
+	public CompletableFuture<YuntuDoc> convertAsync(final File file) {
+		return callAsync(() -> {
+			UploadUtil uploadUtil = newUploadUtil();
+
+			uploadUtil.setZeroCopy(this.zeroCopyUpload);
+			uploadUtil.setPolling(false);
+			try {
+				return uploadUtil.uploadToOSS(file);
+			} catch (IOException e) {
+				throw getUploadError(e);
+			}
+		}).thenCompose(doc -> pollAsync(doc, getKind(file.getName(), file.length())));
+	}
+
+	/**
+	 * 异步转换指定的文档，参见 {@link #convertAsync(File)}。
+	 * 
+	 * @param path 被转换的文档路径。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含文档转换状态等信息；转换失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 */
+	public CompletableFuture<YuntuDoc> convertAsync(Path path) {
+		return convertAsync(path.toFile());
+	}
+
+	/**
+	 * 异步转换指定的文档。上传数据流和提交转换在 {@link #getExecutor()} 中执行，之后定时查询转换状态，等待转换完成期间不占用任何线程。
+	 * 
+	 * @param inputStream 被转换的文档数据流。
+	 * @param fileName    被转换的文档的fileName（必须包含扩展名）。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含文档转换状态等信息；转换失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 */
+	public CompletableFuture<YuntuDoc> convertAsync(final InputStream inputStream, final String fileName) {
+		return callAsync(() -> {
+			UploadUtil uploadUtil = newUploadUtil();
+
+			uploadUtil.setPolling(false);
+			try {
+				return uploadUtil.uploadToOSS(inputStream, fileName);
+			} catch (IOException e) {
+				throw getUploadError(e);
+			}
+		}).thenCompose(doc -> pollAsync(doc, getKind(fileName, -1)));
+	}
+
+	/**
+	 * 返回上传文档使用的 <code>UploadUtil</code>。多服务端模式下，上传的文档按照 {@link #route()} 提交到一个接入点，
+	 * 并记录在该接入点上。
+	 */
+	private UploadUtil newUploadUtil() {
+		return new UploadUtil(this.getConfig(), this.getTransport(), endpoints == null ? null : this::submitUploaded);
+	}
+
+	/**
+	 * 提交已上传到 OSS 的文档进行转换。提交遇到暂时性故障时，只有确定请求没有发出才切换到下一个接入点，见
+	 * {@link RetryPolicy#isRetryable(String, Throwable)}。
+	 */
+	private YuntuDoc submitUploaded(String docID, String fileName, long fileSize, boolean polling)
+			throws YuntuException {
+
+		Map<String, String> params = new HashMap<String, String>();
+
+		params.put("docID", docID);
+		params.put("creator", "JavaSDK");
+		params.put("fileName", fileName);
+		params.put("from", "JavaSDK");
+
+		Response response = send(null, "/execute/Convert", params);
+
+		return polling ? getYuntuDoc(response.body, response.endpoint, getKind(fileName, fileSize))
+				: getSubmittedDoc(response.body, response.endpoint);
+	}
+
+	/**
+	 * 在 {@link #getExecutor()} 中执行一个阻塞的任务。
+	 * 
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含任务的结果；任务失败时以它抛出的异常结束。
+	 */
+	private <V> CompletableFuture<V> callAsync(final Callable<V> task) {
+		final CompletableFuture<V> future = new CompletableFuture<V>();
+
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(task.call());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(new YuntuException(e));
+		}
+		return future;
+	}
+
 	protected Map<String, String> getQueries() {
+		return getQueries(this.appCode, this.appKey, this.appSecret);
+	}
+
+	private Map<String, String> getQueries(String appCode, String appKey, String appSecret) {
 		Map<String, String> querys = new HashMap<String, String>();
 
 		querys.put("outputType", config.getOutputType());
 		querys.put("watermark", config.getWatermark());
-		if (this.appCode != null) {
-			if (this.appCode.startsWith("jyt")) {
-				querys.put("yuntuKey", this.appCode);
+		if (appCode != null) {
+			if (appCode.startsWith("jyt")) {
+				querys.put("yuntuKey", appCode);
 			}
 		}
-		if (this.appKey != null && this.appSecret != null) {
-			querys.put("key", this.appKey);
-			querys.put("secret", this.appSecret);
+		if (appKey != null && appSecret != null) {
+			querys.put("key", appKey);
+			querys.put("secret", appSecret);
 		}
 		return querys;
 	}
 
 	protected Map<String, String> getHeaders() {
+		return getHeaders(this.appCode, this.platform);
+	}
+
+	private Map<String, String> getHeaders(String appCode, int platform) {
 		Map<String, String> headers = new HashMap<String, String>();
 
-		if (this.appCode != null) {
-			if (this.platform == PLATFORM_ALI) {
-				headers.put("Authorization", "APPCODE " + this.appCode);
-			} else if (this.platform == PLATFORM_BAIDU) {
-				headers.put("X-Bce-Signature", "AppCode/" + this.appCode);
+		if (appCode != null) {
+			if (platform == PLATFORM_ALI) {
+				headers.put("Authorization", "APPCODE " + appCode);
+			} else if (platform == PLATFORM_BAIDU) {
+				headers.put("X-Bce-Signature", "AppCode/" + appCode);
 			}
 		}
 		headers.put("Content-Type", "application/json");
 		return headers;
 	}
 
+	/**
+	 * 返回所有服务器网址：多服务端模式下是每个接入点的网址，否则只有当前服务器网址。
+	 */
+	private List<String> getHosts() {
+		List<String> hosts = new ArrayList<String>();
+
+		if (endpoints == null) {
+			hosts.add(host);
+		} else {
+			for (YuntuEndpoint endpoint : endpoints) {
+				if (!hosts.contains(endpoint.getHost())) {
+					hosts.add(endpoint.getHost());
+				}
+			}
+		}
+		return hosts;
+	}
+
+	/**
+	 * 按照健康状态和延迟排列接入点：健康的接入点在前，同样健康的按延迟从低到高排列。
+	 */
+	private List<YuntuEndpoint> route() {
+		List<YuntuEndpoint> healthy = new ArrayList<YuntuEndpoint>();
+		List<YuntuEndpoint> unhealthy = new ArrayList<YuntuEndpoint>();
+
+		for (YuntuEndpoint endpoint : endpoints) {
+			(endpoint.isHealthy() ? healthy : unhealthy).add(endpoint);
+		}
+
+		Comparator<YuntuEndpoint> byLatency = Comparator.comparingDouble(YuntuEndpoint::getLatency);
+
+		healthy.sort(byLatency);
+		unhealthy.sort(byLatency);
+		healthy.addAll(unhealthy);
+		return healthy;
+	}
+
+	/**
+	 * 返回提交指定文档的接入点。文档只存在于提交它的接入点上，因此没有提交记录时（例如文档由其他实例提交，或提交记录已被淘汰）
+	 * 总是返回第一个接入点，而不是按照 {@link #route()} 选择，同一文档的请求不会因延迟变化发往不同的接入点。
+	 */
+	private YuntuEndpoint getEndpoint(String docID) {
+		YuntuEndpoint endpoint = docID == null ? null : pinnedDocs.get(docID);
+
+		return endpoint != null ? endpoint : endpoints.get(0);
+	}
+
+	/** 请求的响应内容和处理该请求的接入点。 */
+	private static class Response {
+
+		final String body;
+
+		final YuntuEndpoint endpoint;
+
+		Response(String body, YuntuEndpoint endpoint) {
+			this.body = body;
+			this.endpoint = endpoint;
+		}
+	}
+
+	/**
+	 * 发送 GET 请求。同时发往同一接入点、查询参数相同的请求只发送一次，其他调用者共享它的结果。
+	 * 
+	 * @param docID  请求涉及的文档 ID，可以为 <code>null</code>。
+	 * @param path   请求路径。
+	 * @param params 除授权信息和转换配置以外的查询参数。
+	 * @return 返回响应内容和处理该请求的接入点。
+	 * @throws YuntuException 请求失败。
+	 */
+	private Response send(final String docID, final String path, final Map<String, String> params)
+			throws YuntuException {
+
+		String target;
+
+		if (endpoints == null) {
+			target = host;
+		} else {
+			target = docID == null ? "*" : "#" + endpoints.indexOf(getEndpoint(docID));
+		}
+		return inFlight.execute(getRequestKey(target, path, params), () -> sendOnce(docID, path, params));
+	}
+
+	/**
+	 * 返回标识相同请求的键：目标接入点、请求路径、转换配置和按名称排序的查询参数。
+	 */
+	private String getRequestKey(String target, String path, Map<String, String> params) {
+		return target + path + "?" + new TreeMap<String, String>(params) + "&" + config.getOutputType() + "&"
+				+ config.getWatermark();
+	}
+
+	/**
+	 * 发送 GET 请求。单服务端模式下发往当前服务器。多服务端模式下，涉及文档的请求（查询状态、获取结果）只发往该文档的接入点
+	 * （见 {@link #getEndpoint(String)}），失败时不切换到其他接入点；其他请求按照 {@link #route()} 的顺序发送，遇到可以重试的故障或熔断时
+	 * 切换到下一个接入点。
+	 * 
+	 * @param docID  请求涉及的文档 ID，可以为 <code>null</code>。
+	 * @param path   请求路径。
+	 * @param params 除授权信息和转换配置以外的查询参数。
+	 * @return 返回响应内容和处理该请求的接入点。
+	 * @throws YuntuException 请求失败。
+	 */
+	private Response sendOnce(String docID, String path, Map<String, String> params) throws YuntuException {
+		if (endpoints == null) {
+			Map<String, String> querys = getQueries();
+
+			querys.putAll(params);
+			return new Response(transport.get(host, path, getHeaders(), querys), null);
+		}
+
+		YuntuException failure = null;
+
+		for (YuntuEndpoint endpoint : docID != null ? Collections.singletonList(getEndpoint(docID)) : route()) {
+			Map<String, String> querys = getQueries(endpoint.getAppCode(), endpoint.getAppKey(),
+					endpoint.getAppSecret());
+			long start = System.currentTimeMillis();
+
+			querys.putAll(params);
+			try {
+				String body = transport.get(endpoint.getHost(), path,
+						getHeaders(endpoint.getAppCode(), endpoint.getPlatform()), querys);
+
+				endpoint.recordLatency(System.currentTimeMillis() - start);
+				return new Response(body, endpoint);
+			} catch (CircuitOpenException | RateLimitExceededException e) {
+				failure = e;
+			} catch (YuntuException e) {
+				endpoint.recordLatency(System.currentTimeMillis() - start);
+				if (!getRetryPolicy().isRetryable(path, e)) {
+					throw e;
+				}
+				failure = e;
+			}
+		}
+		throw failure;
+	}
+
 	/**
 	 * 根据 JSON 字符串，返回一个 <code>YuntuDoc</code> 实例。
 	 * 
@@ -277,6 +1088,55 @@ public class Converter {
 	 * @return 返回一个 <code>YuntuDoc</code> 实例。
 	 */
 	protected YuntuDoc getYuntuDoc(String json) {
+		return getYuntuDoc(json, null, null);
+	}
+
+	/**
+	 * 根据提交转换返回的 JSON 字符串，返回一个 <code>YuntuDoc</code> 实例。文档正在转换时，按照同类文档以往的转换时长安排轮询，
+	 * 直到转换结束。
+	 * 
+	 * @param json     给定的 JSON 字符串。
+	 * @param fileName 被转换的文档名称，其扩展名决定文档的类别。
+	 * @param fileSize 被转换的文档大小，单位为字节；未知时为负数。
+	 * @return 返回一个 <code>YuntuDoc</code> 实例。
+	 */
+	protected YuntuDoc getYuntuDoc(String json, String fileName, long fileSize) {
+		return getYuntuDoc(json, null, getKind(fileName, fileSize));
+	}
+
+	/**
+	 * 根据 JSON 字符串，返回一个 <code>YuntuDoc</code> 实例，并记录提交该文档的接入点。文档正在转换时，轮询到转换结束。
+	 */
+	private YuntuDoc getYuntuDoc(String json, YuntuEndpoint endpoint, ConversionHistory.Kind kind) {
+		YuntuDoc doc = getSubmittedDoc(json, endpoint);
+
+		if (doc.getCode() == 1) {
+			doc = waitForStatus(doc.getID(), poller.pollSubmitted(doc.getID(), kind, MAX_POLLS));
+		}
+		return doc;
+	}
+
+	/**
+	 * 返回文档的种类：文档类别、大小和当前的输出类型，用于预测转换时长。
+	 */
+	private ConversionHistory.Kind getKind(String fileName, long fileSize) {
+		return ConversionHistory.getKind(fileName, fileSize, config.getOutputType());
+	}
+
+	/**
+	 * 根据提交转换返回的 JSON 字符串，返回一个 <code>YuntuDoc</code> 实例，不轮询转换状态。文档正在转换时，返回的实例状态为 1。
+	 * 
+	 * @param json 给定的 JSON 字符串。
+	 * @return 返回一个 <code>YuntuDoc</code> 实例。
+	 */
+	protected YuntuDoc getSubmittedDoc(String json) {
+		return getSubmittedDoc(json, null);
+	}
+
+	/**
+	 * 根据提交转换返回的 JSON 字符串，返回一个 <code>YuntuDoc</code> 实例，并记录提交该文档的接入点。
+	 */
+	private YuntuDoc getSubmittedDoc(String json, YuntuEndpoint endpoint) {
 		YuntuDoc doc = new YuntuDoc();
 
 		try {
@@ -289,12 +1149,14 @@ public class Converter {
 			if (code == 0) {
 				String docID = jsonObj.getString("docID");
 
+				pin(docID, endpoint);
 				doc.setID(docID);
 			} else if (code == 1) {
 				String docID = jsonObj.getString("docID");
 
+				pin(docID, endpoint);
 				if (docID != null) {
-					doc = queryStatus(docID, 3000);
+					doc.setID(docID);
 				} else {
 					doc.setCode(2);
 					doc.setMessage("转换失败！");
@@ -311,54 +1173,333 @@ public class Converter {
 		return doc;
 	}
 
+	private void pin(String docID, YuntuEndpoint endpoint) {
+		if (docID != null && endpoint != null) {
+			pinnedDocs.put(docID, endpoint);
+		}
+	}
+
 	/**
-	 * 查询文档转换状态。
+	 * 查询文档转换状态，文档正在转换时由 {@link StatusPoller} 定时轮询。查询遇到暂时性故障或服务器熔断时继续轮询，
+	 * 遇到永久性故障（例如授权错误）时立即返回失败的状态。轮询间隔按几何级数增长并带有随机抖动，避免大量客户端同时轮询。
+	 * 调用线程设有时限时，下一次查询将超过时限的，不再等待，直接返回转换超时。调用线程等待轮询结束，两次查询之间不占用其他线程。
 	 * 
 	 * @param docID      文档 ID。
 	 * @param retryTimes 自动轮询的次数。
 	 * @return 返回一个 <code>YuntuDoc</code> 实例, 其中包含了文档转换状态等信息。
 	 */
 	private YuntuDoc queryStatus(String docID, int retryTimes) {
+		return waitForStatus(docID, poller.poll(docID, retryTimes));
+	}
+
+	/**
+	 * 等待轮询结束，返回文档的最终状态。调用线程被中断时停止轮询，返回的文档状态为正在转换。
+	 */
+	private YuntuDoc waitForStatus(String docID, CompletableFuture<YuntuDoc> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			result.cancel(false);
+			Thread.currentThread().interrupt();
+
+			YuntuDoc doc = new YuntuDoc(docID);
+
+			doc.setCode(1);
+			return doc;
+		} catch (ExecutionException e) {
+			YuntuDoc doc = new YuntuDoc(docID);
+
+			doc.setCode(2);
+			doc.setMessage(e.getCause().getMessage());
+			return doc;
+		}
+	}
+
+	/**
+	 * 发送一次状态查询，返回文档状态。同时查询同一文档的请求只发送一次。
+	 */
+	private CompletableFuture<YuntuDoc> checkStatus(final String docID) {
+		return queryStatusBody(docID).handle((body, e) -> getStatus(docID, body, e));
+	}
+
+	/**
+	 * 根据一次状态查询的结果，返回文档状态。查询遇到暂时性故障、服务器熔断或本地限流，或者响应格式错误时，视为文档仍在转换；
+	 * 遇到永久性故障（例如授权错误）时，返回失败的状态。<code>Error</code> 不是查询的结果，原样抛出。
+	 * 
+	 * @param docID   文档 ID。
+	 * @param body    查询的响应内容。
+	 * @param failure 查询失败的异常；查询成功时为 <code>null</code>。
+	 */
+	private YuntuDoc getStatus(String docID, String body, Throwable failure) {
 		YuntuDoc doc = new YuntuDoc(docID);
-		String path = "/execute/QueryStatus";
-		Map<String, String> querys = getQueries();
-		Map<String, String> headers = getHeaders();
 
-		querys.put("docID", docID);
+		if (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+		if (failure instanceof Error) {
+			// Not an answer about the document, e.g. StackOverflowError.
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			if (failure instanceof CircuitOpenException || failure instanceof RateLimitExceededException
+					|| getRetryPolicy().isRetryable(failure)) {
+				doc.setCode(1);
+			} else {
+				doc.setCode(2);
+				doc.setMessage(failure.getMessage());
+			}
+		} else if (body != null) {
+			try {
+				setStatus(doc, body);
+			} catch (JSONException e) {
+				doc.setCode(1);
+			}
+		}
+		return doc;
+	}
 
-		try {
-			String body = HttpUtils.get(host, path, headers, querys);
+	/**
+	 * 由 {@link StatusPoller} 定时查询提交转换后的文档状态，直到转换结束。第一次查询安排在同类文档以往转换完成的时间附近。
+	 * 两次查询之间不占用任何线程；返回的 <code>CompletableFuture</code> 被取消后不再查询。
+	 * 
+	 * @param submitted 提交转换后的文档。
+	 * @param kind      文档的种类。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含文档转换状态等信息。
+	 */
+	private CompletableFuture<YuntuDoc> pollAsync(YuntuDoc submitted, ConversionHistory.Kind kind) {
+		if (submitted.getCode() != 1) {
+			return CompletableFuture.completedFuture(submitted);
+		}
 
-			if (body != null) {
-				JSONObject json = new JSONObject(body);
-				int code = json.getInt("retCode");
-				String statusPage = json.getString("docStatusPage");
+		return poller.pollSubmitted(submitted.getID(), kind, MAX_POLLS);
+	}
+
+	/**
+	 * 返回传输层使用的重试策略，用于判断查询失败是否是暂时性故障。
+	 */
+	private RetryPolicy getRetryPolicy() {
+		return transport instanceof RetryingTransport ? ((RetryingTransport) transport).getPolicy()
+				: RetryPolicy.DEFAULT;
+	}
 
-				doc.setCode(code);
-				doc.setStatusPage(statusPage);
-				if (code == 1 || code == 2) {
-					String message = json.getString("retMsg");
+	/**
+	 * 异步查询文档转换状态。该方法只查询一次，不会自动轮询；使用支持非阻塞 I/O 的传输层（例如
+	 * {@link com.jingyue.DocConversion.transport.JdkHttpTransport}）时，等待响应期间不占用任何线程，
+	 * 适合同时查询大量文档。
+	 * <p>
+	 * 多服务端模式下，在提交该文档的接入点上查询。
+	 * </p>
+	 * 
+	 * @param docID 文档 ID。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含文档转换状态等信息；查询失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 */
+	public CompletableFuture<YuntuDoc> queryStatusAsync(final String docID) {
+		return queryStatusBody(docID).thenApply(body -> {
+			YuntuDoc doc = new YuntuDoc(docID);
 
-					doc.setMessage(message);
+			try {
+				if (body != null) {
+					setStatus(doc, body);
 				}
+			} catch (JSONException e) {
+				throw new CompletionException(new YuntuException(e));
 			}
-		} catch (Throwable e) {
-			doc.setCode(1);
+			return doc;
+		});
+	}
+
+	/**
+	 * 批量查询文档转换状态，按结果返回的先后顺序逐个返回。每个文档只查询一次，不会自动轮询。
+	 * <p>
+	 * 查询请求在内部专用的线程池中并发发送，同时进行的查询数不超过每个主机 {@link TrafficClass#CONTROL}
+	 * 类请求的最大并发数，因此查询复用传输层连接池中保持的长连接，不会在传输层排队等待连接，也不会因为在限流器中等待过久而被拒绝。
+	 * 吞吐量受每秒请求数限制（{@link com.jingyue.DocConversion.transport.RateLimiter}）约束。
+	 * </p>
+	 * <p>
+	 * 查询遇到暂时性故障或服务器熔断时，文档状态为 1（视为仍在转换）；遇到永久性故障时，文档状态为 2，消息为失败原因。
+	 * 调用线程在等待下一个结果时被中断，或者返回的 <code>Stream</code> 被关闭时，尚未发送的查询不再发送。
+	 * 查询因其他原因提前结束时，<code>Stream</code> 在已得到的结果之后结束；因异常结束时，读取下一个结果抛出
+	 * <code>CompletionException</code>。
+	 * </p>
+	 * 
+	 * @param docIDs 文档 ID。
+	 * @return 返回一个 <code>Stream</code>，每个文档 ID 对应一个 <code>YuntuDoc</code> 实例。读取下一个结果时阻塞等待，
+	 *         等待期间被中断时抛出 <code>CancellationException</code>。
+	 */
+	public Stream<YuntuDoc> queryStatus(Collection<String> docIDs) {
+		final BlockingQueue<YuntuDoc> results = new LinkedBlockingQueue<YuntuDoc>();
+		final CompletableFuture<Void> all = queryStatusAsync(docIDs, results::add);
+		final int count = docIDs.size();
+		// Queued once all is done, after every result, so that a reader never waits
+		// for results that will not come.
+		final YuntuDoc end = new YuntuDoc();
+
+		all.whenComplete((v, e) -> results.add(end));
+
+		Iterator<YuntuDoc> iterator = new Iterator<YuntuDoc>() {
+
+			private int taken = 0;
+
+			/** The result taken by hasNext and not yet returned by next. */
+			private YuntuDoc pending = null;
+
+			@Override
+			public boolean hasNext() {
+				if (pending == null && taken < count) {
+					try {
+						pending = results.take();
+					} catch (InterruptedException e) {
+						all.cancel(false);
+						Thread.currentThread().interrupt();
+						throw new CancellationException();
+					}
+				}
+				if (pending == end) {
+					if (all.isCompletedExceptionally() && !all.isCancelled()) {
+						all.join();
+					}
+					return false;
+				}
+				return pending != null;
+			}
+
+			@Override
+			public YuntuDoc next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				YuntuDoc doc = pending;
+
+				pending = null;
+				taken++;
+				return doc;
+			}
+		};
+
+		return StreamSupport
+				.stream(Spliterators.spliterator(iterator, count, Spliterator.NONNULL), false)
+				.onClose(() -> all.cancel(false));
+	}
+
+	/**
+	 * 异步批量查询文档转换状态，每得到一个文档的状态，就交给指定的回调，参见 {@link #queryStatus(Collection)}。
+	 * 使用支持非阻塞 I/O 的传输层时，等待响应期间不占用任何线程。
+	 * 
+	 * @param docIDs   文档 ID。
+	 * @param consumer 接收每个文档状态的回调，可能在不同的线程中调用，但不会被同时调用。
+	 * @return 返回一个 <code>CompletableFuture</code>，所有文档都查询完成时完成；回调抛出异常时以该异常结束，
+	 *         并且不再发送其余的查询。取消它时，尚未发送的查询不再发送。
+	 */
+	public CompletableFuture<Void> queryStatusAsync(Collection<String> docIDs, final Consumer<? super YuntuDoc> consumer) {
+		if (docIDs == null) {
+			throw new IllegalArgumentException("docIDs");
 		}
-		if (doc.getCode() == 1) {
-			if (retryTimes > 0) {
+		if (consumer == null) {
+			throw new IllegalArgumentException("consumer");
+		}
+
+		final CompletableFuture<Void> all = new CompletableFuture<Void>();
+		// Serializes the calls to the consumer; all itself is handed to the caller.
+		final Object lock = new Object();
+		final AtomicInteger remaining = new AtomicInteger(docIDs.size());
+		final AsyncLimiter limiter = new AsyncLimiter(HttpUtils.getMaxConnections(TrafficClass.CONTROL));
+
+		if (docIDs.isEmpty()) {
+			all.complete(null);
+		}
+		for (final String docID : docIDs) {
+			limiter.acquire().thenComposeAsync(granted -> {
+				if (all.isDone()) {
+					return CompletableFuture.completedFuture(null);
+				}
+				return checkStatus(docID);
+			}, STATUS_EXECUTOR).handle((doc, e) -> {
+				if (all.isDone()) {
+					return null;
+				}
 				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					return doc;
+					if (e != null) {
+						doc = getStatus(docID, null, e);
+					}
+					synchronized (lock) {
+						consumer.accept(doc);
+					}
+				} catch (Throwable failure) {
+					all.completeExceptionally(failure);
 				}
-				return queryStatus(docID, --retryTimes);
-			} else {
-				doc.setCode(2);
-				doc.setMessage("转换超时！");
-			}
+				return null;
+			}).whenComplete((v, e) -> {
+				limiter.release();
+				if (remaining.decrementAndGet() == 0) {
+					all.complete(null);
+				}
+			});
+		}
+		return all;
+	}
+
+	/**
+	 * 发送一次异步的 QueryStatus 请求，返回响应内容。同时查询同一文档的请求只发送一次。
+	 */
+	private CompletableFuture<String> queryStatusBody(final String docID) {
+		final YuntuEndpoint endpoint = endpoints == null ? null : getEndpoint(docID);
+		String target = endpoint == null ? host : "#" + endpoints.indexOf(endpoint);
+
+		return inFlightAsync.executeAsync(
+				getRequestKey(target, "/execute/QueryStatus", Collections.singletonMap("docID", docID)),
+				() -> queryStatusOnce(endpoint, docID));
+	}
+
+	/**
+	 * 向指定的接入点发送一次异步的 QueryStatus 请求；单服务端模式下 endpoint 为 <code>null</code>。
+	 */
+	private CompletableFuture<String> queryStatusOnce(final YuntuEndpoint endpoint, String docID) {
+		String path = "/execute/QueryStatus";
+		CompletableFuture<String> response;
+
+		if (endpoint == null) {
+			Map<String, String> querys = getQueries();
+
+			querys.put("docID", docID);
+			response = transport.getAsync(host, path, getHeaders(), querys);
+		} else {
+			Map<String, String> querys = getQueries(endpoint.getAppCode(), endpoint.getAppKey(),
+					endpoint.getAppSecret());
+			final long start = System.currentTimeMillis();
+
+			querys.put("docID", docID);
+			response = transport.getAsync(endpoint.getHost(), path,
+					getHeaders(endpoint.getAppCode(), endpoint.getPlatform()), querys);
+			response.whenComplete((body, e) -> {
+				if (!(e instanceof CircuitOpenException || e != null && e.getCause() instanceof CircuitOpenException)) {
+					endpoint.recordLatency(System.currentTimeMillis() - start);
+				}
+			});
+		}
+		return response;
+	}
+
+	/**
+	 * 根据 QueryStatus 返回的 JSON 字符串，设置文档状态。
+	 * 
+	 * @param doc  指定的 <code>YuntuDoc</code> 实例。
+	 * @param body QueryStatus 返回的 JSON 字符串。
+	 * @throws JSONException JSON 格式错误。
+	 */
+	private void setStatus(YuntuDoc doc, String body) throws JSONException {
+		JSONObject json = new JSONObject(body);
+		int code = json.getInt("retCode");
+		String statusPage = json.getString("docStatusPage");
+
+		doc.setCode(code);
+		doc.setStatusPage(statusPage);
+		if (code == 1 || code == 2) {
+			String message = json.getString("retMsg");
+
+			doc.setMessage(message);
 		}
-		return doc;
 	}
 
 	/**
@@ -387,18 +1528,16 @@ public class Converter {
 			throw new YuntuException("doc 状态错误！");
 		}
 
-		String path = "/execute/GetOutputResult";
 		List<String> outputURLs = new ArrayList<String>();
-		Map<String, String> querys = getQueries();
-		Map<String, String> headers = getHeaders();
+		Map<String, String> params = new HashMap<String, String>();
 
-		querys.put("docID", doc.getID());
-		querys.put("outputType", outputType);
+		params.put("docID", doc.getID());
+		params.put("outputType", outputType);
 
 		String body = null;
 
 		try {
-			body = HttpUtils.get(host, path, headers, querys);
+			body = send(doc.getID(), "/execute/GetOutputResult", params).body;
 			if (body != null) {
 				JSONObject json = new JSONObject(body);
 				JSONArray urlArray = json.getJSONArray("outputURLs");
@@ -413,6 +1552,20 @@ public class Converter {
 		return outputURLs;
 	}
 
+	/**
+	 * 在指定的时限内，根据指定的输出格式获取文档转换结果。排队等待的时间和连接、读取超时都不超过剩余的时间。
+	 * 
+	 * @param doc        指定的 <code>YuntuDoc</code> 实例。
+	 * @param outputType 输出格式，包括："html", "htmls", "pdf", "longimage", "images", "svgs"。
+	 * @param timeout    时限。
+	 * @return 返回文档转换结果。
+	 * @throws DeadlineExceededException 超过了时限。
+	 * @throws YuntuException            获取文档转换结果时，出现错误。
+	 */
+	public List<String> getOutputResult(YuntuDoc doc, String outputType, Duration timeout) throws YuntuException {
+		return Deadline.within(timeout, () -> getOutputResult(doc, outputType));
+	}
+
 	/**
 	 * 获取文档转换状态页，该页面包含文档信息和转换状态。
 	 * 
@@ -522,4 +1675,80 @@ public class Converter {
 	public List<String> getPagingSVGs(YuntuDoc doc) throws YuntuException {
 		return this.getOutputResult(doc, "svgs");
 	}
+
+	/**
+	 * 异步获取指定输出格式的文档转换结果。请求在 {@link #getExecutor()} 中发送，调用线程不会被阻塞。
+	 * 
+	 * @param doc        指定的 <code>YuntuDoc</code> 实例。
+	 * @param outputType 输出格式，包括："html", "htmls", "pdf", "longimage", "images", "svgs"。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含文档转换结果；获取失败时以
+	 *         <code>YuntuException</code> 异常结束。
+	 */
+	public CompletableFuture<List<String>> getOutputAsync(final YuntuDoc doc, final String outputType) {
+		return callAsync(() -> getOutputResult(doc, outputType));
+	}
+
+	/**
+	 * 异步获取一个包含文档完整内容的 HTML，参见 {@link #getWholeHTML(YuntuDoc)}。
+	 * 
+	 * @param doc 指定的 <code>YuntuDoc</code> 实例。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含指向完整 HTML 的 URL。
+	 */
+	public CompletableFuture<String> getWholeHTMLAsync(YuntuDoc doc) {
+		return getOutputAsync(doc, "html").thenApply(Converter::getFirst);
+	}
+
+	/**
+	 * 异步获取文档分页 HTMLs，参见 {@link #getPagingHTMLs(YuntuDoc)}。
+	 * 
+	 * @param doc 指定的 <code>YuntuDoc</code> 实例。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含指向每个页面 HTML 的 URL。
+	 */
+	public CompletableFuture<List<String>> getPagingHTMLsAsync(YuntuDoc doc) {
+		return getOutputAsync(doc, "htmls");
+	}
+
+	/**
+	 * 异步获取文档转换生成的 PDF，参见 {@link #getPDF(YuntuDoc)}。
+	 * 
+	 * @param doc 指定的 <code>YuntuDoc</code> 实例。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含指向 PDF 的 URL。
+	 */
+	public CompletableFuture<String> getPDFAsync(YuntuDoc doc) {
+		return getOutputAsync(doc, "pdf").thenApply(Converter::getFirst);
+	}
+
+	/**
+	 * 异步获取文档转换生成的长图片，参见 {@link #getLongImage(YuntuDoc)}。
+	 * 
+	 * @param doc 指定的 <code>YuntuDoc</code> 实例。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含指向长图片的 URL。
+	 */
+	public CompletableFuture<String> getLongImageAsync(YuntuDoc doc) {
+		return getOutputAsync(doc, "longimage").thenApply(Converter::getFirst);
+	}
+
+	/**
+	 * 异步获取文档分页图片，参见 {@link #getPagingImages(YuntuDoc)}。
+	 * 
+	 * @param doc 指定的 <code>YuntuDoc</code> 实例。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含指向每页图片的 URL。
+	 */
+	public CompletableFuture<List<String>> getPagingImagesAsync(YuntuDoc doc) {
+		return getOutputAsync(doc, "images");
+	}
+
+	/**
+	 * 异步获取文档分页 SVG，参见 {@link #getPagingSVGs(YuntuDoc)}。
+	 * 
+	 * @param doc 指定的 <code>YuntuDoc</code> 实例。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含指向每页 SVG 的 URL。
+	 */
+	public CompletableFuture<List<String>> getPagingSVGsAsync(YuntuDoc doc) {
+		return getOutputAsync(doc, "svgs");
+	}
+
+	private static String getFirst(List<String> outputResult) {
+		return outputResult != null && !outputResult.isEmpty() ? outputResult.get(0) : null;
+	}
 }
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion;
+
+import com.jingyue.DocConversion.transport.CircuitBreaker;
+
+/**
+ * 文档转换服务的一个接入点，由云平台和该平台的授权码组成。
+ * <p>
+ * 用多个接入点构造 {@link Converter} 时，每个请求发往延迟最低且健康的接入点：延迟是该接入点最近响应时间的指数加权移动平均（EWMA），
+ * 健康状态由接入点主机的 {@link CircuitBreaker} 决定。
+ * </p>
+ */
+public class YuntuEndpoint {
+
+	/** 计算延迟移动平均时，最新一次响应时间的权重。 */
+	private final static double LATENCY_WEIGHT = 0.3;
+
+	private final int platform;
+
+	private final String host;
+
+	private final String appCode;
+
+	private final String appKey;
+
+	private final String appSecret;
+
+	/** 响应时间的移动平均，单位为毫秒。 */
+	private double latency = 0;
+
+	private long responses = 0;
+
+	/**
+	 * 构建使用授权码的接入点。
+	 * 
+	 * @param appCode  授权码。
+	 * @param platform 云平台。0-ALI, 1-BAIDU, 2-HUAWEI.
+	 */
+	public YuntuEndpoint(String appCode, int platform) {
+		this(appCode, null, null, platform);
+	}
+
+	/**
+	 * 构建使用签名密钥的接入点。
+	 * 
+	 * @param appKey    签名密钥的 key。
+	 * @param appSecret 签名密钥的 secret。
+	 * @param platform  云平台。0-ALI, 1-BAIDU, 2-HUAWEI.
+	 */
+	public YuntuEndpoint(String appKey, String appSecret, int platform) {
+		this(null, appKey, appSecret, platform);
+	}
+
+	private YuntuEndpoint(String appCode, String appKey, String appSecret, int platform) {
+		this.platform = platform;
+		this.host = Converter.getPlatformHost(platform);
+		this.appCode = appCode;
+		this.appKey = appKey;
+		this.appSecret = appSecret;
+	}
+
+	/**
+	 * 返回云平台。
+	 * 
+	 * @return 云平台。
+	 */
+	public int getPlatform() {
+		return platform;
+	}
+
+	/**
+	 * 返回服务器网址。
+	 * 
+	 * @return 服务器网址。
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * 返回授权码。
+	 * 
+	 * @return 授权码；使用签名密钥时返回 <code>null</code>。
+	 */
+	public String getAppCode() {
+		return appCode;
+	}
+
+	/**
+	 * 返回签名密钥的 key。
+	 * 
+	 * @return 签名密钥的 key；使用授权码时返回 <code>null</code>。
+	 */
+	public String getAppKey() {
+		return appKey;
+	}
+
+	String getAppSecret() {
+		return appSecret;
+	}
+
+	/**
+	 * 返回最近响应时间的指数加权移动平均，单位为毫秒。请求失败时，从发送到失败的时间同样计入。
+	 * 
+	 * @return 延迟；尚未收到响应时返回 0。
+	 */
+	public synchronized double getLatency() {
+		return latency;
+	}
+
+	/**
+	 * 返回收到的响应数，包括失败的请求。
+	 * 
+	 * @return 收到的响应数。
+	 */
+	public synchronized long getResponses() {
+		return responses;
+	}
+
+	/**
+	 * 判断接入点是否健康，即接入点主机的熔断器没有打开。
+	 * 
+	 * @return 健康时返回 <code>true</code>。
+	 */
+	public boolean isHealthy() {
+		return CircuitBreaker.forHost(host).getState() != CircuitBreaker.State.OPEN;
+	}
+
+	synchronized void recordLatency(long millis) {
+		latency = responses == 0 ? millis : LATENCY_WEIGHT * millis + (1 - LATENCY_WEIGHT) * latency;
+		responses++;
+	}
+
+	@Override
+	public String toString() {
+		return "YuntuEndpoint[" + platform + ", " + host + ", latency=" + getLatency() + "ms]";
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.common;
+
+/**
+ * 操作在指定的时限内没有完成，例如 {@link com.jingyue.DocConversion.Converter#convert(java.io.File, java.time.Duration)}。
+ * 该异常不是暂时性故障，不会被重试。
+ */
+public class DeadlineExceededException extends YuntuException {
+
+	/** 系统自动生成的系列号。 */
+	private static final long serialVersionUID = -2517348069361425018L;
+
+	/**
+	 * 构造函数。
+	 */
+	public DeadlineExceededException() {
+		super("操作超时，已超过指定的时限。");
+	}
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param cause 因超时而中止的异常，例如读取响应超时。
+	 */
+	public DeadlineExceededException(Throwable cause) {
+		super("操作超时，已超过指定的时限。", cause);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.common;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 预热结果，记录 {@link com.jingyue.DocConversion.Converter#warmUp()} 每个步骤的耗时。
+ */
+public class WarmUpReport {
+
+	/** 解析服务器域名的步骤。 */
+	public static final String STEP_DNS = "dns";
+
+	/** 加载并初始化 MIME 类型表、锁管理器、JSON 解析器等类的步骤。 */
+	public static final String STEP_CLASSES = "classes";
+
+	/** 反复执行请求构建、签名和响应解析代码，使其被 JIT 编译的步骤。 */
+	public static final String STEP_JIT = "jit";
+
+	/** 预先建立 keep-alive 连接的步骤。 */
+	public static final String STEP_CONNECTIONS = "connections";
+
+	private final Map<String, Long> steps = new LinkedHashMap<String, Long>();
+
+	private int connections = 0;
+
+	/**
+	 * 构造函数。
+	 */
+	public WarmUpReport() {
+	}
+
+	/**
+	 * 记录一个步骤的耗时。
+	 *
+	 * @param step   步骤名称。
+	 * @param millis 耗时，单位为毫秒。
+	 */
+	public void addStep(String step, long millis) {
+		steps.put(step, millis);
+	}
+
+	/**
+	 * 返回各步骤的耗时，按执行顺序排列，单位为毫秒。
+	 *
+	 * @return 各步骤的耗时。
+	 */
+	public Map<String, Long> getSteps() {
+		return Collections.unmodifiableMap(steps);
+	}
+
+	/**
+	 * 返回指定步骤的耗时，单位为毫秒。
+	 *
+	 * @param step 步骤名称。
+	 * @return 指定步骤的耗时；该步骤未执行时返回 -1。
+	 */
+	public long getStepMillis(String step) {
+		Long millis = steps.get(step);
+
+		return millis == null ? -1 : millis;
+	}
+
+	/**
+	 * 返回所有步骤的总耗时，单位为毫秒。
+	 *
+	 * @return 所有步骤的总耗时。
+	 */
+	public long getTotalMillis() {
+		long total = 0;
+
+		for (long millis : steps.values()) {
+			total += millis;
+		}
+		return total;
+	}
+
+	/**
+	 * 返回预先建立的、之后的请求可以复用的连接数。
+	 *
+	 * @return 预先建立的连接数；默认传输层下使用授权码的请求不能复用预先建立的连接，为 0。
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * 设置预先建立的连接数。
+	 *
+	 * @param connections 预先建立的连接数。
+	 */
+	public void setConnections(int connections) {
+		this.connections = connections;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		for (Map.Entry<String, Long> step : steps.entrySet()) {
+			sb.append(step.getKey()).append('=').append(step.getValue()).append("ms, ");
+		}
+		return sb.append("total=").append(getTotalMillis()).append("ms, connections=").append(connections)
+				.toString();
+	}
+}
@@ -29,6 +29,9 @@ public class YuntuException extends Exception {
 	/** 系统自动生成的系列号。 */
 	private static final long serialVersionUID = -1173377338525899431L;
 
+	/** 服务器返回的 HTTP 状态码；没有收到响应时为 0。 */
+	private int statusCode = 0;
+
 	/**
 	 * 用给定的异常信息构造新实例。
 	 * 
@@ -48,4 +51,38 @@ public class YuntuException extends Exception {
 	public YuntuException(Throwable cause) {
 		super(cause);
 	}
+
+	/**
+	 * 用给定的异常信息和表示异常原因的对象构造新实例。
+	 * 
+	 * @param message
+	 *            异常信息。
+	 * @param cause
+	 *            异常原因。
+	 */
+	public YuntuException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	/**
+	 * 用给定的异常信息和服务器返回的 HTTP 状态码构造新实例。
+	 * 
+	 * @param message
+	 *            异常信息。
+	 * @param statusCode
+	 *            HTTP 状态码。
+	 */
+	public YuntuException(String message, int statusCode) {
+		super(message);
+		this.statusCode = statusCode;
+	}
+
+	/**
+	 * 返回服务器返回的 HTTP 状态码。
+	 * 
+	 * @return HTTP 状态码；请求未收到响应（例如网络连接失败）时返回 0。
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
 }
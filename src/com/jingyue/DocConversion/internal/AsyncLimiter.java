@@ -0,0 +1,134 @@
+package com.jingyue.DocConversion.internal;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A non-blocking concurrency limiter. Callers that cannot get a permit at once
+ * are queued and receive it, in order, as other callers release theirs. No
+ * thread is ever parked while waiting for a permit.
+ */
+public class AsyncLimiter {
+
+	private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<CompletableFuture<Void>>();
+
+	private int limit;
+
+	private int inFlight = 0;
+
+	/**
+	 * Constructs a limiter.
+	 * 
+	 * @param limit the maximum number of permits handed out at the same time.
+	 */
+	public AsyncLimiter(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Requests a permit. The returned future completes once the permit is
+	 * granted; the caller must then call {@link #release()} exactly once.
+	 * 
+	 * @return a future that completes when the permit is granted.
+	 */
+	public CompletableFuture<Void> acquire() {
+		return acquire(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Requests a permit unless that would queue more than the specified number
+	 * of callers. The returned future completes once the permit is granted; the
+	 * caller must then call {@link #release()} exactly once.
+	 * 
+	 * @param maxQueueLength the maximum number of waiting callers.
+	 * @return a future that completes when the permit is granted, or
+	 *         <code>null</code> if no permit is free and the queue is full.
+	 */
+	public CompletableFuture<Void> acquire(int maxQueueLength) {
+		synchronized (this) {
+			if (inFlight < limit) {
+				inFlight++;
+				return CompletableFuture.completedFuture(null);
+			}
+			if (waiters.size() >= maxQueueLength) {
+				return null;
+			}
+
+			CompletableFuture<Void> waiter = new CompletableFuture<Void>();
+
+			waiters.addLast(waiter);
+			return waiter;
+		}
+	}
+
+	/**
+	 * Releases a permit, handing it to the next waiting caller if there is one.
+	 */
+	public void release() {
+		for (;;) {
+			CompletableFuture<Void> next;
+
+			synchronized (this) {
+				next = inFlight <= limit ? waiters.pollFirst() : null;
+				if (next == null) {
+					inFlight--;
+					return;
+				}
+			}
+			// A cancelled waiter gives the permit straight to the next one.
+			if (next.complete(null)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Changes the number of permits. Lowering the limit takes effect as permits
+	 * are released.
+	 * 
+	 * @param limit the maximum number of permits handed out at the same time.
+	 */
+	public void setLimit(int limit) {
+		ArrayDeque<CompletableFuture<Void>> granted = new ArrayDeque<CompletableFuture<Void>>();
+
+		synchronized (this) {
+			this.limit = limit;
+			while (inFlight < limit && !waiters.isEmpty()) {
+				granted.addLast(waiters.pollFirst());
+				inFlight++;
+			}
+		}
+		for (CompletableFuture<Void> waiter : granted) {
+			if (!waiter.complete(null)) {
+				release();
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum number of permits handed out at the same time.
+	 * 
+	 * @return the current limit.
+	 */
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the number of permits currently held.
+	 * 
+	 * @return the number of permits currently held.
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Returns the number of callers waiting for a permit.
+	 * 
+	 * @return the number of waiting callers.
+	 */
+	public synchronized int getQueueLength() {
+		return waiters.size();
+	}
+}
@@ -0,0 +1,80 @@
+package com.jingyue.DocConversion.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of large I/O buffers, so that copying request bodies neither
+ * allocates a buffer per request nor copies through tiny arrays.
+ */
+public class BufferPool {
+
+	/** The size of each pooled buffer. */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The maximum number of idle buffers kept in the pool. */
+	private static final int MAX_POOLED = 32;
+
+	private static final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+
+	private static final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * Takes a buffer from the pool, allocating one if the pool is empty.
+	 * 
+	 * @return a buffer of {@link #BUFFER_SIZE} bytes.
+	 */
+	public static byte[] acquire() {
+		byte[] buffer = buffers.poll();
+
+		if (buffer == null) {
+			return new byte[BUFFER_SIZE];
+		}
+		pooled.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool.
+	 * 
+	 * @param buffer the buffer obtained from {@link #acquire()}.
+	 */
+	public static void release(byte[] buffer) {
+		// The bound is approximate under contention, which is good enough here.
+		if (buffer != null && buffer.length == BUFFER_SIZE && pooled.get() < MAX_POOLED) {
+			pooled.incrementAndGet();
+			buffers.offer(buffer);
+		}
+	}
+
+	/**
+	 * Copies the input stream to the output stream through a pooled buffer.
+	 * Neither stream is closed.
+	 * 
+	 * @param in  the stream to read from.
+	 * @param out the stream to write to.
+	 * @return the number of bytes copied.
+	 * @throws IOException
+	 */
+	public static long copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = acquire();
+		long total = 0;
+
+		try {
+			int n;
+
+			while ((n = in.read(buffer, 0, buffer.length)) >= 0) {
+				if (n > 0) {
+					out.write(buffer, 0, n);
+					total += n;
+				}
+			}
+		} finally {
+			release(buffer);
+		}
+		return total;
+	}
+}
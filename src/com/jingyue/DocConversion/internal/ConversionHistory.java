@@ -0,0 +1,192 @@
+package com.jingyue.DocConversion.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The conversion durations observed so far, by kind of document. A kind is the
+ * category of the file (Office, CAD, PDF or other), the size class of the file
+ * and the requested output type.
+ * <p>
+ * For each kind the history tracks a low quantile of the durations: each
+ * conversion that ended before the estimate lowers it a little, and each that
+ * ended after raises it, by steps whose ratio makes the estimate settle where
+ * {@link #QUANTILE} of the conversions end before it. The steps are taken on the
+ * logarithm of the estimate, since durations of one kind spread over a wide
+ * range. A poller only knows that a conversion ended between two checks, and
+ * often that it ended before the first one; the tracker needs no more than
+ * which side of the estimate it ended on, so the spacing of the checks does not
+ * bias it.
+ * <p>
+ * Durations are also recorded under the kind without its size class, which
+ * predicts documents of unknown size and documents of a size class not seen
+ * yet.
+ */
+public class ConversionHistory {
+
+	/** The history shared by every converter. */
+	public static final ConversionHistory DEFAULT = new ConversionHistory();
+
+	/** The fraction of conversions predicted to end before the estimate. */
+	public static final double QUANTILE = 0.25;
+
+	/** The step of the logarithm of the estimate per conversion. */
+	private static final double RATE = 0.1;
+
+	/** The durations of a kind needed before it predicts anything. */
+	private static final int MIN_SAMPLES = 3;
+
+	/** The most kinds kept, so that arbitrary output types cannot grow the map. */
+	private static final int MAX_KINDS = 4096;
+
+	/** The size of the smallest size class; each class doubles the previous. */
+	private static final long SIZE_UNIT = 64 * 1024;
+
+	private static final int MAX_SIZE_CLASS = 15;
+
+	private final Map<String, Estimate> estimates = new ConcurrentHashMap<String, Estimate>();
+
+	/**
+	 * Returns the kind of a document.
+	 *
+	 * @param fileName   the file name or URL of the document, whose extension
+	 *                   gives its category; may be <code>null</code>.
+	 * @param fileSize   the size of the document in bytes, or a negative number
+	 *                   if unknown.
+	 * @param outputType the requested output type.
+	 * @return the kind of the document.
+	 */
+	public static Kind getKind(String fileName, long fileSize, String outputType) {
+		String category = "other";
+
+		if (fileName != null) {
+			String name = fileName;
+			int end = name.indexOf('?');
+
+			if (end >= 0) {
+				name = name.substring(0, end);
+			}
+			if (MimeTypes.isOfficeDocument(name)) {
+				category = "office";
+			} else if (MimeTypes.isCADDocument(name)) {
+				category = "cad";
+			} else if (MimeTypes.isPDFDocument(name)) {
+				category = "pdf";
+			}
+		}
+
+		int sizeClass = -1;
+
+		if (fileSize >= 0) {
+			sizeClass = Math.min(MAX_SIZE_CLASS, 63 - Long.numberOfLeadingZeros(fileSize / SIZE_UNIT + 1));
+		}
+		return new Kind(category + "/" + outputType, sizeClass);
+	}
+
+	/**
+	 * Records a successful conversion that ended between two times.
+	 *
+	 * @param kind  the kind of the document.
+	 * @param after the milliseconds since submission when the document was last
+	 *              seen being converted, or 0 if never.
+	 * @param by    the milliseconds since submission when the document was seen
+	 *              converted.
+	 */
+	public void record(Kind kind, long after, long by) {
+		add(kind.category, after, by);
+		if (kind.sizeClass >= 0) {
+			add(kind.category + "/" + kind.sizeClass, after, by);
+		}
+	}
+
+	/**
+	 * Predicts the duration that {@link #QUANTILE} of the conversions of a kind
+	 * end before.
+	 *
+	 * @param kind the kind of the document.
+	 * @return the predicted duration in milliseconds, or -1 if the kind has too
+	 *         few recorded conversions.
+	 */
+	public long predict(Kind kind) {
+		Estimate found = kind.sizeClass < 0 ? null : estimates.get(kind.category + "/" + kind.sizeClass);
+
+		if (found == null || found.getCount() < MIN_SAMPLES) {
+			found = estimates.get(kind.category);
+		}
+		if (found == null || found.getCount() < MIN_SAMPLES) {
+			return -1;
+		}
+		return found.get();
+	}
+
+	private void add(String key, long after, long by) {
+		Estimate found = estimates.get(key);
+
+		if (found == null) {
+			if (estimates.size() >= MAX_KINDS) {
+				return;
+			}
+			found = estimates.computeIfAbsent(key, k -> new Estimate());
+		}
+		found.add(after, by);
+	}
+
+	/**
+	 * A kind of document, created by {@link ConversionHistory#getKind}.
+	 */
+	public static final class Kind {
+
+		/** The category and output type. */
+		private final String category;
+
+		/** The size class, or -1 if the size is unknown. */
+		private final int sizeClass;
+
+		Kind(String category, int sizeClass) {
+			this.category = category;
+			this.sizeClass = sizeClass;
+		}
+
+		@Override
+		public String toString() {
+			return sizeClass < 0 ? category : category + "/" + sizeClass;
+		}
+	}
+
+	/**
+	 * The quantile estimate of one kind.
+	 */
+	private static final class Estimate {
+
+		private int count = 0;
+
+		/** The logarithm of the estimate in milliseconds. */
+		private double value;
+
+		synchronized void add(long after, long by) {
+			if (count == 0) {
+				value = Math.log(Math.max(1, (after + by) / 2));
+			} else {
+				long estimate = (long) Math.exp(value);
+
+				// A conversion seen on both sides of the estimate counts by its middle.
+				if (by <= estimate || after < estimate && (after + by) / 2 <= estimate) {
+					value -= RATE * (1 - QUANTILE);
+				} else {
+					value += RATE * QUANTILE;
+				}
+			}
+			if (count < Integer.MAX_VALUE) {
+				count++;
+			}
+		}
+
+		synchronized int getCount() {
+			return count;
+		}
+
+		synchronized long get() {
+			return (long) Math.exp(value);
+		}
+	}
+}
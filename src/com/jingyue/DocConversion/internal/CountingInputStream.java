@@ -0,0 +1,59 @@
+package com.jingyue.DocConversion.internal;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that counts the bytes read through it.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+	private long count = 0;
+
+	/**
+	 * Constructs a counting input stream.
+	 * 
+	 * @param in the underlying input stream.
+	 */
+	public CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * Returns the number of bytes read so far.
+	 * 
+	 * @return the number of bytes read so far.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+
+		if (b >= 0) {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+
+		if (n > 0) {
+			count += n;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+
+		count += skipped;
+		return skipped;
+	}
+}
@@ -0,0 +1,32 @@
+package com.jingyue.DocConversion.internal;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads, so that the SDK's background threads never
+ * keep the JVM alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	private final String name;
+
+	/**
+	 * Constructs a thread factory.
+	 * 
+	 * @param name the name prefix of the created threads.
+	 */
+	public DaemonThreadFactory(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, name + "-" + nextId.incrementAndGet()); //$NON-NLS-1$
+
+		thread.setDaemon(true);
+		return thread;
+	}
+}
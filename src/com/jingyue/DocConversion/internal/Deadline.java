@@ -0,0 +1,209 @@
+package com.jingyue.DocConversion.internal;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.jingyue.DocConversion.common.DeadlineExceededException;
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * The point in time by which the current operation must finish. A deadline is
+ * bound to the calling thread while the operation runs, so that every layer
+ * below it (permit waits, retries, polling, socket connect and read timeouts)
+ * derives its own timeout from the time remaining instead of holding a thread
+ * for a fixed period. Without a deadline, those layers use their defaults.
+ */
+public final class Deadline {
+
+	/** The connect timeout in milliseconds used when no deadline is set. */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10 * 1000;
+
+	/** The read timeout in milliseconds used when no deadline is set. */
+	public static final int DEFAULT_READ_TIMEOUT = 60 * 1000;
+
+	private static final ThreadLocal<Deadline> current = new ThreadLocal<Deadline>();
+
+	/** The expiry as a <code>System.nanoTime()</code> value. */
+	private final long expiresAt;
+
+	/**
+	 * A task run under a deadline.
+	 * 
+	 * @param <V> the result type.
+	 */
+	public interface Task<V> {
+
+		V run() throws YuntuException;
+	}
+
+	private Deadline(long expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * Returns a deadline the specified time from now.
+	 * 
+	 * @param timeout the time allowed.
+	 * @return the deadline.
+	 */
+	public static Deadline after(Duration timeout) {
+		if (timeout == null || timeout.isNegative()) {
+			throw new IllegalArgumentException("timeout");
+		}
+
+		long nanos;
+
+		try {
+			nanos = timeout.toNanos();
+		} catch (ArithmeticException e) {
+			nanos = Long.MAX_VALUE / 2;
+		}
+		return new Deadline(System.nanoTime() + Math.min(nanos, Long.MAX_VALUE / 2));
+	}
+
+	/**
+	 * Returns the deadline bound to the calling thread.
+	 * 
+	 * @return the deadline, or <code>null</code> if there is none.
+	 */
+	public static Deadline current() {
+		return current.get();
+	}
+
+	/**
+	 * Runs a task with a deadline the specified time from now bound to the
+	 * calling thread. If the thread already has an earlier deadline, that one
+	 * stays in force.
+	 * 
+	 * @param timeout the time allowed.
+	 * @param task    the task.
+	 * @return the result of the task.
+	 * @throws YuntuException if the task fails.
+	 */
+	public static <V> V within(Duration timeout, Task<V> task) throws YuntuException {
+		Deadline deadline = after(timeout);
+		Deadline outer = current.get();
+
+		return with(outer != null && outer.expiresAt - deadline.expiresAt < 0 ? outer : deadline, task);
+	}
+
+	/**
+	 * Runs a task with the specified deadline bound to the calling thread, for
+	 * example to carry the caller's deadline to a worker thread.
+	 * 
+	 * @param deadline the deadline, or <code>null</code> for none.
+	 * @param task     the task.
+	 * @return the result of the task.
+	 * @throws YuntuException if the task fails.
+	 */
+	public static <V> V with(Deadline deadline, Task<V> task) throws YuntuException {
+		Deadline previous = current.get();
+
+		current.set(deadline);
+		try {
+			return task.run();
+		} finally {
+			if (previous == null) {
+				current.remove();
+			} else {
+				current.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Returns the time left before the deadline.
+	 * 
+	 * @return the remaining milliseconds, never negative.
+	 */
+	public long getRemainingMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+	}
+
+	/**
+	 * Determines if the deadline has passed.
+	 * 
+	 * @return <code>true</code> if the deadline has passed.
+	 */
+	public boolean isExpired() {
+		return expiresAt - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * Determines if the calling thread has a deadline that has passed.
+	 * 
+	 * @return <code>true</code> if the deadline has passed.
+	 */
+	public static boolean isCurrentExpired() {
+		Deadline deadline = current.get();
+
+		return deadline != null && deadline.isExpired();
+	}
+
+	/**
+	 * Throws if the calling thread has a deadline that has passed.
+	 * 
+	 * @throws DeadlineExceededException if the deadline has passed.
+	 */
+	public static void check() throws DeadlineExceededException {
+		if (isCurrentExpired()) {
+			throw new DeadlineExceededException();
+		}
+	}
+
+	/**
+	 * Returns the specified timeout, shortened to the time left before the
+	 * calling thread's deadline.
+	 * 
+	 * @param millis the timeout in milliseconds without a deadline.
+	 * @return the timeout in milliseconds, at least 1.
+	 * @throws DeadlineExceededException if the deadline has passed.
+	 */
+	public static long timeout(long millis) throws DeadlineExceededException {
+		Deadline deadline = current.get();
+
+		if (deadline == null) {
+			return millis;
+		}
+
+		long remaining = deadline.getRemainingMillis();
+
+		if (remaining <= 0) {
+			throw new DeadlineExceededException();
+		}
+		return Math.min(millis, remaining);
+	}
+
+	/**
+	 * Returns the socket connect timeout for the calling thread.
+	 * 
+	 * @return the connect timeout in milliseconds.
+	 * @throws DeadlineExceededException if the deadline has passed.
+	 */
+	public static int getConnectTimeout() throws DeadlineExceededException {
+		return (int) timeout(DEFAULT_CONNECT_TIMEOUT);
+	}
+
+	/**
+	 * Returns the socket read timeout for the calling thread.
+	 * 
+	 * @return the read timeout in milliseconds.
+	 * @throws DeadlineExceededException if the deadline has passed.
+	 */
+	public static int getReadTimeout() throws DeadlineExceededException {
+		return (int) timeout(DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Determines if a wait of the specified length ends before the calling
+	 * thread's deadline.
+	 * 
+	 * @param millis the wait in milliseconds.
+	 * @return <code>true</code> if there is no deadline or the wait ends before it.
+	 */
+	public static boolean allows(long millis) {
+		Deadline deadline = current.get();
+
+		return deadline == null || deadline.getRemainingMillis() > millis;
+	}
+}
@@ -0,0 +1,259 @@
+package com.jingyue.DocConversion.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Chains futures so that cancelling the result aborts the work it waits for.
+ * A future returned by <code>CompletableFuture.thenCompose</code> or
+ * <code>handle</code> completes on cancellation but leaves the futures it
+ * depends on running, so a cancelled request would keep its connection and
+ * its permits until it ends by itself.
+ */
+public final class Futures {
+
+	/**
+	 * Runs the work that follows a delay. Inner transports may block in
+	 * <code>getAsync</code>, so the pool grows with the number of such calls
+	 * instead of queueing them behind each other, and idle threads exit.
+	 */
+	private static final ExecutorService EXECUTOR = Executors
+			.newCachedThreadPool(new DaemonThreadFactory("YuntuAsync"));
+
+	/** Ends the delays; its worker only hands them to an executor. */
+	private static final TimingWheel TIMER = new TimingWheel("YuntuTimer");
+
+	private Futures() {
+	}
+
+	/**
+	 * Returns the executor that completes {@link #delay(long, TimeUnit)}.
+	 *
+	 * @return the shared executor, whose daemon threads exit when idle.
+	 */
+	public static Executor getExecutor() {
+		return EXECUTOR;
+	}
+
+	/**
+	 * Returns a future completed on {@link #getExecutor()} after the specified
+	 * delay. Unlike <code>CompletableFuture.delayedExecutor</code>, the
+	 * dependent stages never run on the common pool.
+	 *
+	 * @param delay the delay.
+	 * @param unit  the unit of the delay.
+	 * @return a future completed after the delay.
+	 * @see #delay(long, TimeUnit, Executor)
+	 */
+	public static CompletableFuture<Void> delay(long delay, TimeUnit unit) {
+		return delay(delay, unit, EXECUTOR);
+	}
+
+	/**
+	 * Returns a future completed on the specified executor after the specified
+	 * delay, so that stages attached to it without an executor run there.
+	 * Cancelling the future cancels the timer; the future fails if the executor
+	 * rejects the completion.
+	 *
+	 * @param delay    the delay.
+	 * @param unit     the unit of the delay.
+	 * @param executor the executor to complete the future on.
+	 * @return a future completed after the delay.
+	 */
+	public static CompletableFuture<Void> delay(long delay, TimeUnit unit, final Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor");
+		}
+
+		final CompletableFuture<Void> result = new CompletableFuture<Void>();
+		final TimingWheel.Timeout timeout = TIMER.schedule(() -> {
+			try {
+				executor.execute(() -> result.complete(null));
+			} catch (RejectedExecutionException e) {
+				result.completeExceptionally(e);
+			}
+		}, delay, unit);
+
+		result.whenComplete((value, e) -> {
+			if (result.isCancelled()) {
+				timeout.cancel();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Like <code>first.thenCompose(next)</code>, but cancelling the result
+	 * cancels <code>first</code>, or the future returned by <code>next</code>
+	 * once it exists.
+	 *
+	 * @param first   the future the result waits for first.
+	 * @param next    called with the value of <code>first</code>, returns the
+	 *                future that completes the result.
+	 * @param abandon run instead of <code>next</code> if <code>first</code>
+	 *                succeeded after the result was cancelled, to give back
+	 *                what the value of <code>first</code> holds; may be
+	 *                <code>null</code>.
+	 * @return a future completed like the one returned by <code>next</code>, or
+	 *         like <code>first</code> if it fails.
+	 */
+	public static <T, U> CompletableFuture<U> thenCompose(CompletableFuture<T> first,
+			final Function<? super T, ? extends CompletableFuture<U>> next, Runnable abandon) {
+
+		return compose(first, (value, e) -> {
+			if (e != null) {
+				CompletableFuture<U> failed = new CompletableFuture<U>();
+
+				failed.completeExceptionally(e);
+				return failed;
+			}
+			return next.apply(value);
+		}, abandon);
+	}
+
+	/**
+	 * Like {@link #thenCompose(CompletableFuture, Function, Runnable)}, but if
+	 * <code>first</code> is not done yet, <code>next</code> runs on the
+	 * specified executor instead of the thread that completes
+	 * <code>first</code>. A permit released by one request and granted to a
+	 * queued one would otherwise start the queued request on the releasing
+	 * thread, nested in its stack; with a blocking inner transport, a long
+	 * queue overflows that stack.
+	 *
+	 * @param first    the future the result waits for first.
+	 * @param next     called with the value of <code>first</code>, returns the
+	 *                 future that completes the result.
+	 * @param abandon  run instead of <code>next</code> if the value of
+	 *                 <code>first</code> cannot be used, because the result was
+	 *                 cancelled or the executor rejected <code>next</code>; may
+	 *                 be <code>null</code>.
+	 * @param executor runs <code>next</code> if <code>first</code> completes
+	 *                 later.
+	 * @return a future completed like the one returned by <code>next</code>, or
+	 *         like <code>first</code> if it fails.
+	 */
+	public static <T, U> CompletableFuture<U> thenComposeAsync(final CompletableFuture<T> first,
+			Function<? super T, ? extends CompletableFuture<U>> next, final Runnable abandon,
+			final Executor executor) {
+
+		if (first.isDone()) {
+			return thenCompose(first, next, abandon);
+		}
+
+		final CompletableFuture<T> handed = new CompletableFuture<T>();
+
+		handed.whenComplete((value, e) -> {
+			if (handed.isCancelled()) {
+				first.cancel(false);
+			}
+		});
+		first.whenComplete((value, e) -> {
+			try {
+				executor.execute(() -> {
+					if (e != null) {
+						handed.completeExceptionally(e);
+					} else if (!handed.complete(value) && abandon != null) {
+						abandon.run();
+					}
+				});
+			} catch (RejectedExecutionException rejected) {
+				handed.completeExceptionally(e != null ? e : rejected);
+				if (e == null && abandon != null) {
+					abandon.run();
+				}
+			}
+		});
+		return thenCompose(handed, next, abandon);
+	}
+
+	/**
+	 * Like <code>first.handle(next).thenCompose(f -&gt; f)</code>, but cancelling
+	 * the result cancels <code>first</code>, or the future returned by
+	 * <code>next</code> once it exists.
+	 *
+	 * @param first   the future the result waits for first.
+	 * @param next    called with the value or the failure of <code>first</code>,
+	 *                returns the future that completes the result.
+	 * @param abandon run instead of <code>next</code> if <code>first</code>
+	 *                succeeded after the result was cancelled; may be
+	 *                <code>null</code>.
+	 * @return a future completed like the one returned by <code>next</code>.
+	 */
+	public static <T, U> CompletableFuture<U> compose(CompletableFuture<T> first,
+			final BiFunction<? super T, Throwable, ? extends CompletableFuture<U>> next, final Runnable abandon) {
+
+		final Composition<U> result = new Composition<U>(first);
+
+		first.whenComplete((value, e) -> {
+			if (result.isDone()) {
+				if (e == null && abandon != null) {
+					abandon.run();
+				}
+				return;
+			}
+
+			CompletableFuture<U> second;
+
+			try {
+				second = next.apply(value, e);
+			} catch (Throwable failure) {
+				result.completeExceptionally(failure);
+				return;
+			}
+			result.setSecond(second);
+			second.whenComplete((body, failure) -> {
+				if (failure != null) {
+					result.completeExceptionally(failure);
+				} else {
+					result.complete(body);
+				}
+			});
+		});
+		return result;
+	}
+
+	/**
+	 * The result of {@link Futures#compose}, which passes its cancellation on
+	 * to the future it currently waits for.
+	 */
+	private static final class Composition<U> extends CompletableFuture<U> {
+
+		private final Future<?> first;
+
+		private volatile Future<?> second = null;
+
+		Composition(Future<?> first) {
+			this.first = first;
+		}
+
+		void setSecond(Future<?> second) {
+			this.second = second;
+			// Cancelled while next was running.
+			if (isCancelled()) {
+				second.cancel(true);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (!super.cancel(mayInterruptIfRunning)) {
+				return false;
+			}
+
+			Future<?> current = second;
+
+			first.cancel(true);
+			if (current != null) {
+				current.cancel(true);
+			}
+			return true;
+		}
+	}
+}
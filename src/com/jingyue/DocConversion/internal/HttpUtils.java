@@ -18,30 +18,349 @@
  */
 package com.jingyue.DocConversion.internal;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
 
-import com.cloud.apigateway.sdk.utils.Client;
-import com.cloud.apigateway.sdk.utils.Request;
+import com.jingyue.DocConversion.common.DeadlineExceededException;
 import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.transport.TrafficClass;
+import com.jingyue.DocConversion.transport.TrafficStatistics;
 
 public class HttpUtils {
 
+	/** The default maximum number of concurrent control requests per host. */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = TrafficClass.CONTROL.getDefaultMaxConnections();
+
+	/** How long a pooled connection may stay idle before it is evicted. */
+	public static final long IDLE_CONNECTION_TIMEOUT = 30 * 1000L;
+
+	/** The encodings the client accepts in responses. */
+	public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The connect and read timeout used when opening connections ahead of time. */
+	private static final int WARM_UP_TIMEOUT = 10 * 1000;
+
+	/** The number of distinct hosts the connection pool is sized for. */
+	private static final int MAX_ROUTES = 4;
+
+	/** The per-host limiters of each traffic class. */
+	private static final Map<TrafficClass, ConcurrentMap<String, AsyncLimiter>> hostLimiters = new EnumMap<TrafficClass, ConcurrentMap<String, AsyncLimiter>>(
+			TrafficClass.class);
+
+	private static final Map<TrafficClass, Integer> maxConnections = new EnumMap<TrafficClass, Integer>(
+			TrafficClass.class);
+
+	private static final Map<TrafficClass, PoolingHttpClientConnectionManager> connectionManagers = new EnumMap<TrafficClass, PoolingHttpClientConnectionManager>(
+			TrafficClass.class);
+
+	private static final Map<TrafficClass, CloseableHttpClient> pooledClients = new EnumMap<TrafficClass, CloseableHttpClient>(
+			TrafficClass.class);
+
+	static {
+		for (TrafficClass trafficClass : TrafficClass.values()) {
+			hostLimiters.put(trafficClass, new ConcurrentHashMap<String, AsyncLimiter>());
+			maxConnections.put(trafficClass, trafficClass.getDefaultMaxConnections());
+		}
+	}
+
+	/**
+	 * Returns the maximum number of concurrent control requests per host.
+	 * 
+	 * @return the maximum number of concurrent control requests per host.
+	 */
+	public static int getMaxConnectionsPerHost() {
+		return getMaxConnections(TrafficClass.CONTROL);
+	}
+
+	/**
+	 * Sets the maximum number of concurrent requests per host of every traffic
+	 * class.
+	 * 
+	 * @param max the maximum number of concurrent requests per host.
+	 */
+	public static void setMaxConnectionsPerHost(int max) {
+		for (TrafficClass trafficClass : TrafficClass.values()) {
+			setMaxConnections(trafficClass, max);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of concurrent requests per host of a traffic
+	 * class.
+	 * 
+	 * @param trafficClass the traffic class.
+	 * @return the maximum number of concurrent requests per host.
+	 */
+	public static synchronized int getMaxConnections(TrafficClass trafficClass) {
+		return maxConnections.get(trafficClass);
+	}
+
+	/**
+	 * Sets the maximum number of concurrent requests per host of a traffic
+	 * class, which is also the size of its connection pool per host. The
+	 * existing limiters are updated in place: requests already in flight keep
+	 * their permits and count against the new limit, and waiting requests use
+	 * the new limit.
+	 * 
+	 * @param trafficClass the traffic class.
+	 * @param max          the maximum number of concurrent requests per host.
+	 */
+	public static void setMaxConnections(TrafficClass trafficClass, int max) {
+		if (max <= 0) {
+			throw new IllegalArgumentException("max must be positive: " + max);
+		}
+		synchronized (HttpUtils.class) {
+			maxConnections.put(trafficClass, max);
+
+			PoolingHttpClientConnectionManager connectionManager = connectionManagers.get(trafficClass);
+
+			if (connectionManager != null) {
+				connectionManager.setMaxTotal(max * MAX_ROUTES);
+				connectionManager.setDefaultMaxPerRoute(max);
+			}
+		}
+		for (AsyncLimiter limiter : hostLimiters.get(trafficClass).values()) {
+			limiter.setLimit(max);
+		}
+	}
+
+	/**
+	 * Returns the pooled HTTP client of a traffic class. Each traffic class has
+	 * its own connection pool, so that uploads cannot take the connections of
+	 * control requests. Connections are kept alive between requests and
+	 * evicted after they stay idle for {@link #IDLE_CONNECTION_TIMEOUT}
+	 * milliseconds.
+	 * 
+	 * @param trafficClass the traffic class.
+	 * @return the pooled HTTP client.
+	 */
+	public static synchronized CloseableHttpClient getPooledClient(TrafficClass trafficClass) {
+		CloseableHttpClient pooledClient = pooledClients.get(trafficClass);
+
+		if (pooledClient == null) {
+			int maxConnectionsPerHost = maxConnections.get(trafficClass);
+			Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+					.register("http", PlainConnectionSocketFactory.getSocketFactory())
+					.register("https", new SSLConnectionSocketFactory(SharedSSLContext.getSocketFactory(),
+							SSLConnectionSocketFactory.getDefaultHostnameVerifier()))
+					.build();
+
+			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
+
+			connectionManager.setMaxTotal(maxConnectionsPerHost * MAX_ROUTES);
+			connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+			connectionManager.setValidateAfterInactivity(2000);
+
+			// Responses are decompressed by decodeBody, which also records the traffic.
+			pooledClient = HttpClients.custom().setConnectionManager(connectionManager).disableContentCompression()
+					.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+
+						@Override
+						public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+							long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response,
+									context);
+
+							if (duration <= 0 || duration > IDLE_CONNECTION_TIMEOUT) {
+								duration = IDLE_CONNECTION_TIMEOUT;
+							}
+							return duration;
+						}
+					}).evictExpiredConnections()
+					.evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS).build();
+			connectionManagers.put(trafficClass, connectionManager);
+			pooledClients.put(trafficClass, pooledClient);
+		}
+		return pooledClient;
+	}
+
+	/**
+	 * Acquires a request permit of a traffic class for the specified host,
+	 * blocking while the host already has {@link #getMaxConnections} requests
+	 * of that class in flight, but not past the calling thread's
+	 * {@link Deadline}. The caller must release the returned permit when the
+	 * request completes.
+	 * 
+	 * @param trafficClass the traffic class of the request.
+	 * @param host         the host to send a request to.
+	 * @return the limiter the permit was acquired from.
+	 * @throws YuntuException if the calling thread is interrupted, or its
+	 *                        deadline passes while waiting.
+	 */
+	public static AsyncLimiter acquire(TrafficClass trafficClass, String host) throws YuntuException {
+		AsyncLimiter limiter = getAsyncLimiter(trafficClass, host);
+		CompletableFuture<Void> permit = limiter.acquire();
+
+		try {
+			if (Deadline.current() == null) {
+				permit.get();
+			} else {
+				permit.get(Deadline.timeout(Long.MAX_VALUE), TimeUnit.MILLISECONDS);
+			}
+		} catch (TimeoutException e) {
+			if (!permit.cancel(false)) {
+				limiter.release();
+			}
+			throw new DeadlineExceededException(e);
+		} catch (DeadlineExceededException e) {
+			if (!permit.cancel(false)) {
+				limiter.release();
+			}
+			throw e;
+		} catch (InterruptedException e) {
+			if (!permit.cancel(false)) {
+				limiter.release();
+			}
+			Thread.currentThread().interrupt();
+			throw new YuntuException(e);
+		} catch (ExecutionException e) {
+			throw new YuntuException(e.getCause());
+		}
+		return limiter;
+	}
+
+	/**
+	 * Opens connections to the specified host in the shared connection pool and
+	 * returns them to the pool idle, so that the next requests skip the TCP and
+	 * TLS handshakes. At most {@link #getMaxConnectionsPerHost()} connections
+	 * are opened; connections already in the pool count towards the total.
+	 * 
+	 * @param host        the scheme and host, e.g. "https://server.9yuntu.cn".
+	 * @param connections the number of connections wanted.
+	 * @return the number of connections left idle in the pool for the host.
+	 * @throws IOException if a connection cannot be opened.
+	 */
+	public static int openPooledConnections(String host, int connections) throws IOException {
+		getPooledClient(TrafficClass.CONTROL);
+
+		PoolingHttpClientConnectionManager connectionManager;
+		int maxConnectionsPerHost;
+
+		synchronized (HttpUtils.class) {
+			connectionManager = connectionManagers.get(TrafficClass.CONTROL);
+			maxConnectionsPerHost = maxConnections.get(TrafficClass.CONTROL);
+		}
+
+		HttpHost target = HttpHost.create(host);
+		boolean secure = "https".equalsIgnoreCase(target.getSchemeName());
+		int port = target.getPort() > 0 ? target.getPort() : (secure ? 443 : 80);
+		HttpRoute route = new HttpRoute(new HttpHost(target.getHostName(), port, target.getSchemeName()), null,
+				secure);
+		HttpClientContext context = HttpClientContext.create();
+		List<HttpClientConnection> opened = new ArrayList<HttpClientConnection>();
+
+		try {
+			for (int i = Math.min(connections, maxConnectionsPerHost); i > 0; i--) {
+				HttpClientConnection conn = connectionManager.requestConnection(route, null).get(WARM_UP_TIMEOUT,
+						TimeUnit.MILLISECONDS);
+
+				opened.add(conn);
+				if (!conn.isOpen()) {
+					connectionManager.connect(conn, route, WARM_UP_TIMEOUT, context);
+					connectionManager.routeComplete(conn, route, context);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			for (HttpClientConnection conn : opened) {
+				connectionManager.releaseConnection(conn, null, IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		}
+		return opened.size();
+	}
+
+	/**
+	 * Completes a TLS handshake with the specified host through
+	 * {@link SharedSSLContext} and closes the connection without sending a
+	 * request. The session stays in the shared session cache, so the next
+	 * connection of any client that uses the shared context resumes it instead
+	 * of running a full handshake. Plain HTTP hosts are skipped.
+	 * 
+	 * @param host the scheme and host, e.g. "https://server.9yuntu.cn".
+	 * @return <code>true</code> if a session was cached for the host.
+	 * @throws IOException if the connection or the handshake fails.
+	 */
+	public static boolean openTlsSession(String host) throws IOException {
+		URI uri = URI.create(host);
+
+		if (!"https".equalsIgnoreCase(uri.getScheme())) {
+			return false;
+		}
+
+		SSLSocket socket = (SSLSocket) SharedSSLContext.getSocketFactory().createSocket();
+
+		try {
+			SSLParameters parameters = socket.getSSLParameters();
+
+			parameters.setEndpointIdentificationAlgorithm("HTTPS");
+			socket.setSSLParameters(parameters);
+			socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 443),
+					WARM_UP_TIMEOUT);
+			socket.setSoTimeout(WARM_UP_TIMEOUT);
+			socket.startHandshake();
+		} finally {
+			socket.close();
+		}
+		return true;
+	}
+
 	/**
 	 * Send a HTTP GET request.
 	 * 
@@ -53,17 +372,22 @@ public class HttpUtils {
 	 * @return
 	 * @throws YuntuException
 	 */
-	public static synchronized String get(String host, String path, Map<String, String> headers,
+	public static String get(String host, String path, Map<String, String> headers,
 			Map<String, String> querys) throws YuntuException {
 
+		AsyncLimiter permits = acquire(TrafficClass.of(path), host);
+
 		try {
-			if (querys != null && querys.get("key") != null && querys.get("secret") != null) {
+			if (isSigned(querys)) {
 				return request(host, path, headers, querys);
 			} else {
 				String url = buildUrl(host, path, querys);
 				URL httpUrl = new URL(url);
-				HttpURLConnection conn = (HttpURLConnection) httpUrl.openConnection();
+				HttpURLConnection conn = openConnection(httpUrl);
 
+				conn.setConnectTimeout(Deadline.getConnectTimeout());
+				conn.setReadTimeout(Deadline.getReadTimeout());
+				conn.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
 				if (headers != null) {
 					for (Map.Entry<String, String> header : headers.entrySet()) {
 						conn.setRequestProperty(header.getKey(), header.getValue());
@@ -71,17 +395,19 @@ public class HttpUtils {
 				}
 
 				if (conn.getResponseCode() == 200) {
-					return getResponseAsString(conn);
+					return getResponseAsString(conn, path);
 				} else {
-					throw new YuntuException(getResponseAsString(conn));
+					throw getResponseError(conn, path);
 				}
 			}
+		} catch (YuntuException e) {
+			throw e;
 		} catch (IOException e) {
-			String response = "Please check the AppCode, " + e.getLocalizedMessage();
-
-			throw new YuntuException(response);
+			throw getIOError(e);
 		} catch (Exception e) {
 			throw new YuntuException(e);
+		} finally {
+			permits.release();
 		}
 	}
 
@@ -96,104 +422,211 @@ public class HttpUtils {
 	 * @return
 	 * @throws YuntuException
 	 */
-	public static synchronized String post(String host, String path, Map<String, String> headers,
+	public static String post(String host, String path, Map<String, String> headers,
 			Map<String, String> querys, InputStream inStream, String mimeType) throws YuntuException {
 
+		return post(host, path, headers, querys, inStream, -1, mimeType);
+	}
+
+	/**
+	 * Send a HTTP POST request. The body is streamed to the server: with a fixed
+	 * Content-Length when the length is known, chunked otherwise, so the memory
+	 * used does not depend on the size of the body.
+	 * 
+	 * @param host
+	 * @param path
+	 * @param headers
+	 * @param querys
+	 * @param inStream      the request body, closed when it has been sent.
+	 * @param contentLength the length of the body, or -1 if it is unknown.
+	 * @param mimeType
+	 * @return
+	 * @throws YuntuException
+	 */
+	public static String post(String host, String path, Map<String, String> headers,
+			Map<String, String> querys, InputStream inStream, long contentLength, String mimeType)
+			throws YuntuException {
+
+		AsyncLimiter permits = acquire(TrafficClass.UPLOAD, host);
+
 		try {
 			String url = buildUrl(host, path, querys);
 			URL httpUrl = new URL(url);
-			HttpURLConnection conn = (HttpURLConnection) httpUrl.openConnection();
+			HttpURLConnection conn = openConnection(httpUrl);
 
+			conn.setConnectTimeout(Deadline.getConnectTimeout());
+			conn.setReadTimeout(Deadline.getReadTimeout());
 			conn.setDoInput(true);
 			conn.setDoOutput(true);
 			conn.setRequestMethod("POST");
 			conn.setRequestProperty("Content-Type", mimeType);
-			for (Map.Entry<String, String> header : headers.entrySet()) {
-				conn.setRequestProperty(header.getKey(), header.getValue());
+			conn.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+			if (headers != null) {
+				for (Map.Entry<String, String> header : headers.entrySet()) {
+					conn.setRequestProperty(header.getKey(), header.getValue());
+				}
+			}
+			if (contentLength >= 0) {
+				conn.setFixedLengthStreamingMode(contentLength);
+			} else {
+				conn.setChunkedStreamingMode(BufferPool.BUFFER_SIZE);
 			}
 
-			BufferedOutputStream out = new BufferedOutputStream(conn.getOutputStream());
-
-			byte[] bytes = new byte[1024];
-			int numReadByte = 0;
-			while ((numReadByte = inStream.read(bytes, 0, 1024)) > 0) {
+			OutputStream out = conn.getOutputStream();
 
-				out.write(bytes, 0, numReadByte);
+			try {
+				BufferPool.copy(inStream, out);
+			} finally {
+				inStream.close();
+				out.close();
 			}
-			out.flush();
-			inStream.close();
 			if (conn.getResponseCode() == 200) {
-				return getResponseAsString(conn);
+				return getResponseAsString(conn, path);
 			} else {
-				throw new YuntuException(getResponseAsString(conn));
+				throw getResponseError(conn, path);
 			}
 		} catch (IOException e) {
-			String response = "Please check the AppCode, " + e.getLocalizedMessage();
-
-			throw new YuntuException(response);
+			throw getIOError(e);
+		} finally {
+			permits.release();
 		}
 	}
 
-	private static String request(String host, String path, Map<String, String> headers, Map<String, String> querys)
-			throws Exception {
+	/**
+	 * Returns the non-blocking limiter of a traffic class for the specified
+	 * host. It hands out at most {@link #getMaxConnections} permits at the same
+	 * time, shared by blocking callers of {@link #acquire(TrafficClass, String)}
+	 * and non-blocking callers.
+	 * 
+	 * @param trafficClass the traffic class of the request.
+	 * @param host         the host to send a request to.
+	 * @return the limiter for the host.
+	 */
+	public static AsyncLimiter getAsyncLimiter(TrafficClass trafficClass, String host) {
+		ConcurrentMap<String, AsyncLimiter> limiters = hostLimiters.get(trafficClass);
+		AsyncLimiter limiter = limiters.get(host);
 
-		Request request = new Request();
-		String key = querys.remove("key");
-		String secret = querys.remove("secret");
+		if (limiter == null) {
+			AsyncLimiter created = new AsyncLimiter(getMaxConnections(trafficClass));
 
-		if (key != null && secret != null) {
-			request.setKey(key);
-			request.setSecret(secret);
-		}
-		request.setMethod("GET");
-		request.setUrl(host + path);
-		for (Map.Entry<String, String> query : querys.entrySet()) {
-			if (query != null) {
-				String k = query.getKey();
-				String v = query.getValue();
+			limiter = limiters.putIfAbsent(host, created);
+			if (limiter == null) {
+				limiter = created;
+
+				// The limit may have changed before the limiter was visible to
+				// setMaxConnections.
+				int max = getMaxConnections(trafficClass);
 
-				if (k != null && v != null) {
-					request.addQueryStringParam(k, URLEncoder.encode(v, "utf-8"));
+				if (created.getLimit() != max) {
+					created.setLimit(max);
 				}
 			}
 		}
+		return limiter;
+	}
 
-		if (headers != null) {
-			for (Map.Entry<String, String> header : headers.entrySet()) {
-				String k = header.getKey();
-				String v = header.getValue();
+	/**
+	 * Returns the timeouts of a pooled request: the default connect and read
+	 * timeouts, shortened to the time left before the calling thread's
+	 * {@link Deadline}.
+	 * 
+	 * @return the request configuration.
+	 * @throws DeadlineExceededException if the deadline has passed.
+	 */
+	public static RequestConfig getRequestConfig() throws DeadlineExceededException {
+		int connectTimeout = Deadline.getConnectTimeout();
 
-				if (k != null && v != null) {
-					request.addHeader(k, v);
-				}
-			}
+		return RequestConfig.custom().setConnectTimeout(connectTimeout).setConnectionRequestTimeout(connectTimeout)
+				.setSocketTimeout(Deadline.getReadTimeout()).build();
+	}
+
+	/**
+	 * Returns the exception to throw for a failed request. A socket or JDK
+	 * client timeout after the calling thread's deadline has passed means the
+	 * timeout was shortened by the deadline, not that the host is failing.
+	 * 
+	 * @param e the cause.
+	 * @return the exception to throw.
+	 */
+	public static YuntuException getIOError(IOException e) {
+		if ((e instanceof SocketTimeoutException || e instanceof HttpTimeoutException)
+				&& Deadline.isCurrentExpired()) {
+			return new DeadlineExceededException(e);
 		}
-		request.setBody("yuntu");
+		return new YuntuException("Please check the AppCode, " + e.getLocalizedMessage(), e);
+	}
 
-		CloseableHttpClient client = null;
+	/**
+	 * Opens a connection to the specified URL. HTTPS connections use the
+	 * {@link SharedSSLContext}, so that their TLS sessions can be resumed.
+	 */
+	private static HttpURLConnection openConnection(URL url) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
 
-		try {
-			// Sign the request.
-			HttpRequestBase signedRequest = Client.sign(request);
+		if (conn instanceof HttpsURLConnection) {
+			((HttpsURLConnection) conn).setSSLSocketFactory(SharedSSLContext.getSocketFactory());
+		}
+		return conn;
+	}
+
+	/**
+	 * Determines if the request must be signed with the key/secret pair carried
+	 * in the specified query parameters.
+	 * 
+	 * @param querys the query parameters.
+	 * @return <code>true</code> if the request must be signed.
+	 */
+	public static boolean isSigned(Map<String, String> querys) {
+		return querys != null && querys.get("key") != null && querys.get("secret") != null;
+	}
 
-			// Send the request.
-			client = HttpClients.custom().build();
+	private static String request(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws Exception {
 
-			HttpResponse response = client.execute(signedRequest);
+		HttpRequestBase signedRequest = sign(host, path, headers, querys);
 
-			return response != null ? EntityUtils.toString(response.getEntity(), "UTF-8") : "";
-		} finally {
-			try {
-				if (client != null) {
-					client.close();
-				}
-			} catch (IOException e) {
-				e.printStackTrace();
+		signedRequest.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+		signedRequest.setConfig(getRequestConfig());
+
+		// Send the request over a pooled connection.
+		CloseableHttpResponse response = getPooledClient(TrafficClass.of(path)).execute(signedRequest);
+
+		try {
+			int status = response.getStatusLine().getStatusCode();
+			String body = getEntityAsString(response, path);
+
+			if (status == 200) {
+				return body;
 			}
+			throw new YuntuException("Please check the AppCode, " + status + ":" + body, status);
+		} finally {
+			response.close();
 		}
 	}
 
-	private static String buildUrl(String host, String path, Map<String, String> querys)
+	/**
+	 * Builds a signed API gateway request. The "key" and "secret" entries are
+	 * removed from the query parameters and used as the signing credentials;
+	 * the signing material derived from them is cached by
+	 * {@link RequestSigner} and reused by later requests.
+	 * 
+	 * @param host
+	 * @param path
+	 * @param headers
+	 * @param querys
+	 * @return the signed request.
+	 * @throws Exception
+	 */
+	public static HttpRequestBase sign(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) throws Exception {
+
+		String key = querys.remove("key");
+		String secret = querys.remove("secret");
+
+		return RequestSigner.forCredentials(key, secret).sign(host, path, headers, querys);
+	}
+
+	public static String buildUrl(String host, String path, Map<String, String> querys)
 			throws UnsupportedEncodingException {
 
 		StringBuilder sbUrl = new StringBuilder();
@@ -220,23 +653,142 @@ public class HttpUtils {
 		return sbUrl.toString();
 	}
 
-	private static String getResponseAsString(HttpURLConnection conn) throws IOException {
+	private static String getResponseAsString(HttpURLConnection conn, String path) throws IOException {
 
 		InputStream es = conn.getErrorStream();
 
 		if (es == null) {
-			return getStreamAsString(conn.getInputStream(), "UTF-8");
+			return decodeBody(path, conn.getInputStream(), conn.getContentEncoding(), "UTF-8");
 		} else {
-			String msg = getStreamAsString(es, "UTF-8");
+			String msg = decodeBody(path, es, conn.getContentEncoding(), "UTF-8");
 			throw new IOException(conn.getResponseCode() + ":" + msg);
 		}
 	}
 
-	private static String getStreamAsString(InputStream stream, String charset) throws IOException {
+	/**
+	 * Reads the error response of a connection whose status is not 200, and
+	 * returns an exception carrying the status code.
+	 */
+	private static YuntuException getResponseError(HttpURLConnection conn, String path) throws IOException {
+		int status = conn.getResponseCode();
+		InputStream es = conn.getErrorStream();
+		String msg = es == null ? "" : decodeBody(path, es, conn.getContentEncoding(), "UTF-8");
+
+		return new YuntuException("Please check the AppCode, " + status + ":" + msg, status);
+	}
+
+	/**
+	 * Reads the entity of an Apache HttpClient response as a string, decoding
+	 * it as it is read.
+	 * 
+	 * @param response the response.
+	 * @param path     the request path, used as the statistics key.
+	 * @return the response body, or an empty string if there is none.
+	 * @throws IOException
+	 */
+	public static String getEntityAsString(HttpResponse response, String path) throws IOException {
+		HttpEntity entity = response.getEntity();
+
+		if (entity == null) {
+			return "";
+		}
+
+		Header encoding = entity.getContentEncoding();
+
+		return decodeBody(path, entity.getContent(), encoding != null ? encoding.getValue() : null, "UTF-8");
+	}
+
+	/**
+	 * Reads a response body as a string. A gzip or deflate body is decompressed
+	 * as a stream on the way to the character decoder, without buffering the
+	 * compressed or decompressed bytes. A deflate body may come with or without
+	 * the zlib wrapper, which many servers leave out; an empty body is returned
+	 * as is whatever its encoding. The traffic is recorded in the
+	 * {@link TrafficStatistics} of the request path.
+	 * 
+	 * @param path            the request path, used as the statistics key.
+	 * @param stream          the body as received from the network.
+	 * @param contentEncoding the Content-Encoding header, or <code>null</code>.
+	 * @param charset         the character set of the body.
+	 * @return the response body.
+	 * @throws IOException
+	 */
+	public static String decodeBody(String path, InputStream stream, String contentEncoding, String charset)
+			throws IOException {
+
+		CountingInputStream wire = new CountingInputStream(stream);
+		InputStream in = wire;
+		Inflater inflater = null;
+		boolean compressed = false;
+
+		try {
+			if (contentEncoding != null) {
+				String encoding = contentEncoding.trim().toLowerCase();
+				boolean gzip = encoding.equals("gzip") || encoding.equals("x-gzip");
+
+				if (gzip || encoding.equals("deflate")) {
+					PushbackInputStream peek = new PushbackInputStream(wire, 2);
+					byte[] head = new byte[2];
+					int length = 0;
+					int count;
+
+					while (length < 2 && (count = peek.read(head, length, 2 - length)) > 0) {
+						length += count;
+					}
+					peek.unread(head, 0, length);
+					in = peek;
+					if (length == 0) {
+						// An empty body has nothing to decompress.
+					} else if (gzip) {
+						in = new GZIPInputStream(peek, BUFFER_SIZE);
+						compressed = true;
+					} else {
+						inflater = new Inflater(!isZlibHeader(head, length));
+						in = new InflaterInputStream(peek, inflater, BUFFER_SIZE);
+						compressed = true;
+					}
+				}
+			}
+		} catch (IOException e) {
+			wire.close();
+			throw e;
+		}
+
+		try {
+			CountingInputStream decoded = new CountingInputStream(in);
+			String body = getStreamAsString(decoded, charset);
+
+			TrafficStatistics.forEndpoint(path).record(wire.getCount(), decoded.getCount(), compressed);
+			return body;
+		} finally {
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Determines if a deflate body starts with a zlib header (RFC 1950): the
+	 * deflate method, and a check value that makes the first two bytes a
+	 * multiple of 31, which raw deflate data practically never does; browsers
+	 * tell the two apart the same way.
+	 */
+	private static boolean isZlibHeader(byte[] head, int length) {
+		if (length < 2) {
+			return false;
+		}
+
+		int cmf = head[0] & 0xFF;
+		int flg = head[1] & 0xFF;
+
+		return (cmf & 0x0F) == 8 && (cmf >> 4) <= 7 && (cmf << 8 | flg) % 31 == 0;
+	}
+
+	public static String getStreamAsString(InputStream stream, String charset) throws IOException {
 
 		try {
 			int count;
-			char[] chars = new char[256];
+			char[] chars = new char[BUFFER_SIZE];
 			StringWriter writer = new StringWriter();
 			BufferedReader reader = new BufferedReader(new InputStreamReader(stream, charset));
 
@@ -2,12 +2,24 @@ package com.jingyue.DocConversion.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
-
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.aliyun.oss.ClientConfiguration;
 import com.aliyun.oss.OSSClient;
+import com.aliyun.oss.common.auth.HmacSHA1Signature;
+import com.aliyun.oss.common.utils.DateUtil;
 import com.aliyun.oss.event.ProgressListener;
 import com.aliyun.oss.model.ObjectMetadata;
 import com.aliyun.oss.model.PutObjectRequest;
 import com.aliyun.oss.model.PutObjectResult;
+import com.jingyue.DocConversion.common.DeadlineExceededException;
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.transport.TrafficClass;
 
 public class OSSUtil {
 
@@ -27,8 +39,129 @@ public class OSSUtil {
 
 	private OSSClient client = null;
 
-	public OSSUtil(String accessID, String accessKey, String securityToken) {
-		client = new OSSClient(OSS_ENDPOINT, accessID, accessKey, securityToken);
+	private String accessID = null;
+
+	private String accessKey = null;
+
+	private String securityToken = null;
+
+	/**
+	 * Creates the OSS client with connect and socket timeouts derived from the
+	 * calling thread's deadline. With a deadline, the SDK also aborts a request
+	 * that is still running when the deadline passes.
+	 */
+	public OSSUtil(String accessID, String accessKey, String securityToken) throws DeadlineExceededException {
+		this.accessID = accessID;
+		this.accessKey = accessKey;
+		this.securityToken = securityToken;
+
+		ClientConfiguration configuration = new ClientConfiguration();
+
+		configuration.setConnectionTimeout(Deadline.getConnectTimeout());
+		configuration.setSocketTimeout(Deadline.getReadTimeout());
+
+		Deadline deadline = Deadline.current();
+
+		if (deadline != null) {
+			configuration.setRequestTimeoutEnabled(true);
+			configuration.setRequestTimeout((int) Math.min(Integer.MAX_VALUE, deadline.getRemainingMillis()));
+		}
+		client = new OSSClient(OSS_ENDPOINT, accessID, accessKey, securityToken, configuration);
+	}
+
+	/**
+	 * Uploads a file with a signed PUT request of our own instead of the OSS SDK,
+	 * so that the file can be sent with <code>FileChannel.transferTo</code>.
+	 * 
+	 * @see ZeroCopyUploader
+	 */
+	public boolean uploadFileZeroCopy(String token, String title, final java.io.File file) throws IOException {
+		if (file == null) {
+			return false;
+		}
+
+		String objectKey = getObjectKey(token, title);
+		String contentType = MimeTypes.getMimeType(title);
+		String contentDisposition = getContentDisposition(token, title);
+		String date = DateUtil.formatRfc822Date(new Date());
+		String resource = "/" + DOCUMENTS_BUCKET_NAME + "/" + objectKey;
+		StringBuilder canonical = new StringBuilder();
+
+		canonical.append("PUT\n\n");
+		canonical.append(contentType).append("\n");
+		canonical.append(date).append("\n");
+		if (securityToken != null) {
+			canonical.append("x-oss-security-token:").append(securityToken).append("\n");
+		}
+		canonical.append(resource);
+
+		String signature = new HmacSHA1Signature().computeSignature(accessKey, canonical.toString());
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+
+		headers.put("Date", date);
+		headers.put("Content-Type", contentType);
+		headers.put("Content-Disposition", contentDisposition);
+		if (securityToken != null) {
+			headers.put("x-oss-security-token", securityToken);
+		}
+		headers.put("Authorization", "OSS " + accessID + ":" + signature);
+
+		URL endpoint = new URL(OSS_ENDPOINT);
+		URL url = new URL(endpoint.getProtocol(), getDocumentsHost(), endpoint.getPort(), "/" + objectKey);
+		AsyncLimiter permits = acquireUploadPermit();
+
+		try {
+			ZeroCopyUploader.put(url, headers, file);
+		} finally {
+			permits.release();
+		}
+		return true;
+	}
+
+	/**
+	 * Takes a permit of the upload bulkhead for the documents bucket. Uploads
+	 * queue there instead of competing with control and output requests, and at
+	 * most {@link HttpUtils#getMaxConnections} of them run at the same time.
+	 */
+	private static AsyncLimiter acquireUploadPermit() throws IOException {
+		try {
+			return HttpUtils.acquire(TrafficClass.UPLOAD, getDocumentsHost());
+		} catch (YuntuException e) {
+			throw new InterruptedIOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the virtual host name of the bucket uploaded documents go to.
+	 */
+	public static String getDocumentsHost() {
+		return DOCUMENTS_BUCKET_NAME + "." + URI.create(OSS_ENDPOINT).getHost();
+	}
+
+	private static String getObjectKey(String token, String title) {
+		if (title.toLowerCase().endsWith(".pdf")) {
+			return OSS_DOCUMENTS_FOLDER + "/" + token + "." + DOCUMENT_TYPE;
+		}
+		return OSS_SOURCE_FOLDER + "/" + token + "." + SOURCE_TYPE;
+	}
+
+	private static String getContentDisposition(String token, String title) throws IOException {
+		if (title.toLowerCase().endsWith(".pdf")) {
+			String t = StringUtil.getFileName(title);
+			String pdfFileName = (t == null ? null : java.net.URLEncoder.encode(t, "UTF-8"));
+
+			if (pdfFileName == null || pdfFileName.length() <= 0) {
+				pdfFileName = token;
+			}
+			return "attachment;filename*=UTF-8''" + pdfFileName + ".pdf";
+		}
+
+		String sourceFileName = java.net.URLEncoder.encode(StringUtil.getFileName(title, false), "UTF-8");
+
+		if (sourceFileName == null || sourceFileName.length() <= 0) {
+			sourceFileName = token + "." + SOURCE_TYPE;
+		}
+		return "attachment;filename*=UTF-8''" + sourceFileName;
 	}
 
 	public boolean uploadFile(String token, String title, final java.io.File file, final int length,
@@ -40,42 +173,24 @@ public class OSSUtil {
 
 		try {
 			ObjectMetadata objectMeta = new ObjectMetadata();
-			String fileName;
-			String bucketName;
 
 			objectMeta.setContentLength(file.length());
 			objectMeta.setContentType(MimeTypes.getMimeType(title));
+			objectMeta.setContentDisposition(getContentDisposition(token, title));
 
-			if (title.toLowerCase().endsWith(".pdf")) {
-				String t = StringUtil.getFileName(title);
-				String pdfFileName = (t == null ? null : java.net.URLEncoder.encode(t, "UTF-8"));
-
-				if (pdfFileName == null || pdfFileName.length() <= 0) {
-					pdfFileName = token;
-				}
-
-				objectMeta.setContentDisposition("attachment;filename*=UTF-8''" + pdfFileName + ".pdf");
-
-				fileName = OSS_DOCUMENTS_FOLDER + "/" + token + "." + DOCUMENT_TYPE;
-				bucketName = DOCUMENTS_BUCKET_NAME;
-			} else {
-				String sourceFileName = java.net.URLEncoder.encode(StringUtil.getFileName(title, false), "UTF-8");
-
-				if (sourceFileName == null || sourceFileName.length() <= 0) {
-					sourceFileName = token + "." + SOURCE_TYPE;
-				}
+			String fileName = getObjectKey(token, title);
+			String bucketName = DOCUMENTS_BUCKET_NAME;
 
-				objectMeta.setContentDisposition("attachment;filename*=UTF-8''" + sourceFileName);
+			AsyncLimiter permits = acquireUploadPermit();
 
-				fileName = OSS_SOURCE_FOLDER + "/" + token + "." + SOURCE_TYPE;
+			try {
+				PutObjectResult result = client.putObject(new PutObjectRequest(bucketName, fileName, file, objectMeta)
+						.<PutObjectRequest>withProgressListener(progressListener));
 
-				bucketName = DOCUMENTS_BUCKET_NAME;
+				return result.getETag() != null ? true : false;
+			} finally {
+				permits.release();
 			}
-
-			PutObjectResult result = client.putObject(new PutObjectRequest(bucketName, fileName, file, objectMeta)
-					.<PutObjectRequest>withProgressListener(progressListener));
-
-			return result.getETag() != null ? true : false;
 		} catch (Throwable e) {
 			e.printStackTrace();
 		}
@@ -91,39 +206,23 @@ public class OSSUtil {
 
 		try {
 			ObjectMetadata objectMeta = new ObjectMetadata();
-			String fileName;
-			String bucketName;
 
 			objectMeta.setContentType(MimeTypes.getMimeType(title));
+			objectMeta.setContentDisposition(getContentDisposition(token, title));
 
-			if (title.toLowerCase().endsWith(".pdf")) {
-				String t = StringUtil.getFileName(title);
-				String pdfFileName = (t == null ? null : java.net.URLEncoder.encode(t, "UTF-8"));
-
-				if (pdfFileName == null || pdfFileName.length() <= 0) {
-					pdfFileName = token;
-				}
+			String fileName = getObjectKey(token, title);
+			String bucketName = DOCUMENTS_BUCKET_NAME;
 
-				objectMeta.setContentDisposition("attachment;filename*=UTF-8''" + pdfFileName + ".pdf");
+			AsyncLimiter permits = acquireUploadPermit();
 
-				fileName = OSS_DOCUMENTS_FOLDER + "/" + token + "." + DOCUMENT_TYPE;
-				bucketName = DOCUMENTS_BUCKET_NAME;
-			} else {
-				String sourceFileName = java.net.URLEncoder.encode(StringUtil.getFileName(title, false), "UTF-8");
+			try {
+				PutObjectResult result = client.putObject(new PutObjectRequest(bucketName, fileName, stream, objectMeta)
+						.<PutObjectRequest>withProgressListener(progressListener));
 
-				if (sourceFileName == null || sourceFileName.length() <= 0) {
-					sourceFileName = token + "." + SOURCE_TYPE;
-				}
-
-				objectMeta.setContentDisposition("attachment;filename*=UTF-8''" + sourceFileName);
-				fileName = OSS_SOURCE_FOLDER + "/" + token + "." + SOURCE_TYPE;
-				bucketName = DOCUMENTS_BUCKET_NAME;
+				return result.getETag() != null ? true : false;
+			} finally {
+				permits.release();
 			}
-
-			PutObjectResult result = client.putObject(new PutObjectRequest(bucketName, fileName, stream, objectMeta)
-					.<PutObjectRequest>withProgressListener(progressListener));
-
-			return result.getETag() != null ? true : false;
 		} catch (Throwable e) {
 			e.printStackTrace();
 		}
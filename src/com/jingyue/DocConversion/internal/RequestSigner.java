@@ -0,0 +1,401 @@
+package com.jingyue.DocConversion.internal;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Signs API gateway GET requests with the SDK-HMAC-SHA256 scheme. The result
+ * is the same request that {@code com.cloud.apigateway.sdk.utils.Client.sign}
+ * builds, but everything that does not change between calls is worked out
+ * once and kept: the signing key and its initialised MAC, the canonical path
+ * and Host header of each endpoint, the canonical header block, and the
+ * encoded form of each query parameter. A call then only formats the date,
+ * encodes the query values it has not seen before, and hashes the canonical
+ * request.
+ */
+public class RequestSigner {
+
+	/** The signing algorithm, as it appears in the Authorization header. */
+	public static final String ALGORITHM = "SDK-HMAC-SHA256";
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private static final String DATE_HEADER = "X-Sdk-Date";
+
+	/** The SHA-256 of an empty body; signed GET requests never carry one. */
+	private static final String EMPTY_BODY_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+	/** The number of encoded query parameters kept before the cache is reset. */
+	private static final int MAX_CACHED_PARAMETERS = 256;
+
+	/** The number of header blocks kept per endpoint before its cache is reset. */
+	private static final int MAX_CACHED_HEADER_BLOCKS = 16;
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final ConcurrentMap<String, RequestSigner> signers = new ConcurrentHashMap<String, RequestSigner>();
+
+	private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private final String accessKey;
+
+	private final String secretKey;
+
+	private final ThreadLocal<Mac> macs;
+
+	private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+	private final ConcurrentMap<String, Parameter> parameters = new ConcurrentHashMap<String, Parameter>();
+
+	private volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, null);
+
+	/**
+	 * Returns the signer for a key/secret pair, creating it on first use. All
+	 * requests signed with the same credentials share the cached material.
+	 *
+	 * @param key    the access key.
+	 * @param secret the secret key.
+	 * @return the signer.
+	 */
+	public static RequestSigner forCredentials(String key, String secret) {
+		RequestSigner signer = signers.get(key);
+
+		if (signer == null || !signer.secretKey.equals(secret.trim())) {
+			signer = new RequestSigner(key, secret);
+			signers.put(key, signer);
+		}
+		return signer;
+	}
+
+	/**
+	 * Constructs a signer.
+	 *
+	 * @param key    the access key.
+	 * @param secret the secret key.
+	 */
+	public RequestSigner(String key, String secret) {
+		this.accessKey = key.trim();
+		this.secretKey = secret.trim();
+
+		final SecretKeySpec signingKey = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8),
+				MAC_ALGORITHM);
+
+		this.macs = ThreadLocal.withInitial(() -> {
+			try {
+				Mac mac = Mac.getInstance(MAC_ALGORITHM);
+
+				mac.init(signingKey);
+				return mac;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	/**
+	 * Builds a signed GET request.
+	 *
+	 * @param host    the scheme and host, e.g. "https://example.com".
+	 * @param path    the request path.
+	 * @param headers the request headers, or <code>null</code>.
+	 * @param querys  the query parameters.
+	 * @return the signed request.
+	 * @throws UnsupportedEncodingException
+	 */
+	public HttpRequestBase sign(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws UnsupportedEncodingException {
+		return sign(host, path, headers, querys, System.currentTimeMillis());
+	}
+
+	HttpRequestBase sign(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			long now) throws UnsupportedEncodingException {
+		Endpoint endpoint = getEndpoint(host, path);
+		HeaderBlock headerBlock = endpoint.getHeaderBlock(headers);
+		String date = formatDate(now);
+		StringBuilder url = new StringBuilder(endpoint.url);
+		List<Parameter> signed = new ArrayList<Parameter>(querys.size());
+
+		for (Map.Entry<String, String> query : querys.entrySet()) {
+			String k = query.getKey();
+			String v = query.getValue();
+
+			if (k != null && v != null) {
+				Parameter parameter = getParameter(k, v);
+
+				url.append(signed.isEmpty() ? '?' : '&').append(parameter.encoded);
+				signed.add(parameter);
+			}
+		}
+		Collections.sort(signed);
+
+		StringBuilder canonical = new StringBuilder(256);
+
+		canonical.append("GET\n").append(endpoint.canonicalPath).append('\n');
+		for (int i = 0; i < signed.size(); i++) {
+			if (i > 0) {
+				canonical.append('&');
+			}
+			canonical.append(signed.get(i).canonical);
+		}
+		canonical.append('\n').append(headerBlock.beforeDate).append(date).append('\n')
+				.append(headerBlock.afterDate).append('\n').append(headerBlock.signedHeaders).append('\n')
+				.append(EMPTY_BODY_HASH);
+
+		MessageDigest digest = digests.get();
+		String stringToSign = ALGORITHM + "\n" + date + "\n"
+				+ toHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+		String signature = toHex(macs.get().doFinal(stringToSign.getBytes(StandardCharsets.UTF_8)));
+		HttpGet request = new HttpGet(url.toString());
+
+		for (String[] header : headerBlock.headers) {
+			request.addHeader(header[0], header[1]);
+		}
+		request.addHeader(DATE_HEADER, date);
+		request.addHeader("Authorization", ALGORITHM + " Access=" + accessKey + ", SignedHeaders="
+				+ headerBlock.signedHeaders + ", Signature=" + signature);
+		return request;
+	}
+
+	private Endpoint getEndpoint(String host, String path) {
+		String url = host + path;
+		Endpoint endpoint = endpoints.get(url);
+
+		if (endpoint == null) {
+			endpoint = new Endpoint(host, path);
+			endpoints.put(url, endpoint);
+		}
+		return endpoint;
+	}
+
+	private Parameter getParameter(String key, String value) throws UnsupportedEncodingException {
+		String cacheKey = key + '\u0000' + value;
+		Parameter parameter = parameters.get(cacheKey);
+
+		if (parameter == null) {
+			parameter = new Parameter(key, value);
+			if (parameters.size() >= MAX_CACHED_PARAMETERS) {
+				parameters.clear();
+			}
+			parameters.put(cacheKey, parameter);
+		}
+		return parameter;
+	}
+
+	private String formatDate(long now) {
+		long second = now / 1000;
+		Timestamp current = timestamp;
+
+		if (current.second != second) {
+			current = new Timestamp(second, DATE_FORMAT.format(Instant.ofEpochSecond(second)));
+			timestamp = current;
+		}
+		return current.text;
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX[(bytes[i] >> 4) & 0x0f];
+			chars[2 * i + 1] = HEX[bytes[i] & 0x0f];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Encodes a string the way the gateway canonicalises it: form encoding with
+	 * spaces as "%20", "*" as "%2A" and "~" left as is.
+	 */
+	private static String canonicalEncode(String s) throws UnsupportedEncodingException {
+		return URLEncoder.encode(s, "UTF-8").replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+	}
+
+	/**
+	 * The parts of a signed request that depend only on its host and path.
+	 */
+	private static class Endpoint {
+
+		final String url;
+
+		final String canonicalPath;
+
+		final String hostHeader;
+
+		/** The header blocks built so far, by the headers they were built from. */
+		final ConcurrentMap<Map<String, String>, HeaderBlock> headerBlocks;
+
+		Endpoint(String host, String path) {
+			URI uri = URI.create(host + path);
+			String uriPath = uri.getPath();
+			int port = uri.getPort();
+			boolean defaultPort = port == -1 || ("http".equalsIgnoreCase(uri.getScheme()) && port == 80)
+					|| ("https".equalsIgnoreCase(uri.getScheme()) && port == 443);
+
+			this.url = host + path;
+			if (uriPath == null || uriPath.isEmpty()) {
+				this.canonicalPath = "/";
+			} else {
+				this.canonicalPath = uriPath.endsWith("/") ? uriPath : uriPath + "/";
+			}
+			this.hostHeader = defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+			this.headerBlocks = new ConcurrentHashMap<Map<String, String>, HeaderBlock>();
+		}
+
+		HeaderBlock getHeaderBlock(Map<String, String> headers) {
+			HeaderBlock block = headerBlocks.get(headers == null ? Collections.<String, String>emptyMap() : headers);
+
+			if (block == null) {
+				block = new HeaderBlock(headers, hostHeader);
+				if (headerBlocks.size() >= MAX_CACHED_HEADER_BLOCKS) {
+					headerBlocks.clear();
+				}
+				headerBlocks.put(block.source, block);
+			}
+			return block;
+		}
+	}
+
+	/**
+	 * The canonical header lines of a request, split around the date line,
+	 * which is the only header that changes from call to call.
+	 */
+	private static class HeaderBlock {
+
+		/** A copy of the headers the block was built from, which keys its cache entry. */
+		final Map<String, String> source;
+
+		final String beforeDate;
+
+		final String afterDate;
+
+		final String signedHeaders;
+
+		/** The headers to send, date and Authorization excluded. */
+		final List<String[]> headers = new ArrayList<String[]>();
+
+		HeaderBlock(Map<String, String> headers, String hostHeader) {
+			Map<String, String> all = new HashMap<String, String>();
+			boolean hasHost = false;
+
+			if (headers != null) {
+				for (Map.Entry<String, String> header : headers.entrySet()) {
+					String k = header.getKey();
+					String v = header.getValue();
+
+					if (k != null && v != null) {
+						all.put(k, v);
+						hasHost |= "Host".equalsIgnoreCase(k);
+					}
+				}
+			}
+			if (!hasHost) {
+				all.put("Host", hostHeader);
+			}
+			this.source = headers == null ? Collections.<String, String>emptyMap()
+					: new HashMap<String, String>(headers);
+
+			String[] names = all.keySet().toArray(new String[0]);
+			StringBuilder before = new StringBuilder();
+			StringBuilder after = new StringBuilder();
+			StringBuilder signed = new StringBuilder();
+			boolean dateSeen = false;
+
+			Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+			for (String name : names) {
+				if (!dateSeen && String.CASE_INSENSITIVE_ORDER.compare(name, DATE_HEADER) > 0) {
+					signed.append(signed.length() > 0 ? ";" : "").append(DATE_HEADER.toLowerCase());
+					dateSeen = true;
+				}
+
+				StringBuilder lines = dateSeen ? after : before;
+				String value = all.get(name);
+
+				lines.append(name.toLowerCase()).append(':').append(value.trim()).append('\n');
+				signed.append(signed.length() > 0 ? ";" : "").append(name.toLowerCase());
+				if (!"Content-Length".equalsIgnoreCase(name)) {
+					this.headers.add(new String[] { name,
+							new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1) });
+				}
+			}
+			if (!dateSeen) {
+				signed.append(signed.length() > 0 ? ";" : "").append(DATE_HEADER.toLowerCase());
+			}
+			before.append(DATE_HEADER.toLowerCase()).append(':');
+			this.beforeDate = before.toString();
+			this.afterDate = after.toString();
+			this.signedHeaders = signed.toString();
+		}
+	}
+
+	/**
+	 * A query parameter in the form it takes in the URL and in the canonical
+	 * query string.
+	 */
+	private static class Parameter implements Comparable<Parameter> {
+
+		final String encoded;
+
+		final String canonicalKey;
+
+		final String canonical;
+
+		Parameter(String key, String value) throws UnsupportedEncodingException {
+			String encodedKey = URLEncoder.encode(URLEncoder.encode(key, "UTF-8"), "UTF-8");
+			String encodedValue = URLEncoder.encode(URLEncoder.encode(value, "UTF-8"), "UTF-8");
+
+			this.encoded = encodedKey + "=" + encodedValue;
+			this.canonicalKey = canonicalEncode(URLDecoder.decode(encodedKey, "UTF-8"));
+			this.canonical = canonicalKey + "=" + canonicalEncode(URLDecoder.decode(encodedValue, "UTF-8"));
+		}
+
+		@Override
+		public int compareTo(Parameter other) {
+			int c = canonicalKey.compareTo(other.canonicalKey);
+
+			return c != 0 ? c : canonical.compareTo(other.canonical);
+		}
+	}
+
+	private static class Timestamp {
+
+		final long second;
+
+		final String text;
+
+		Timestamp(long second, String text) {
+			this.second = second;
+			this.text = text;
+		}
+	}
+}
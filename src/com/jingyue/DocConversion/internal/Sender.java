@@ -6,11 +6,37 @@ import com.jingyue.DocConversion.Converter;
 import com.jingyue.DocConversion.YuntuConfig;
 import com.jingyue.DocConversion.common.YuntuDoc;
 import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.transport.YuntuTransport;
 
 public class Sender extends Converter {
 
-	public Sender(YuntuConfig config) {
+	private boolean polling = true;
+
+	private long fileSize = -1;
+
+	public Sender(YuntuConfig config, YuntuTransport transport) {
 		this.setConfig(config);
+		this.setTransport(transport);
+	}
+
+	/**
+	 * Sets whether {@link #convert(String, String)} polls until the conversion
+	 * ends, or returns as soon as the document is submitted.
+	 * 
+	 * @param polling <code>false</code> to return the submitted document.
+	 */
+	public void setPolling(boolean polling) {
+		this.polling = polling;
+	}
+
+	/**
+	 * Sets the size of the documents {@link #convert(String, String)} submits,
+	 * which helps predict how long their conversion takes.
+	 * 
+	 * @param fileSize the size in bytes, or a negative number if unknown.
+	 */
+	public void setFileSize(long fileSize) {
+		this.fileSize = fileSize;
 	}
 
 	/**
@@ -33,8 +59,8 @@ public class Sender extends Converter {
 
 		headers.put("Content-Type", "application/json");
 
-		String body = HttpUtils.get(host, path, headers, querys);
+		String body = getTransport().get(host, path, headers, querys);
 
-		return getYuntuDoc(body);
+		return polling ? getYuntuDoc(body, fileName, fileSize) : getSubmittedDoc(body);
 	}
 }
@@ -0,0 +1,140 @@
+package com.jingyue.DocConversion.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * The TLS context shared by every HTTPS connection the SDK opens. Because all
+ * connections draw on one client session cache, a session negotiated by any of
+ * them (an <code>HttpURLConnection</code>, the pooled HttpClient, the JDK
+ * client or the zero-copy uploader) can be resumed by the others, and later
+ * connections to the same host skip the full handshake. Session tickets are
+ * used when the JDK and the server support them.
+ * <p>
+ * Sockets created by {@link #getSocketFactory()} report each completed
+ * handshake to {@link com.jingyue.DocConversion.transport.TlsStatistics}.
+ */
+public class SharedSSLContext {
+
+	/** The number of client sessions kept for resumption. */
+	public static final int SESSION_CACHE_SIZE = 1024;
+
+	/** How long, in seconds, a cached session may be resumed. */
+	public static final int SESSION_TIMEOUT = 24 * 60 * 60;
+
+	private static SSLContext context = null;
+
+	private static SSLSocketFactory socketFactory = null;
+
+	/**
+	 * Returns the shared TLS context, creating it on first use with the JDK's
+	 * default key and trust managers.
+	 *
+	 * @return the shared TLS context.
+	 */
+	public static synchronized SSLContext getContext() {
+		if (context == null) {
+			try {
+				SSLContext created = SSLContext.getInstance("TLS");
+
+				created.init(null, null, null);
+
+				SSLSessionContext sessions = created.getClientSessionContext();
+
+				sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+				sessions.setSessionTimeout(SESSION_TIMEOUT);
+				context = created;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return context;
+	}
+
+	/**
+	 * Returns a socket factory of the shared context whose sockets count their
+	 * handshakes.
+	 *
+	 * @return the shared socket factory.
+	 */
+	public static synchronized SSLSocketFactory getSocketFactory() {
+		if (socketFactory == null) {
+			socketFactory = new CountingSocketFactory(getContext().getSocketFactory());
+		}
+		return socketFactory;
+	}
+
+	/**
+	 * Wraps the context's socket factory so that every socket records its
+	 * handshake, as {@link TrackedSSLSocket} describes.
+	 */
+	private static class CountingSocketFactory extends SSLSocketFactory {
+
+		private final SSLSocketFactory factory;
+
+		CountingSocketFactory(SSLSocketFactory factory) {
+			this.factory = factory;
+		}
+
+		private Socket track(Socket socket) {
+			if (socket instanceof SSLSocket) {
+				return new TrackedSSLSocket((SSLSocket) socket);
+			}
+			return socket;
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return factory.getDefaultCipherSuites();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return factory.getSupportedCipherSuites();
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return track(factory.createSocket());
+		}
+
+		@Override
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+			return track(factory.createSocket(s, host, port, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(Socket s, InputStream consumed, boolean autoClose) throws IOException {
+			return track(factory.createSocket(s, consumed, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return track(factory.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return track(factory.createSocket(host, port, localHost, localPort));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return track(factory.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+				throws IOException {
+			return track(factory.createSocket(address, port, localAddress, localPort));
+		}
+	}
+}
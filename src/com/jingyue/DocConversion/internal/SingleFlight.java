@@ -0,0 +1,133 @@
+package com.jingyue.DocConversion.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.jingyue.DocConversion.common.DeadlineExceededException;
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * Coalesces identical concurrent calls. The first caller for a key performs
+ * the call; callers arriving with the same key while it is in flight wait for
+ * and share its result or failure instead of repeating it. Nothing is cached:
+ * once the call completes, the next caller performs a new one.
+ * 
+ * @param <V> the result type.
+ */
+public class SingleFlight<V> {
+
+	/**
+	 * A call that may be coalesced.
+	 * 
+	 * @param <V> the result type.
+	 */
+	public interface Call<V> {
+
+		V call() throws YuntuException;
+	}
+
+	private final ConcurrentMap<String, CompletableFuture<V>> calls = new ConcurrentHashMap<String, CompletableFuture<V>>();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Performs the call, or waits for the identical call already in flight. A
+	 * caller waiting for another's call waits no longer than its own deadline.
+	 * 
+	 * @param key  identifies identical calls.
+	 * @param call the call.
+	 * @return the result of the call.
+	 * @throws YuntuException if the call failed, or the calling thread was
+	 *                        interrupted while waiting, or its deadline
+	 *                        passed.
+	 */
+	public V execute(String key, Call<V> call) throws YuntuException {
+		CompletableFuture<V> created = new CompletableFuture<V>();
+		CompletableFuture<V> existing = calls.putIfAbsent(key, created);
+
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			try {
+				return existing.get(Deadline.timeout(Long.MAX_VALUE), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new YuntuException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof YuntuException) {
+					throw (YuntuException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new YuntuException(cause);
+			} catch (TimeoutException e) {
+				throw new DeadlineExceededException(e);
+			}
+		}
+		try {
+			V result = call.call();
+
+			created.complete(result);
+			return result;
+		} catch (Throwable e) {
+			created.completeExceptionally(e);
+			throw e;
+		} finally {
+			calls.remove(key, created);
+		}
+	}
+
+	/**
+	 * Starts the asynchronous call, or joins the identical call already in
+	 * flight. Each caller gets its own future, so cancelling one does not
+	 * affect the others.
+	 * 
+	 * @param key  identifies identical calls.
+	 * @param call starts the call.
+	 * @return a future that completes with the result of the call.
+	 */
+	public CompletableFuture<V> executeAsync(String key, Supplier<CompletableFuture<V>> call) {
+		CompletableFuture<V> created = new CompletableFuture<V>();
+		CompletableFuture<V> existing = calls.putIfAbsent(key, created);
+
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			return existing.thenApply(result -> result);
+		}
+		try {
+			call.get().whenComplete((result, e) -> {
+				calls.remove(key, created);
+				if (e != null) {
+					created.completeExceptionally(
+							e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+				} else {
+					created.complete(result);
+				}
+			});
+		} catch (RuntimeException e) {
+			calls.remove(key, created);
+			created.completeExceptionally(e);
+		}
+		return created.thenApply(result -> result);
+	}
+
+	/**
+	 * Returns the number of calls that were not performed because an identical
+	 * call was already in flight.
+	 * 
+	 * @return the number of coalesced calls.
+	 */
+	public long getCoalescedCalls() {
+		return coalesced.get();
+	}
+}
@@ -0,0 +1,296 @@
+package com.jingyue.DocConversion.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jingyue.DocConversion.common.YuntuDoc;
+
+/**
+ * Polls the conversion status of submitted documents until the conversion
+ * ends. One {@link TimingWheel}, shared by every poller, schedules the status
+ * checks of all pending documents; each check is sent from an executor. No
+ * thread sleeps or keeps a stack between two checks, a pending document costs
+ * a single {@link Poll} record and its timer entry, and scheduling or
+ * cancelling a check takes constant time however many documents are pending.
+ * <p>
+ * The interval between two checks of a document starts at the base interval
+ * and grows geometrically, but never beyond a tenth of the time the document
+ * has been polled, so a long conversion is checked a few dozen times rather
+ * than once per base interval, and is seen done at most a tenth later than it
+ * ends. A document polled from its submission is first checked when
+ * {@link ConversionHistory} predicts a quarter of the conversions of its kind
+ * are done, and its duration is recorded once it is converted.
+ */
+public class StatusPoller {
+
+	/**
+	 * Sends one status check for a document.
+	 */
+	public interface Check {
+
+		/**
+		 * Sends one status check.
+		 *
+		 * @param docID the document ID.
+		 * @return a future completed with the document status, whose code is 1
+		 *         while the document is being converted.
+		 */
+		CompletableFuture<YuntuDoc> check(String docID);
+	}
+
+	/** The factor each interval grows by over the previous one. */
+	private static final double BACKOFF = 1.25;
+
+	/** The longest interval, as a fraction of the time polled so far. */
+	private static final double MAX_INTERVAL_RATIO = 0.1;
+
+	/** The longest interval in milliseconds. */
+	private static final long MAX_INTERVAL = 30 * 1000;
+
+	private static final TimingWheel timer = new TimingWheel("YuntuPoller");
+
+	private final Check check;
+
+	private final Executor executor;
+
+	private final long interval;
+
+	private final ConversionHistory history;
+
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * Constructs a poller that predicts from {@link ConversionHistory#DEFAULT}.
+	 *
+	 * @param check    sends one status check.
+	 * @param executor runs the checks, so that a check over a blocking transport
+	 *                 never holds the timer thread.
+	 * @param interval the base interval between two checks of a document, in
+	 *                 milliseconds.
+	 */
+	public StatusPoller(Check check, Executor executor, long interval) {
+		this(check, executor, interval, ConversionHistory.DEFAULT);
+	}
+
+	/**
+	 * Constructs a poller.
+	 *
+	 * @param check    sends one status check.
+	 * @param executor runs the checks, so that a check over a blocking transport
+	 *                 never holds the timer thread.
+	 * @param interval the base interval between two checks of a document, in
+	 *                 milliseconds. Each interval is drawn at random from three
+	 *                 quarters to five quarters of its value.
+	 * @param history  predicts when submitted documents are converted, and
+	 *                 records their durations.
+	 */
+	public StatusPoller(Check check, Executor executor, long interval, ConversionHistory history) {
+		if (check == null) {
+			throw new IllegalArgumentException("check");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("executor");
+		}
+		if (interval < 1) {
+			throw new IllegalArgumentException("interval");
+		}
+		if (history == null) {
+			throw new IllegalArgumentException("history");
+		}
+		this.check = check;
+		this.executor = executor;
+		this.interval = interval;
+		this.history = history;
+	}
+
+	/**
+	 * Checks the status of a document now, and again after each interval while
+	 * it is being converted. Polling stops when the returned future is
+	 * cancelled, and gives up with code 2 once <code>maxPolls</code> further
+	 * checks have been sent, <code>maxPolls</code> base intervals have passed, or
+	 * the next check would pass the calling thread's deadline.
+	 *
+	 * @param docID    the document ID.
+	 * @param maxPolls the number of checks after the first.
+	 * @return a future completed with the final status of the document.
+	 */
+	public CompletableFuture<YuntuDoc> poll(String docID, int maxPolls) {
+		Poll poll = start(docID, null, maxPolls);
+
+		poll.dispatch();
+		return poll;
+	}
+
+	/**
+	 * Polls a document just submitted for conversion, like
+	 * {@link #poll(String, int)}, but sends the first check when conversions of
+	 * its kind are predicted to be done, or after the base interval if there is
+	 * no prediction yet. The duration of a successful conversion is recorded.
+	 *
+	 * @param docID    the document ID.
+	 * @param kind     the kind of the document.
+	 * @param maxPolls the number of checks.
+	 * @return a future completed with the final status of the document.
+	 */
+	public CompletableFuture<YuntuDoc> pollSubmitted(String docID, ConversionHistory.Kind kind, int maxPolls) {
+		Poll poll = start(docID, kind, maxPolls);
+		long predicted = kind == null ? -1 : history.predict(kind);
+
+		poll.schedule(predicted > interval ? predicted : interval, null);
+		return poll;
+	}
+
+	private Poll start(String docID, ConversionHistory.Kind kind, int maxPolls) {
+		Poll poll = new Poll(docID, kind, maxPolls, Deadline.current());
+
+		pending.incrementAndGet();
+		poll.whenComplete((doc, e) -> pending.decrementAndGet());
+		return poll;
+	}
+
+	/**
+	 * Returns the number of documents being polled.
+	 *
+	 * @return the number of documents being polled.
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * A document being polled. The record is also the future its final status
+	 * completes.
+	 */
+	private final class Poll extends CompletableFuture<YuntuDoc> implements Runnable {
+
+		private final String docID;
+
+		/** The kind of a submitted document, or <code>null</code>. */
+		private final ConversionHistory.Kind kind;
+
+		private final Deadline deadline;
+
+		private final long startTime = System.nanoTime();
+
+		/** How long polling may last, in milliseconds. */
+		private final long patience;
+
+		private int remaining;
+
+		/** The current step of the geometric backoff; 0 before the first. */
+		private long step = 0;
+
+		/**
+		 * When the document was last seen being converted, since the start, or -1
+		 * before the first check.
+		 */
+		private long lastPending = -1;
+
+		/** The scheduled next check, cancelled with the poll. */
+		private volatile TimingWheel.Timeout next;
+
+		Poll(String docID, ConversionHistory.Kind kind, int remaining, Deadline deadline) {
+			this.docID = docID;
+			this.kind = kind;
+			this.remaining = remaining;
+			this.patience = remaining * interval;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Hands the next check to the executor.
+		 */
+		void dispatch() {
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				completeExceptionally(e);
+			}
+		}
+
+		/**
+		 * Schedules the next check after the specified delay, shortened to leave a
+		 * base interval before the deadline and to end within the patience.
+		 * Completes the poll with code 2 if no check fits.
+		 */
+		void schedule(long delay, YuntuDoc doc) {
+			long elapsed = getElapsed();
+
+			if (deadline != null && deadline.getRemainingMillis() <= delay) {
+				delay = deadline.getRemainingMillis() - interval;
+			}
+			delay = Math.min(delay, patience - elapsed);
+			if (remaining-- <= 0 || delay <= 0) {
+				if (doc == null) {
+					doc = new YuntuDoc(docID);
+				}
+				doc.setCode(2);
+				doc.setMessage("转换超时！");
+				complete(doc);
+				return;
+			}
+			next = timer.schedule(this::dispatch, delay, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			TimingWheel.Timeout timeout = next;
+
+			if (timeout != null) {
+				timeout.cancel();
+			}
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public void run() {
+			if (isDone()) {
+				return;
+			}
+
+			CompletableFuture<YuntuDoc> status;
+
+			try {
+				status = Deadline.with(deadline, () -> check.check(docID));
+			} catch (Throwable e) {
+				completeExceptionally(e);
+				return;
+			}
+			status.whenComplete(this::onStatus);
+		}
+
+		private void onStatus(YuntuDoc doc, Throwable e) {
+			if (e != null) {
+				completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+				return;
+			}
+
+			long elapsed = getElapsed();
+
+			if (doc.getCode() != 1 || isDone()) {
+				if (doc.getCode() == 0 && kind != null) {
+					history.record(kind, Math.max(0, lastPending), elapsed);
+				}
+				complete(doc);
+				return;
+			}
+			lastPending = elapsed;
+			step = step == 0 ? interval
+					: Math.min((long) (step * BACKOFF), Math.max(interval, (long) (elapsed * MAX_INTERVAL_RATIO)));
+			step = Math.min(step, MAX_INTERVAL);
+			schedule(step * 3 / 4 + ThreadLocalRandom.current().nextLong(step / 2 + 1), doc);
+		}
+
+		/**
+		 * Returns the milliseconds since polling started.
+		 */
+		private long getElapsed() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		}
+	}
+}
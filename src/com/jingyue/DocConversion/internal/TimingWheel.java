@@ -0,0 +1,409 @@
+package com.jingyue.DocConversion.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A hashed timing wheel. Time is divided into ticks, and the wheel into a
+ * power-of-two number of buckets, one per tick; a task is linked into the
+ * bucket of the tick it is due in. Scheduling and cancelling are O(1) whatever
+ * the number of pending tasks, unlike the O(log n) heap of a
+ * <code>ScheduledThreadPoolExecutor</code>, and a task runs within one tick
+ * after its delay.
+ * <p>
+ * Tasks due beyond the current turn of the wheel wait in a second, coarser
+ * wheel whose tick is a whole turn of the first, and move down when their turn
+ * comes. Each tick therefore visits only the tasks due in it, instead of
+ * counting down the turns of every task sharing its bucket, and an idle wheel
+ * costs next to nothing however many tasks are pending. Tasks due beyond a turn
+ * of the coarse wheel count down its turns.
+ * <p>
+ * One worker thread advances the wheel once per tick and runs the due tasks, so
+ * tasks must be short and hand any real work to an executor. Other threads
+ * never touch the buckets: new and cancelled tasks are passed to the worker
+ * through lock-free queues.
+ */
+public class TimingWheel {
+
+	/**
+	 * The tick length in milliseconds, fine enough for status polls every few
+	 * hundred milliseconds.
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 10;
+
+	/**
+	 * The number of buckets. One turn spans about five seconds, so that a poll
+	 * interval usually falls within the fine wheel, and a turn of the coarse
+	 * wheel about 43 minutes.
+	 */
+	public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+	/**
+	 * The most new tasks moved into buckets per tick, so that a burst of
+	 * schedules cannot stall the wheel.
+	 */
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+			.newUpdater(Timeout.class, "state");
+
+	private final long tickNanos;
+
+	/** The fine wheel, one bucket per tick. */
+	private final Bucket[] wheel;
+
+	/** The coarse wheel, one bucket per turn of the fine wheel. */
+	private final Bucket[] overflow;
+
+	private final int mask;
+
+	/** The base-2 logarithm of the number of buckets. */
+	private final int shift;
+
+	private final long startTime;
+
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<Timeout>();
+
+	private final AtomicInteger pending = new AtomicInteger();
+
+	private final Thread worker;
+
+	private volatile boolean stopped = false;
+
+	/** The number of ticks passed; read and written by the worker only. */
+	private long tick = 0;
+
+	/**
+	 * Constructs a timing wheel with the default tick length and size, and starts
+	 * its worker thread.
+	 *
+	 * @param name the name prefix of the worker thread.
+	 */
+	public TimingWheel(String name) {
+		this(name, DEFAULT_TICK_MILLIS, DEFAULT_TICKS_PER_WHEEL);
+	}
+
+	/**
+	 * Constructs a timing wheel and starts its worker thread.
+	 *
+	 * @param name          the name prefix of the worker thread, a daemon.
+	 * @param tickMillis    the tick length in milliseconds.
+	 * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+	 */
+	public TimingWheel(String name, long tickMillis, int ticksPerWheel) {
+		if (tickMillis < 1) {
+			throw new IllegalArgumentException("tickMillis");
+		}
+		if (ticksPerWheel < 2 || ticksPerWheel > 1 << 20) {
+			throw new IllegalArgumentException("ticksPerWheel");
+		}
+
+		int size = Integer.highestOneBit(ticksPerWheel);
+
+		if (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.wheel = new Bucket[size];
+		this.overflow = new Bucket[size];
+		this.mask = size - 1;
+		this.shift = Integer.numberOfTrailingZeros(size);
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+			overflow[i] = new Bucket();
+		}
+		this.startTime = System.nanoTime();
+		this.worker = new DaemonThreadFactory(name).newThread(this::run);
+		worker.start();
+	}
+
+	/**
+	 * Schedules a task to run on the worker thread after the specified delay.
+	 *
+	 * @param task  the task, which should finish quickly.
+	 * @param delay the delay; a delay shorter than one tick runs the task on the
+	 *              next tick.
+	 * @param unit  the unit of the delay.
+	 * @return the handle to cancel the task with.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if (task == null) {
+			throw new IllegalArgumentException("task");
+		}
+
+		long nanos = Math.min(Math.max(0, unit.toNanos(delay)), Long.MAX_VALUE / 4);
+		Timeout timeout = new Timeout(task, System.nanoTime() - startTime + nanos);
+
+		pending.incrementAndGet();
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Returns the number of tasks scheduled and neither run nor cancelled.
+	 *
+	 * @return the number of pending tasks.
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * Stops the worker thread. Pending tasks never run.
+	 */
+	public void stop() {
+		stopped = true;
+		worker.interrupt();
+	}
+
+	private void run() {
+		while (!stopped) {
+			long deadline = waitForNextTick();
+
+			if (deadline < 0) {
+				return;
+			}
+			removeCancelled();
+			if ((tick & mask) == 0) {
+				cascade();
+			}
+			transferAdded();
+			wheel[(int) (tick & mask)].expire(deadline);
+			tick++;
+		}
+	}
+
+	/**
+	 * Sleeps until the current tick ends.
+	 *
+	 * @return the end of the tick relative to the start time, or -1 if stopped.
+	 */
+	private long waitForNextTick() {
+		long deadline = tickNanos * (tick + 1);
+
+		for (;;) {
+			long now = System.nanoTime() - startTime;
+			long sleepMillis = (deadline - now + 999999) / 1000000;
+
+			if (sleepMillis <= 0) {
+				return now;
+			}
+			try {
+				Thread.sleep(sleepMillis);
+			} catch (InterruptedException e) {
+				if (stopped) {
+					return -1;
+				}
+			}
+		}
+	}
+
+	private void transferAdded() {
+		for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+			Timeout timeout = added.poll();
+
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.state == Timeout.PENDING) {
+				place(timeout);
+			}
+		}
+	}
+
+	/**
+	 * Links a task into the fine wheel if it is due within the current turn,
+	 * and into the coarse wheel otherwise.
+	 */
+	private void place(Timeout timeout) {
+		long due = timeout.deadline / tickNanos;
+		long turn = tick >>> shift;
+		long dueTurn = due >>> shift;
+
+		if (dueTurn <= turn) {
+			wheel[(int) (Math.max(due, tick) & mask)].add(timeout);
+		} else {
+			timeout.rounds = (dueTurn - turn - 1) >>> shift;
+			overflow[(int) (dueTurn & mask)].add(timeout);
+		}
+	}
+
+	/**
+	 * Moves the tasks due in the turn that starts now from the coarse wheel into
+	 * the fine wheel.
+	 */
+	private void cascade() {
+		Bucket bucket = overflow[(int) ((tick >>> shift) & mask)];
+		Timeout timeout = bucket.head;
+
+		while (timeout != null) {
+			Timeout next = timeout.next;
+
+			if (timeout.state != Timeout.PENDING) {
+				bucket.remove(timeout);
+			} else if (timeout.rounds > 0) {
+				timeout.rounds--;
+			} else {
+				bucket.remove(timeout);
+				place(timeout);
+			}
+			timeout = next;
+		}
+	}
+
+	private void removeCancelled() {
+		for (;;) {
+			Timeout timeout = cancelled.poll();
+
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * A scheduled task.
+	 */
+	public final class Timeout {
+
+		static final int PENDING = 0;
+
+		static final int CANCELLED = 1;
+
+		static final int EXPIRED = 2;
+
+		private final Runnable task;
+
+		/** When the task is due, relative to the start time of the wheel. */
+		private final long deadline;
+
+		/** The turns of the coarse wheel left before the task moves down. */
+		private long rounds;
+
+		private Bucket bucket;
+
+		private Timeout prev;
+
+		private Timeout next;
+
+		volatile int state = PENDING;
+
+		Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels the task if it has not run yet.
+		 *
+		 * @return <code>true</code> if the task was cancelled by this call.
+		 */
+		public boolean cancel() {
+			if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+				return false;
+			}
+			pending.decrementAndGet();
+			cancelled.add(this);
+			return true;
+		}
+
+		/**
+		 * Determines if the task was cancelled.
+		 *
+		 * @return <code>true</code> if the task was cancelled.
+		 */
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		/**
+		 * Determines if the task has run or is running.
+		 *
+		 * @return <code>true</code> if the task is due and was not cancelled.
+		 */
+		public boolean isExpired() {
+			return state == EXPIRED;
+		}
+
+		private void expire() {
+			if (!STATE.compareAndSet(this, PENDING, EXPIRED)) {
+				return;
+			}
+			pending.decrementAndGet();
+			try {
+				task.run();
+			} catch (Throwable e) {
+				// A failing task must not stop the wheel.
+			}
+		}
+	}
+
+	/**
+	 * The doubly linked list of the tasks in one bucket.
+	 */
+	private final class Bucket {
+
+		private Timeout head;
+
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			Timeout next = timeout.next;
+
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (next != null) {
+				next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+
+		/**
+		 * Runs the tasks of the fine wheel's current tick, all of which are due
+		 * by the specified time.
+		 */
+		void expire(long deadline) {
+			Timeout timeout = head;
+
+			while (timeout != null) {
+				Timeout next = timeout.next;
+
+				remove(timeout);
+				if (timeout.deadline <= deadline) {
+					timeout.expire();
+				} else {
+					place(timeout);
+				}
+				timeout = next;
+			}
+		}
+	}
+}
@@ -0,0 +1,433 @@
+package com.jingyue.DocConversion.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketOption;
+import java.nio.channels.SocketChannel;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import com.jingyue.DocConversion.transport.TlsStatistics;
+
+/**
+ * An <code>SSLSocket</code> that reports its handshake to
+ * {@link TlsStatistics}. The handshake is recorded on the calling thread, the
+ * first time {@link #startHandshake()} or {@link #getSession()} returns an
+ * established session, so no listener thread is started per handshake. Every
+ * HTTPS client of the SDK calls one of them before sending a request.
+ * <p>
+ * A handshake resumed a session if its session was seen before. A TLS 1.2
+ * resumption keeps the session ID; a TLS 1.3 resumption gets a new ID but keeps
+ * the peer and the creation time of the session it resumes, so a session is
+ * known by either.
+ */
+class TrackedSSLSocket extends SSLSocket {
+
+	/**
+	 * The sessions seen, by ID and by peer and creation time, least recently
+	 * seen first. Guarded by itself.
+	 */
+	private static final Set<String> knownSessions = Collections
+			.newSetFromMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+					return size() > 2 * SharedSSLContext.SESSION_CACHE_SIZE;
+				}
+			});
+
+	private final SSLSocket socket;
+
+	private final AtomicBoolean recorded = new AtomicBoolean();
+
+	TrackedSSLSocket(SSLSocket socket) {
+		this.socket = socket;
+	}
+
+	private void record(SSLSession session) {
+		byte[] id = session.getId();
+
+		if (id == null || id.length == 0 || !session.isValid() || !recorded.compareAndSet(false, true)) {
+			return;
+		}
+
+		String byId = "id:" + Base64.getEncoder().encodeToString(id);
+		String byPeer = "peer:" + session.getPeerHost() + ":" + session.getPeerPort() + ":"
+				+ session.getCreationTime();
+		boolean resumed;
+
+		synchronized (knownSessions) {
+			resumed = knownSessions.contains(byId) | knownSessions.contains(byPeer);
+			knownSessions.add(byId);
+			knownSessions.add(byPeer);
+		}
+		TlsStatistics.record(resumed);
+	}
+
+	@Override
+	public void startHandshake() throws IOException {
+		socket.startHandshake();
+		record(socket.getSession());
+	}
+
+	@Override
+	public SSLSession getSession() {
+		SSLSession session = socket.getSession();
+
+		record(session);
+		return session;
+	}
+
+	@Override
+	public SSLSession getHandshakeSession() {
+		return socket.getHandshakeSession();
+	}
+
+	@Override
+	public String[] getSupportedCipherSuites() {
+		return socket.getSupportedCipherSuites();
+	}
+
+	@Override
+	public String[] getEnabledCipherSuites() {
+		return socket.getEnabledCipherSuites();
+	}
+
+	@Override
+	public void setEnabledCipherSuites(String[] suites) {
+		socket.setEnabledCipherSuites(suites);
+	}
+
+	@Override
+	public String[] getSupportedProtocols() {
+		return socket.getSupportedProtocols();
+	}
+
+	@Override
+	public String[] getEnabledProtocols() {
+		return socket.getEnabledProtocols();
+	}
+
+	@Override
+	public void setEnabledProtocols(String[] protocols) {
+		socket.setEnabledProtocols(protocols);
+	}
+
+	@Override
+	public void addHandshakeCompletedListener(HandshakeCompletedListener listener) {
+		socket.addHandshakeCompletedListener(listener);
+	}
+
+	@Override
+	public void removeHandshakeCompletedListener(HandshakeCompletedListener listener) {
+		socket.removeHandshakeCompletedListener(listener);
+	}
+
+	@Override
+	public void setUseClientMode(boolean mode) {
+		socket.setUseClientMode(mode);
+	}
+
+	@Override
+	public boolean getUseClientMode() {
+		return socket.getUseClientMode();
+	}
+
+	@Override
+	public void setNeedClientAuth(boolean need) {
+		socket.setNeedClientAuth(need);
+	}
+
+	@Override
+	public boolean getNeedClientAuth() {
+		return socket.getNeedClientAuth();
+	}
+
+	@Override
+	public void setWantClientAuth(boolean want) {
+		socket.setWantClientAuth(want);
+	}
+
+	@Override
+	public boolean getWantClientAuth() {
+		return socket.getWantClientAuth();
+	}
+
+	@Override
+	public void setEnableSessionCreation(boolean flag) {
+		socket.setEnableSessionCreation(flag);
+	}
+
+	@Override
+	public boolean getEnableSessionCreation() {
+		return socket.getEnableSessionCreation();
+	}
+
+	@Override
+	public SSLParameters getSSLParameters() {
+		return socket.getSSLParameters();
+	}
+
+	@Override
+	public void setSSLParameters(SSLParameters params) {
+		socket.setSSLParameters(params);
+	}
+
+	@Override
+	public String getApplicationProtocol() {
+		return socket.getApplicationProtocol();
+	}
+
+	@Override
+	public String getHandshakeApplicationProtocol() {
+		return socket.getHandshakeApplicationProtocol();
+	}
+
+	@Override
+	public void setHandshakeApplicationProtocolSelector(BiFunction<SSLSocket, List<String>, String> selector) {
+		socket.setHandshakeApplicationProtocolSelector(selector);
+	}
+
+	@Override
+	public BiFunction<SSLSocket, List<String>, String> getHandshakeApplicationProtocolSelector() {
+		return socket.getHandshakeApplicationProtocolSelector();
+	}
+
+	@Override
+	public void connect(SocketAddress endpoint) throws IOException {
+		socket.connect(endpoint);
+	}
+
+	@Override
+	public void connect(SocketAddress endpoint, int timeout) throws IOException {
+		socket.connect(endpoint, timeout);
+	}
+
+	@Override
+	public void bind(SocketAddress bindpoint) throws IOException {
+		socket.bind(bindpoint);
+	}
+
+	@Override
+	public InetAddress getInetAddress() {
+		return socket.getInetAddress();
+	}
+
+	@Override
+	public InetAddress getLocalAddress() {
+		return socket.getLocalAddress();
+	}
+
+	@Override
+	public int getPort() {
+		return socket.getPort();
+	}
+
+	@Override
+	public int getLocalPort() {
+		return socket.getLocalPort();
+	}
+
+	@Override
+	public SocketAddress getRemoteSocketAddress() {
+		return socket.getRemoteSocketAddress();
+	}
+
+	@Override
+	public SocketAddress getLocalSocketAddress() {
+		return socket.getLocalSocketAddress();
+	}
+
+	@Override
+	public SocketChannel getChannel() {
+		return socket.getChannel();
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return socket.getInputStream();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return socket.getOutputStream();
+	}
+
+	@Override
+	public void setTcpNoDelay(boolean on) throws SocketException {
+		socket.setTcpNoDelay(on);
+	}
+
+	@Override
+	public boolean getTcpNoDelay() throws SocketException {
+		return socket.getTcpNoDelay();
+	}
+
+	@Override
+	public void setSoLinger(boolean on, int linger) throws SocketException {
+		socket.setSoLinger(on, linger);
+	}
+
+	@Override
+	public int getSoLinger() throws SocketException {
+		return socket.getSoLinger();
+	}
+
+	@Override
+	public void sendUrgentData(int data) throws IOException {
+		socket.sendUrgentData(data);
+	}
+
+	@Override
+	public void setOOBInline(boolean on) throws SocketException {
+		socket.setOOBInline(on);
+	}
+
+	@Override
+	public boolean getOOBInline() throws SocketException {
+		return socket.getOOBInline();
+	}
+
+	@Override
+	public void setSoTimeout(int timeout) throws SocketException {
+		socket.setSoTimeout(timeout);
+	}
+
+	@Override
+	public int getSoTimeout() throws SocketException {
+		return socket.getSoTimeout();
+	}
+
+	@Override
+	public void setSendBufferSize(int size) throws SocketException {
+		socket.setSendBufferSize(size);
+	}
+
+	@Override
+	public int getSendBufferSize() throws SocketException {
+		return socket.getSendBufferSize();
+	}
+
+	@Override
+	public void setReceiveBufferSize(int size) throws SocketException {
+		socket.setReceiveBufferSize(size);
+	}
+
+	@Override
+	public int getReceiveBufferSize() throws SocketException {
+		return socket.getReceiveBufferSize();
+	}
+
+	@Override
+	public void setKeepAlive(boolean on) throws SocketException {
+		socket.setKeepAlive(on);
+	}
+
+	@Override
+	public boolean getKeepAlive() throws SocketException {
+		return socket.getKeepAlive();
+	}
+
+	@Override
+	public void setTrafficClass(int tc) throws SocketException {
+		socket.setTrafficClass(tc);
+	}
+
+	@Override
+	public int getTrafficClass() throws SocketException {
+		return socket.getTrafficClass();
+	}
+
+	@Override
+	public void setReuseAddress(boolean on) throws SocketException {
+		socket.setReuseAddress(on);
+	}
+
+	@Override
+	public boolean getReuseAddress() throws SocketException {
+		return socket.getReuseAddress();
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	@Override
+	public void shutdownInput() throws IOException {
+		socket.shutdownInput();
+	}
+
+	@Override
+	public void shutdownOutput() throws IOException {
+		socket.shutdownOutput();
+	}
+
+	@Override
+	public boolean isConnected() {
+		return socket.isConnected();
+	}
+
+	@Override
+	public boolean isBound() {
+		return socket.isBound();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+
+	@Override
+	public boolean isInputShutdown() {
+		return socket.isInputShutdown();
+	}
+
+	@Override
+	public boolean isOutputShutdown() {
+		return socket.isOutputShutdown();
+	}
+
+	@Override
+	public void setPerformancePreferences(int connectionTime, int latency, int bandwidth) {
+		socket.setPerformancePreferences(connectionTime, latency, bandwidth);
+	}
+
+	@Override
+	public <T> SSLSocket setOption(SocketOption<T> name, T value) throws IOException {
+		socket.setOption(name, value);
+		return this;
+	}
+
+	@Override
+	public <T> T getOption(SocketOption<T> name) throws IOException {
+		return socket.getOption(name);
+	}
+
+	@Override
+	public Set<SocketOption<?>> supportedOptions() {
+		return socket.supportedOptions();
+	}
+
+	@Override
+	public String toString() {
+		return socket.toString();
+	}
+}
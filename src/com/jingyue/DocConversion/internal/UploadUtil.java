@@ -13,19 +13,106 @@ import com.aliyun.oss.event.ProgressListener;
 import com.jingyue.DocConversion.YuntuConfig;
 import com.jingyue.DocConversion.common.YuntuDoc;
 import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.transport.YuntuTransport;
 
 public class UploadUtil {
 
+	/**
+	 * Submits a document uploaded to OSS for conversion.
+	 */
+	public interface Submitter {
+
+		/**
+		 * Submits an uploaded document for conversion.
+		 * 
+		 * @param docID    the document ID the document was uploaded under.
+		 * @param fileName the file name of the document.
+		 * @param fileSize the size of the document in bytes, or a negative number
+		 *                 if unknown.
+		 * @param polling  <code>false</code> to return the submitted document,
+		 *                 whose code is 1 while it is being converted.
+		 * @return the document status.
+		 * @throws YuntuException if the submission fails.
+		 */
+		YuntuDoc submit(String docID, String fileName, long fileSize, boolean polling) throws YuntuException;
+	}
+
+	/** The host that issues the temporary OSS credentials for uploads. */
+	public static final String UPLOAD_HOST = "https://server.9yuntu.cn";
+
 	private YuntuDoc doc = null;
 
 	private YuntuConfig config = null;
 
-	public UploadUtil(YuntuConfig config) {
+	private YuntuTransport transport = null;
+
+	private boolean zeroCopy = false;
+
+	private boolean polling = true;
+
+	private final Submitter submitter;
+
+	/**
+	 * Constructs an uploader that submits uploaded documents with a
+	 * {@link Sender} to the default host, without credentials.
+	 */
+	public UploadUtil(YuntuConfig config, YuntuTransport transport) {
+		this(config, transport, null);
+	}
+
+	/**
+	 * Constructs an uploader.
+	 * 
+	 * @param submitter submits uploaded documents for conversion, or
+	 *                  <code>null</code> to use a {@link Sender}.
+	 */
+	public UploadUtil(YuntuConfig config, YuntuTransport transport, Submitter submitter) {
 		this.config = config;
+		this.transport = transport;
+		this.submitter = submitter;
 		this.doc = new YuntuDoc();
 		this.doc.setCode(1);
 	}
 
+	/**
+	 * Sets whether files are uploaded with <code>FileChannel.transferTo</code>
+	 * instead of through the OSS SDK.
+	 * 
+	 * @param zeroCopy <code>true</code> to upload files without user-space
+	 *                 copies.
+	 * @see OSSUtil#uploadFileZeroCopy(String, String, File)
+	 */
+	public void setZeroCopy(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+	}
+
+	/**
+	 * Sets whether the upload methods poll until the conversion ends, or return
+	 * the document as soon as it is submitted for conversion.
+	 * 
+	 * @param polling <code>false</code> to return the submitted document, whose
+	 *                code is 1 while it is being converted.
+	 */
+	public void setPolling(boolean polling) {
+		this.polling = polling;
+	}
+
+	/**
+	 * Submits an uploaded document of the specified size, or of unknown size if
+	 * negative.
+	 */
+	private YuntuDoc submit(String docID, String fileName, long fileSize) throws YuntuException {
+		if (submitter != null) {
+			return submitter.submit(docID, fileName, fileSize, polling);
+		}
+
+		Sender sender = new Sender(config, transport);
+
+		sender.setPolling(polling);
+		sender.setFileSize(fileSize);
+		return sender.convert(docID, fileName);
+	}
+
 	public YuntuDoc uploadToOSS(InputStream inputStream, String fileName) throws IOException, YuntuException {
 		return uploadToOSS(inputStream, fileName, null);
 	}
@@ -44,7 +131,7 @@ public class UploadUtil {
 		int length = (int) file.length();
 		String name = file.getName();
 
-		String body = HttpUtils.get("https://server.9yuntu.cn", "/execute/UploadFileAction", null, null);
+		String body = transport.get(UPLOAD_HOST, "/execute/UploadFileAction", null, null);
 		final String lockID = LockManager.getLockId("LOCK::" + token);
 
 		if (body != null) {
@@ -63,6 +150,12 @@ public class UploadUtil {
 				String securityToken = JsonUtil.getString(jsonObj, "SecurityToken");
 				OSSUtil ossUtil = new OSSUtil(accessKeyId, accessKeySecret, securityToken);
 
+				if (zeroCopy) {
+					ossUtil.uploadFileZeroCopy(token, name, file);
+					doc = submit(token, name, file.length());
+					return doc;
+				}
+
 				ossUtil.uploadFile(token, name, file, length, new ProgressListener() {
 
 					private long totalBytes = 0;
@@ -96,8 +189,8 @@ public class UploadUtil {
 							break;
 						case TRANSFER_COMPLETED_EVENT:
 							try {
-								doc = new Sender(config).convert(token, file.getName());
-								if (doc == null || !doc.isSuccess()) {
+								doc = submit(token, file.getName(), file.length());
+								if (doc == null || doc.getCode() != 1 && !doc.isSuccess()) {
 									System.out.println("error code: " + doc.getCode());
 								}
 								LockManager.notify(lockID);
@@ -114,7 +207,10 @@ public class UploadUtil {
 					}
 				});
 				if (doc == null) {
-					LockManager.wait(lockID, 10 * 60 * 1000);
+					LockManager.wait(lockID, Deadline.timeout(10 * 60 * 1000));
+				}
+				if (doc == null || !doc.isSuccess()) {
+					Deadline.check();
 				}
 			} else {
 				String reason = JsonUtil.getString(resJsonObj, "failReason");
@@ -133,7 +229,7 @@ public class UploadUtil {
 
 		final String token = docID == null ? generateUUID() : docID;
 
-		String body = HttpUtils.get("https://server.9yuntu.cn", "/execute/UploadFileAction", null, null);
+		String body = transport.get(UPLOAD_HOST, "/execute/UploadFileAction", null, null);
 		final String lockID = LockManager.getLockId("LOCK::" + token);
 
 		if (body != null) {
@@ -185,8 +281,8 @@ public class UploadUtil {
 							break;
 						case TRANSFER_COMPLETED_EVENT:
 							try {
-								doc = new Sender(config).convert(token, name);
-								if (doc == null || !doc.isSuccess()) {
+								doc = submit(token, name, -1);
+								if (doc == null || doc.getCode() != 1 && !doc.isSuccess()) {
 									System.out.println("error code: " + doc.getCode());
 								}
 								LockManager.notify(lockID);
@@ -203,7 +299,10 @@ public class UploadUtil {
 					}
 				});
 				if (doc == null) {
-					LockManager.wait(lockID, 10 * 60 * 1000);
+					LockManager.wait(lockID, Deadline.timeout(10 * 60 * 1000));
+				}
+				if (doc == null || !doc.isSuccess()) {
+					Deadline.check();
 				}
 			} else {
 				String reason = JsonUtil.getString(resJsonObj, "failReason");
@@ -0,0 +1,421 @@
+package com.jingyue.DocConversion.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+
+import com.jingyue.DocConversion.common.DeadlineExceededException;
+
+/**
+ * Sends a file as the body of an HTTP PUT request without copying it through
+ * user space. On a plain HTTP connection the file is handed to the socket with
+ * <code>FileChannel.transferTo</code>, which the JDK maps to
+ * <code>sendfile</code> on Linux. TLS needs the bytes in user space to encrypt
+ * them, so on HTTPS the file is streamed through a pooled buffer instead.
+ */
+public class ZeroCopyUploader {
+
+	/**
+	 * The connect timeout in milliseconds, shortened to the calling thread's
+	 * deadline.
+	 */
+	public static final int CONNECT_TIMEOUT = 10 * 1000;
+
+	/**
+	 * The timeout in milliseconds for reading the response, and for each write
+	 * that makes no progress, shortened to the calling thread's deadline.
+	 */
+	public static final int READ_TIMEOUT = 60 * 1000;
+
+	/**
+	 * Returns a socket timeout shortened to the calling thread's deadline.
+	 */
+	private static int timeout(int millis) throws SocketTimeoutException {
+		try {
+			return (int) Deadline.timeout(millis);
+		} catch (DeadlineExceededException e) {
+			throw new SocketTimeoutException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Uploads a file with an HTTP PUT request.
+	 * 
+	 * @param url         the URL to upload to.
+	 * @param headers the request headers; Host, Content-Length and Connection are
+	 *                set by this method.
+	 * @param file    the file to upload.
+	 * @return the response body.
+	 * @throws IOException if the upload fails or the server does not answer with
+	 *                     200.
+	 */
+	public static String put(URL url, Map<String, String> headers, File file) throws IOException {
+		boolean secure = "https".equalsIgnoreCase(url.getProtocol());
+		int port = url.getPort() > 0 ? url.getPort() : (secure ? 443 : 80);
+		FileInputStream in = new FileInputStream(file);
+
+		try {
+			FileChannel fileChannel = in.getChannel();
+			long length = fileChannel.size();
+			byte[] head = getRequestHead(url, headers, length);
+
+			if (secure) {
+				SSLSocket socket = createSecureSocket();
+
+				try {
+					socket.connect(new InetSocketAddress(url.getHost(), port), timeout(CONNECT_TIMEOUT));
+					socket.setSoTimeout(timeout(READ_TIMEOUT));
+					socket.startHandshake();
+
+					OutputStream out = new TimedOutputStream(socket);
+
+					out.write(head);
+					BufferPool.copy(in, out);
+					out.flush();
+					return readResponse(new BufferedInputStream(socket.getInputStream()));
+				} finally {
+					socket.close();
+				}
+			}
+
+			SocketChannel channel = SocketChannel.open();
+
+			try {
+				channel.socket().connect(new InetSocketAddress(url.getHost(), port), timeout(CONNECT_TIMEOUT));
+				channel.socket().setSoTimeout(timeout(READ_TIMEOUT));
+
+				send(channel, head, fileChannel, length, file);
+				// Reads through the socket's stream so that the read timeout applies.
+				return readResponse(new BufferedInputStream(channel.socket().getInputStream()));
+			} finally {
+				channel.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Sends the request head and the file over a plain connection. SO_TIMEOUT
+	 * bounds reads only, so the channel writes in non-blocking mode and waits for
+	 * it to become writable for at most {@link #READ_TIMEOUT} each time it
+	 * stalls. The channel is back in blocking mode when this method returns.
+	 */
+	private static void send(SocketChannel channel, byte[] head, FileChannel fileChannel, long length, File file)
+			throws IOException {
+
+		Selector selector = Selector.open();
+
+		try {
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_WRITE);
+
+			ByteBuffer headBuffer = ByteBuffer.wrap(head);
+
+			while (headBuffer.hasRemaining()) {
+				if (channel.write(headBuffer) == 0) {
+					awaitWritable(selector);
+				}
+			}
+
+			long position = 0;
+			ByteBuffer fallback = null;
+			boolean stalled = false;
+
+			while (position < length) {
+				long sent = fileChannel.transferTo(position, length - position, channel);
+
+				if (sent == 0) {
+					if (fileChannel.size() < length) {
+						throw new IOException("File truncated during upload: " + file);
+					}
+					if (stalled) {
+						// Writable, yet transferTo sent nothing: copy the next bytes
+						// through a buffer instead.
+						if (fallback == null) {
+							fallback = ByteBuffer.allocate(8192);
+						}
+						fallback.clear();
+						fallback.limit((int) Math.min(fallback.capacity(), length - position));
+						if (fileChannel.read(fallback, position) <= 0) {
+							throw new IOException("File truncated during upload: " + file);
+						}
+						fallback.flip();
+						sent = channel.write(fallback);
+					}
+					if (sent == 0) {
+						awaitWritable(selector);
+						stalled = true;
+						continue;
+					}
+				}
+				stalled = false;
+				position += sent;
+			}
+		} finally {
+			// Deregisters the channel, so that it can block again.
+			selector.close();
+		}
+		channel.configureBlocking(true);
+	}
+
+	private static void awaitWritable(Selector selector) throws IOException {
+		selector.selectedKeys().clear();
+		if (selector.select(timeout(READ_TIMEOUT)) == 0) {
+			throw new SocketTimeoutException("Write timed out");
+		}
+	}
+
+	/**
+	 * The output stream of a TLS socket, which cannot write in non-blocking mode.
+	 * A write that blocks longer than {@link #READ_TIMEOUT} closes the socket
+	 * from a timer and fails with a <code>SocketTimeoutException</code>.
+	 */
+	private static final class TimedOutputStream extends FilterOutputStream {
+
+		private final Socket socket;
+
+		private volatile boolean expired = false;
+
+		TimedOutputStream(Socket socket) throws IOException {
+			super(socket.getOutputStream());
+			this.socket = socket;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			CompletableFuture<Void> timer = Futures.delay(timeout(READ_TIMEOUT), TimeUnit.MILLISECONDS);
+
+			timer.thenRun(this::expire);
+			try {
+				out.write(b, off, len);
+			} catch (IOException e) {
+				if (expired) {
+					throw new SocketTimeoutException("Write timed out");
+				}
+				throw e;
+			} finally {
+				timer.cancel(false);
+			}
+		}
+
+		private void expire() {
+			expired = true;
+			try {
+				socket.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/**
+	 * Creates an unconnected TLS socket that verifies the server's certificate
+	 * matches the host it is connected to, as <code>HttpsURLConnection</code>
+	 * does. A bare <code>SSLSocket</code> only checks that the certificate
+	 * chains to a trusted root, so without this any host with a valid
+	 * certificate could receive the upload.
+	 */
+	private static SSLSocket createSecureSocket() throws IOException {
+		SSLSocket socket = (SSLSocket) SharedSSLContext.getSocketFactory().createSocket();
+		SSLParameters parameters = socket.getSSLParameters();
+
+		parameters.setEndpointIdentificationAlgorithm("HTTPS");
+		socket.setSSLParameters(parameters);
+		return socket;
+	}
+
+	private static byte[] getRequestHead(URL url, Map<String, String> headers, long length) {
+		StringBuilder sb = new StringBuilder();
+		String path = url.getFile();
+
+		sb.append("PUT ").append(path.length() > 0 ? path : "/").append(" HTTP/1.1\r\n");
+		sb.append("Host: ").append(url.getHost());
+		if (url.getPort() > 0) {
+			sb.append(':').append(url.getPort());
+		}
+		sb.append("\r\n");
+		if (headers != null) {
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				if (header.getKey() != null && header.getValue() != null) {
+					sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+				}
+			}
+		}
+		sb.append("Content-Length: ").append(length).append("\r\n");
+		sb.append("Connection: close\r\n\r\n");
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the response to a request sent with "Connection: close". Interim 1xx
+	 * responses are skipped. The body is delimited by Content-Length, by chunked
+	 * transfer coding, or otherwise by the end of the connection.
+	 */
+	private static String readResponse(InputStream in) throws IOException {
+		int code;
+		long contentLength;
+		boolean chunked;
+
+		do {
+			String statusLine = readLine(in);
+
+			if (statusLine == null) {
+				throw new IOException("Empty response");
+			}
+
+			String[] status = statusLine.split(" ", 3);
+
+			try {
+				code = status.length > 1 ? Integer.parseInt(status[1]) : -1;
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed status line: " + statusLine);
+			}
+			contentLength = -1;
+			chunked = false;
+
+			String line;
+
+			while ((line = readLine(in)) != null && line.length() > 0) {
+				int pos = line.indexOf(':');
+
+				if (pos <= 0) {
+					continue;
+				}
+
+				String name = line.substring(0, pos).trim();
+				String value = line.substring(pos + 1).trim();
+
+				if (name.equalsIgnoreCase("Content-Length")) {
+					contentLength = parseLength(value, 10, line);
+				} else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+					chunked = value.toLowerCase().endsWith("chunked");
+				}
+			}
+		} while (code >= 100 && code < 200);
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		if (chunked) {
+			readChunked(in, body);
+		} else if (copy(in, body, contentLength) < contentLength) {
+			throw new IOException("Truncated body");
+		}
+
+		String text = new String(body.toByteArray(), StandardCharsets.UTF_8);
+
+		if (code != 200) {
+			throw new IOException(code + ":" + text);
+		}
+		return text;
+	}
+
+	/**
+	 * Decodes a chunked body: chunks of a hexadecimal size, each followed by a
+	 * line break, up to a chunk of size 0 and the trailer section.
+	 */
+	private static void readChunked(InputStream in, ByteArrayOutputStream body) throws IOException {
+		for (;;) {
+			String line = readLine(in);
+
+			if (line == null) {
+				throw new IOException("Truncated chunked body");
+			}
+
+			int end = line.indexOf(';');
+			long size = parseLength((end >= 0 ? line.substring(0, end) : line).trim(), 16, line);
+
+			if (size == 0) {
+				while ((line = readLine(in)) != null && line.length() > 0) {
+					// Trailer fields are not used.
+				}
+				return;
+			}
+			if (copy(in, body, size) < size) {
+				throw new IOException("Truncated chunked body");
+			}
+			readLine(in);
+		}
+	}
+
+	/**
+	 * Parses a Content-Length value or a chunk size.
+	 *
+	 * @throws IOException if the value is not a non-negative number.
+	 */
+	private static long parseLength(String value, int radix, String line) throws IOException {
+		long length;
+
+		try {
+			length = Long.parseLong(value, radix);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed length: " + line);
+		}
+		if (length < 0) {
+			throw new IOException("Malformed length: " + line);
+		}
+		return length;
+	}
+
+	/**
+	 * Copies the specified number of bytes, or up to the end of the stream if
+	 * negative.
+	 *
+	 * @return the number of bytes copied.
+	 */
+	private static long copy(InputStream in, ByteArrayOutputStream out, long length) throws IOException {
+		byte[] buffer = new byte[4096];
+		long copied = 0;
+		int n;
+
+		while ((length < 0 || copied < length) && (n = in.read(buffer, 0,
+				length < 0 ? buffer.length : (int) Math.min(buffer.length, length - copied))) >= 0) {
+			out.write(buffer, 0, n);
+			copied += n;
+		}
+		return copied;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int b;
+
+		while ((b = in.read()) >= 0) {
+			if (b == '\n') {
+				break;
+			}
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+		if (b < 0 && line.size() == 0) {
+			return null;
+		}
+		return new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+}
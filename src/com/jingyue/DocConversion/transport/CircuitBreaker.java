@@ -0,0 +1,545 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * 单个服务器主机的熔断器，由 {@link CircuitBreakingTransport} 使用。
+ * <p>
+ * 熔断器根据最近 {@link #getWindowSize()} 个请求的结果判断主机是否健康，有三种状态：
+ * <ul>
+ * <li>{@link State#CLOSED} - 正常状态，请求照常发送。最近的请求数达到 {@link #getMinimumCalls()}，并且暂时性故障的比例达到
+ * {@link #getFailureRateThreshold()}，或耗时超过 {@link #getSlowCallDuration()} 的慢请求比例达到
+ * {@link #getSlowCallRateThreshold()} 时，熔断器打开；</li>
+ * <li>{@link State#OPEN} - 熔断状态，请求不再发送，立即以 {@link CircuitOpenException} 失败，调用线程不会阻塞在无响应的主机上。经过
+ * {@link #getOpenDuration()} 后进入半开状态；</li>
+ * <li>{@link State#HALF_OPEN} - 试探状态，只允许 {@link #getHalfOpenCalls()} 个试探请求通过。全部成功则恢复正常状态，
+ * 任何一个失败或过慢则重新熔断。</li>
+ * </ul>
+ * 网络错误和所有 HTTP 5xx 状态码计为失败，见 {@link #isFailure(Throwable)}；HTTP 4xx（包括 429 和授权错误）说明主机仍能正常响应，
+ * 不计为失败。
+ * </p>
+ * <p>
+ * 每个主机对应一个实例，可以通过 {@link #forHost(String)} 查询，也可以用 {@link #addListener(Listener)} 监听状态变化。
+ * </p>
+ */
+public class CircuitBreaker {
+
+	/** 熔断器的状态。 */
+	public enum State {
+		/** 正常状态。 */
+		CLOSED,
+		/** 熔断状态。 */
+		OPEN,
+		/** 试探状态。 */
+		HALF_OPEN
+	}
+
+	/** 熔断器状态变化的监听器。 */
+	public interface Listener {
+
+		/**
+		 * 熔断器的状态发生变化。该方法在触发变化的请求线程中调用，不应执行耗时的操作。
+		 * 
+		 * @param breaker 熔断器。
+		 * @param from    原来的状态。
+		 * @param to      新的状态。
+		 */
+		void stateChanged(CircuitBreaker breaker, State from, State to);
+	}
+
+	/** 默认统计的最近请求数。 */
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+
+	/** 默认计算失败比例所需的最少请求数。 */
+	public static final int DEFAULT_MINIMUM_CALLS = 10;
+
+	/** 默认打开熔断器的失败比例。 */
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+
+	/** 默认的慢请求耗时，单位为毫秒。 */
+	public static final long DEFAULT_SLOW_CALL_DURATION = 10 * 1000L;
+
+	/** 默认打开熔断器的慢请求比例。 */
+	public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8;
+
+	/** 默认的熔断时间，单位为毫秒。 */
+	public static final long DEFAULT_OPEN_DURATION = 10 * 1000L;
+
+	/** 默认半开状态允许的试探请求数。 */
+	public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+	private static final ConcurrentMap<String, CircuitBreaker> hosts = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private static final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final String host;
+
+	private volatile int minimumCalls = DEFAULT_MINIMUM_CALLS;
+
+	private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+	private volatile long slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+
+	private volatile double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+	private volatile long openDuration = DEFAULT_OPEN_DURATION;
+
+	private volatile int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+	private State state = State.CLOSED;
+
+	/** 最近请求的结果，按环形缓冲区保存。 */
+	private boolean[] failed = new boolean[DEFAULT_WINDOW_SIZE];
+
+	private boolean[] slow = new boolean[DEFAULT_WINDOW_SIZE];
+
+	private int next = 0;
+
+	private int calls = 0;
+
+	private int failures = 0;
+
+	private int slowCalls = 0;
+
+	private long openedAt = 0;
+
+	private int trialsStarted = 0;
+
+	private int trialsSucceeded = 0;
+
+	private long rejectedCalls = 0;
+
+	private CircuitBreaker(String host) {
+		this.host = host;
+	}
+
+	/**
+	 * 返回指定主机的熔断器。
+	 * 
+	 * @param host 服务器网址，例如 "http://api.9yuntu.cn"。
+	 * @return 返回指定主机的熔断器。
+	 */
+	public static CircuitBreaker forHost(String host) {
+		CircuitBreaker breaker = hosts.get(host);
+
+		if (breaker == null) {
+			CircuitBreaker created = new CircuitBreaker(host);
+
+			breaker = hosts.putIfAbsent(host, created);
+			if (breaker == null) {
+				breaker = created;
+			}
+		}
+		return breaker;
+	}
+
+	/**
+	 * 返回所有主机的熔断器。
+	 * 
+	 * @return 以服务器网址为键的熔断器。
+	 */
+	public static Map<String, CircuitBreaker> getAll() {
+		return Collections.unmodifiableMap(new TreeMap<String, CircuitBreaker>(hosts));
+	}
+
+	/**
+	 * 添加状态变化的监听器，监听所有主机的熔断器。
+	 * 
+	 * @param listener 监听器。
+	 */
+	public static void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * 移除状态变化的监听器。
+	 * 
+	 * @param listener 监听器。
+	 */
+	public static void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * 判断导致请求失败的异常是否说明主机不健康，应计为熔断器的失败。与 {@link RetryPolicy} 不同，这里不考虑请求能否重试：
+	 * 所有 HTTP 5xx 状态码（包括 500）和网络错误（连接失败、超时、连接被重置等）都计为失败；HTTP 4xx、URL 错误，以及
+	 * 在本地被拒绝、没有发出的请求不计为失败。
+	 * 
+	 * @param e 请求失败的异常。
+	 * @return 应计为失败时返回 <code>true</code>。
+	 */
+	public static boolean isFailure(Throwable e) {
+		while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+			e = e.getCause();
+		}
+		if (e instanceof YuntuException && ((YuntuException) e).getStatusCode() != 0) {
+			return ((YuntuException) e).getStatusCode() >= 500;
+		}
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof MalformedURLException) {
+				return false;
+			}
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 申请发送一个请求。返回 <code>true</code> 时，调用者发送请求后必须调用 {@link #onSuccess(long)} 或
+	 * {@link #onFailure(long)} 报告结果；请求被取消时调用 {@link #onCancelled()}。
+	 * 
+	 * @return 允许发送时返回 <code>true</code>；熔断器打开或试探请求已满时返回 <code>false</code>。
+	 */
+	public boolean tryAcquire() {
+		State from;
+
+		synchronized (this) {
+			if (state == State.OPEN) {
+				if (System.currentTimeMillis() - openedAt < openDuration) {
+					rejectedCalls++;
+					return false;
+				}
+				trialsStarted = 0;
+				trialsSucceeded = 0;
+				from = transition(State.HALF_OPEN);
+			} else {
+				from = null;
+			}
+			if (state == State.HALF_OPEN) {
+				if (trialsStarted >= halfOpenCalls) {
+					rejectedCalls++;
+					return false;
+				}
+				trialsStarted++;
+			}
+		}
+		fire(from, State.HALF_OPEN);
+		return true;
+	}
+
+	/**
+	 * 报告一个请求成功，或以永久性故障失败。
+	 * 
+	 * @param duration 请求的耗时，单位为毫秒。
+	 */
+	public void onSuccess(long duration) {
+		record(false, duration);
+	}
+
+	/**
+	 * 报告一个请求以暂时性故障失败。
+	 * 
+	 * @param duration 请求的耗时，单位为毫秒。
+	 */
+	public void onFailure(long duration) {
+		record(true, duration);
+	}
+
+	/**
+	 * 报告一个请求在得到结果前被取消。取消说明不了主机是否健康，因此不计入统计；半开状态下归还该请求占用的试探名额，
+	 * 以便发送下一个试探请求。
+	 */
+	public void onCancelled() {
+		synchronized (this) {
+			if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) {
+				trialsStarted--;
+			}
+		}
+	}
+
+	private void record(boolean failure, long duration) {
+		boolean isSlow = duration >= slowCallDuration;
+		State from = null;
+		State to;
+
+		synchronized (this) {
+			if (state == State.HALF_OPEN) {
+				if (failure || isSlow) {
+					open();
+					from = State.HALF_OPEN;
+				} else if (++trialsSucceeded >= halfOpenCalls) {
+					clear();
+					from = transition(State.CLOSED);
+				}
+			} else if (state == State.CLOSED) {
+				if (calls == failed.length) {
+					failures -= failed[next] ? 1 : 0;
+					slowCalls -= slow[next] ? 1 : 0;
+				} else {
+					calls++;
+				}
+				failed[next] = failure;
+				slow[next] = isSlow;
+				failures += failure ? 1 : 0;
+				slowCalls += isSlow ? 1 : 0;
+				next = (next + 1) % failed.length;
+				if (calls >= minimumCalls && (failures >= failureRateThreshold * calls
+						|| slowCalls >= slowCallRateThreshold * calls)) {
+					open();
+					from = State.CLOSED;
+				}
+			}
+			to = state;
+		}
+		if (from != null) {
+			fire(from, to);
+		}
+	}
+
+	/**
+	 * 把熔断器恢复为正常状态，并清除统计的请求结果。
+	 */
+	public void reset() {
+		State from;
+
+		synchronized (this) {
+			clear();
+			from = transition(State.CLOSED);
+		}
+		fire(from, State.CLOSED);
+	}
+
+	private State transition(State to) {
+		State from = state;
+
+		state = to;
+		return from == to ? null : from;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = System.currentTimeMillis();
+	}
+
+	private void clear() {
+		next = 0;
+		calls = 0;
+		failures = 0;
+		slowCalls = 0;
+	}
+
+	private void fire(State from, State to) {
+		if (from != null) {
+			for (Listener listener : listeners) {
+				listener.stateChanged(this, from, to);
+			}
+		}
+	}
+
+	/**
+	 * 返回服务器网址。
+	 * 
+	 * @return 服务器网址。
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * 返回熔断器的当前状态。熔断时间已过、但还没有请求到达时，仍返回 {@link State#OPEN}。
+	 * 
+	 * @return 熔断器的当前状态。
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * 返回最近请求中暂时性故障的比例。
+	 * 
+	 * @return 失败比例，介于 0 和 1 之间；没有请求时返回 0。
+	 */
+	public synchronized double getFailureRate() {
+		return calls == 0 ? 0 : (double) failures / calls;
+	}
+
+	/**
+	 * 返回最近请求中慢请求的比例。
+	 * 
+	 * @return 慢请求比例，介于 0 和 1 之间；没有请求时返回 0。
+	 */
+	public synchronized double getSlowCallRate() {
+		return calls == 0 ? 0 : (double) slowCalls / calls;
+	}
+
+	/**
+	 * 返回因熔断而被拒绝的请求数。
+	 * 
+	 * @return 被拒绝的请求数。
+	 */
+	public synchronized long getRejectedCalls() {
+		return rejectedCalls;
+	}
+
+	/**
+	 * 返回统计的最近请求数。
+	 * 
+	 * @return 统计的最近请求数。
+	 */
+	public synchronized int getWindowSize() {
+		return failed.length;
+	}
+
+	/**
+	 * 设置统计的最近请求数，并清除已统计的请求结果。
+	 * 
+	 * @param windowSize 统计的最近请求数。
+	 */
+	public synchronized void setWindowSize(int windowSize) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("windowSize");
+		}
+		failed = new boolean[windowSize];
+		slow = new boolean[windowSize];
+		clear();
+	}
+
+	/**
+	 * 返回计算失败比例所需的最少请求数。
+	 * 
+	 * @return 最少请求数。
+	 */
+	public int getMinimumCalls() {
+		return minimumCalls;
+	}
+
+	/**
+	 * 设置计算失败比例所需的最少请求数。请求数不足时熔断器不会打开。
+	 * 
+	 * @param minimumCalls 最少请求数。
+	 */
+	public void setMinimumCalls(int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+
+	/**
+	 * 返回打开熔断器的失败比例。
+	 * 
+	 * @return 失败比例。
+	 */
+	public double getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	/**
+	 * 设置打开熔断器的失败比例。
+	 * 
+	 * @param failureRateThreshold 失败比例，介于 0 和 1 之间。
+	 */
+	public void setFailureRateThreshold(double failureRateThreshold) {
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	/**
+	 * 返回慢请求的耗时，单位为毫秒。
+	 * 
+	 * @return 慢请求的耗时。
+	 */
+	public long getSlowCallDuration() {
+		return slowCallDuration;
+	}
+
+	/**
+	 * 设置慢请求的耗时，耗时达到该值的请求计为慢请求。
+	 * 
+	 * @param slowCallDuration 慢请求的耗时，单位为毫秒。
+	 */
+	public void setSlowCallDuration(long slowCallDuration) {
+		this.slowCallDuration = slowCallDuration;
+	}
+
+	/**
+	 * 返回打开熔断器的慢请求比例。
+	 * 
+	 * @return 慢请求比例。
+	 */
+	public double getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	/**
+	 * 设置打开熔断器的慢请求比例。
+	 * 
+	 * @param slowCallRateThreshold 慢请求比例，介于 0 和 1 之间。
+	 */
+	public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+
+	/**
+	 * 返回熔断时间，单位为毫秒。
+	 * 
+	 * @return 熔断时间。
+	 */
+	public long getOpenDuration() {
+		return openDuration;
+	}
+
+	/**
+	 * 设置熔断时间，即熔断器打开后进入半开状态之前等待的时间。
+	 * 
+	 * @param openDuration 熔断时间，单位为毫秒。
+	 */
+	public void setOpenDuration(long openDuration) {
+		this.openDuration = openDuration;
+	}
+
+	/**
+	 * 返回半开状态允许的试探请求数。
+	 * 
+	 * @return 试探请求数。
+	 */
+	public int getHalfOpenCalls() {
+		return halfOpenCalls;
+	}
+
+	/**
+	 * 设置半开状态允许的试探请求数。
+	 * 
+	 * @param halfOpenCalls 试探请求数，至少为 1。
+	 */
+	public void setHalfOpenCalls(int halfOpenCalls) {
+		if (halfOpenCalls < 1) {
+			throw new IllegalArgumentException("halfOpenCalls");
+		}
+		this.halfOpenCalls = halfOpenCalls;
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker[" + host + ", " + getState() + ", failureRate=" + getFailureRate() + ", slowCallRate="
+				+ getSlowCallRate() + "]";
+	}
+}
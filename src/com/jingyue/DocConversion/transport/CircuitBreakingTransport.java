@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * 为每个服务器主机使用一个 {@link CircuitBreaker} 的传输层，包装另一个传输层实现。
+ * <p>
+ * 主机的熔断器打开时，请求不再发送，立即以 {@link CircuitOpenException} 失败。该异常不是暂时性故障，
+ * {@link RetryingTransport} 不会重试，因此应把 {@link RetryingTransport} 放在外层：
+ * 
+ * <pre>
+ * converter.setTransport(new RetryingTransport(new CircuitBreakingTransport(HttpClientTransport.INSTANCE)));
+ * </pre>
+ * </p>
+ */
+public class CircuitBreakingTransport implements YuntuTransport {
+
+	private final YuntuTransport transport;
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 */
+	public CircuitBreakingTransport(YuntuTransport transport) {
+		if (transport == null) {
+			throw new IllegalArgumentException("transport");
+		}
+		this.transport = transport;
+	}
+
+	/**
+	 * 返回实际发送请求的传输层。
+	 * 
+	 * @return 实际发送请求的传输层。
+	 */
+	public YuntuTransport getTransport() {
+		return transport;
+	}
+
+	@Override
+	public String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException {
+
+		CircuitBreaker breaker = acquire(host);
+		long start = System.currentTimeMillis();
+		boolean failed = true;
+
+		try {
+			String body = transport.get(host, path, headers, querys);
+
+			failed = false;
+			return body;
+		} catch (YuntuException e) {
+			failed = CircuitBreaker.isFailure(e);
+			throw e;
+		} finally {
+			report(breaker, failed, start);
+		}
+	}
+
+	@Override
+	public CompletableFuture<String> getAsync(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) {
+
+		final CircuitBreaker breaker;
+
+		try {
+			breaker = acquire(host);
+		} catch (CircuitOpenException e) {
+			CompletableFuture<String> failed = new CompletableFuture<String>();
+
+			failed.completeExceptionally(e);
+			return failed;
+		}
+
+		final long start = System.currentTimeMillis();
+		CompletableFuture<String> future;
+
+		try {
+			future = transport.getAsync(host, path, headers, querys);
+		} catch (RuntimeException e) {
+			report(breaker, true, start);
+			throw e;
+		}
+		future.whenComplete((body, e) -> {
+			if (isCancellation(e)) {
+				breaker.onCancelled();
+			} else {
+				report(breaker, e != null && CircuitBreaker.isFailure(e), start);
+			}
+		});
+		return future;
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return transport.isAbortable();
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return post(host, path, headers, querys, inStream, -1, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		CircuitBreaker breaker;
+
+		try {
+			breaker = acquire(host);
+		} catch (CircuitOpenException e) {
+			try {
+				inStream.close();
+			} catch (IOException ignored) {
+			}
+			throw e;
+		}
+
+		long start = System.currentTimeMillis();
+		boolean failed = true;
+
+		try {
+			String body = transport.post(host, path, headers, querys, inStream, contentLength, mimeType);
+
+			failed = false;
+			return body;
+		} catch (YuntuException e) {
+			failed = CircuitBreaker.isFailure(e);
+			throw e;
+		} finally {
+			report(breaker, failed, start);
+		}
+	}
+
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		return transport.warmUp(host, connections);
+	}
+
+	@Override
+	public int warmUp(String host, int connections, boolean signed) throws YuntuException {
+		return transport.warmUp(host, connections, signed);
+	}
+
+	private static CircuitBreaker acquire(String host) throws CircuitOpenException {
+		CircuitBreaker breaker = CircuitBreaker.forHost(host);
+
+		if (!breaker.tryAcquire()) {
+			throw new CircuitOpenException(host);
+		}
+		return breaker;
+	}
+
+	private static boolean isCancellation(Throwable e) {
+		while (e instanceof CompletionException && e.getCause() != null) {
+			e = e.getCause();
+		}
+		return e instanceof CancellationException;
+	}
+
+	private static void report(CircuitBreaker breaker, boolean failed, long start) {
+		long duration = System.currentTimeMillis() - start;
+
+		if (failed) {
+			breaker.onFailure(duration);
+		} else {
+			breaker.onSuccess(duration);
+		}
+	}
+}
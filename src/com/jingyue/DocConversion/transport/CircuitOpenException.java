@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * 主机的熔断器处于打开状态，请求没有发送。
+ */
+public class CircuitOpenException extends YuntuException {
+
+	/** 系统自动生成的系列号。 */
+	private static final long serialVersionUID = 4306623437734851470L;
+
+	private final String host;
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param host 服务器网址。
+	 */
+	public CircuitOpenException(String host) {
+		super("服务器暂时不可用，已熔断: " + host);
+		this.host = host;
+	}
+
+	/**
+	 * 返回熔断的服务器网址。
+	 * 
+	 * @return 服务器网址。
+	 */
+	public String getHost() {
+		return host;
+	}
+}
@@ -0,0 +1,557 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.AsyncLimiter;
+import com.jingyue.DocConversion.internal.Futures;
+
+/**
+ * 单个服务器主机的自适应并发限制，由 {@link ConcurrencyLimitingTransport} 使用。
+ * <p>
+ * 同时发往主机的请求数不超过 {@link #getLimit()}，超出的请求排队等待，排队的请求数达到 {@link #getMaxQueueLength()}
+ * 时新的请求立即失败。限制值按照 AIMD（加性增、乘性减）算法根据响应时间和错误自动调整：
+ * <ul>
+ * <li>按请求路径分别计算响应时间的短期平均（最近约 {@link #SHORT_RTT_SAMPLES} 个请求）和长期平均（最近约
+ * {@link #LONG_RTT_SAMPLES} 个请求），均为指数加权移动平均。各路径的响应时间相差很大（例如提交转换和查询状态），只与同一路径比较，
+ * 慢速路径的请求才不会被误认为主机在排队；与平均值而不是单个请求的响应时间比较，正常的波动才不会被误认为过载；</li>
+ * <li>请求成功且该路径的短期平均不超过长期平均的 {@link #getTolerance()} 倍时，说明主机没有排队，限制值增加 1/限制值，
+ * 即每一轮请求增加 1；并发数不到限制值一半时不增加，避免空闲时限制值无限增长；</li>
+ * <li>短期平均超过长期平均的 {@link #getTolerance()} 倍，即响应时间持续变长，或请求遇到暂时性故障（网络错误、HTTP 429、5xx）时，
+ * 说明主机已经过载，限制值乘以 {@link #getBackoffRatio()}。在上一次降低之前发出的请求不再触发降低，因此每一轮请求最多降低一次。</li>
+ * </ul>
+ * 限制值介于 {@link #getMinLimit()} 和 {@link #getMaxLimit()} 之间。
+ * </p>
+ * <p>
+ * 每个主机对应一个实例，可以通过 {@link #forHost(String)} 查询当前的限制值、并发数和排队长度。
+ * </p>
+ */
+public class ConcurrencyLimiter {
+
+	/** 默认的初始限制值。 */
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+	/** 默认的最小限制值。 */
+	public static final int DEFAULT_MIN_LIMIT = 1;
+
+	/** 默认的最大限制值。 */
+	public static final int DEFAULT_MAX_LIMIT = 200;
+
+	/** 默认允许的短期平均响应时间与长期平均响应时间之比。 */
+	public static final double DEFAULT_TOLERANCE = 2.0;
+
+	/** 默认降低限制值的比例。 */
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+	/** 默认最多排队的请求数。 */
+	public static final int DEFAULT_MAX_QUEUE_LENGTH = 1000;
+
+	/** 短期平均响应时间大致涵盖的请求数。 */
+	public static final int SHORT_RTT_SAMPLES = 10;
+
+	/** 长期平均响应时间大致涵盖的请求数。 */
+	public static final int LONG_RTT_SAMPLES = 500;
+
+	/** 最多分别计算平均响应时间的路径数，超出后其他路径共用一个记录。 */
+	private static final int MAX_PATHS = 64;
+
+	private static final ConcurrentMap<String, ConcurrencyLimiter> hosts = new ConcurrentHashMap<String, ConcurrencyLimiter>();
+
+	private final String host;
+
+	private final AsyncLimiter permits = new AsyncLimiter(DEFAULT_INITIAL_LIMIT);
+
+	private volatile int maxQueueLength = DEFAULT_MAX_QUEUE_LENGTH;
+
+	private int minLimit = DEFAULT_MIN_LIMIT;
+
+	private int maxLimit = DEFAULT_MAX_LIMIT;
+
+	private double tolerance = DEFAULT_TOLERANCE;
+
+	private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+	private double limit = DEFAULT_INITIAL_LIMIT;
+
+	/** 各请求路径的平均响应时间。 */
+	private final Map<String, RttAverages> rtts = new HashMap<String, RttAverages>();
+
+	private long lastDecrease = 0;
+
+	private long decreases = 0;
+
+	private long rejectedCalls = 0;
+
+	private ConcurrencyLimiter(String host) {
+		this.host = host;
+	}
+
+	/**
+	 * 返回指定主机的并发限制。
+	 * 
+	 * @param host 服务器网址，例如 "http://api.9yuntu.cn"。
+	 * @return 返回指定主机的并发限制。
+	 */
+	public static ConcurrencyLimiter forHost(String host) {
+		ConcurrencyLimiter limiter = hosts.get(host);
+
+		if (limiter == null) {
+			ConcurrencyLimiter created = new ConcurrencyLimiter(host);
+
+			limiter = hosts.putIfAbsent(host, created);
+			if (limiter == null) {
+				limiter = created;
+			}
+		}
+		return limiter;
+	}
+
+	/**
+	 * 返回所有主机的并发限制。
+	 * 
+	 * @return 以服务器网址为键的并发限制。
+	 */
+	public static Map<String, ConcurrencyLimiter> getAll() {
+		return Collections.unmodifiableMap(new TreeMap<String, ConcurrencyLimiter>(hosts));
+	}
+
+	/**
+	 * 申请发送一个请求，必要时阻塞等待。返回 <code>true</code> 时，调用者发送请求后必须调用 {@link #onSuccess(String, long, long)}、
+	 * {@link #onDropped(long)} 或 {@link #onIgnored()} 中的一个报告结果并归还许可。
+	 * 
+	 * @param timeout 最长等待时间。
+	 * @param unit    时间单位。
+	 * @return 得到许可时返回 <code>true</code>；排队已满或在指定时间内无法得到许可时返回 <code>false</code>。
+	 * @throws YuntuException 等待被中断。
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit unit) throws YuntuException {
+		CompletableFuture<Void> permit = enqueue();
+
+		if (permit == null) {
+			return false;
+		}
+		try {
+			permit.get(timeout, unit);
+			return true;
+		} catch (InterruptedException e) {
+			abandon(permit);
+			Thread.currentThread().interrupt();
+			throw new YuntuException(e);
+		} catch (TimeoutException e) {
+			if (permit.cancel(false)) {
+				synchronized (this) {
+					rejectedCalls++;
+				}
+				return false;
+			}
+			// Granted just as the wait timed out.
+			return true;
+		} catch (ExecutionException e) {
+			throw new YuntuException(e.getCause());
+		}
+	}
+
+	/**
+	 * 异步申请发送一个请求，等待期间不占用线程。得到许可后，调用者发送请求后必须调用 {@link #onSuccess(String, long, long)}、
+	 * {@link #onDropped(long)} 或 {@link #onIgnored()} 中的一个报告结果并归还许可。
+	 * 
+	 * @param timeout 最长等待时间。
+	 * @param unit    时间单位。
+	 * @return 返回一个 <code>CompletableFuture</code>，得到许可时完成；排队已满或在指定时间内无法得到许可时，以
+	 *         <code>YuntuException</code> 异常结束。
+	 */
+	public CompletableFuture<Void> acquireAsync(long timeout, TimeUnit unit) {
+		final CompletableFuture<Void> permit = enqueue();
+
+		if (permit == null) {
+			CompletableFuture<Void> rejected = new CompletableFuture<Void>();
+
+			rejected.completeExceptionally(newRejection());
+			return rejected;
+		}
+		if (!permit.isDone()) {
+			final CompletableFuture<Void> expiry = Futures.delay(timeout, unit);
+
+			expiry.thenRun(() -> {
+				if (permit.completeExceptionally(newRejection())) {
+					synchronized (this) {
+						rejectedCalls++;
+					}
+				}
+			});
+			permit.whenComplete((granted, e) -> expiry.cancel(false));
+		}
+		return permit;
+	}
+
+	/**
+	 * 报告一个成功的请求，并归还许可。
+	 * 
+	 * @param path     请求路径，响应时间只计入同一路径的平均响应时间。
+	 * @param start    发送请求的时间，即 <code>System.currentTimeMillis()</code> 的返回值。
+	 * @param duration 请求的耗时，单位为毫秒。
+	 */
+	public void onSuccess(String path, long start, long duration) {
+		int applied;
+
+		synchronized (this) {
+			RttAverages averages = getAverages(path);
+
+			averages.add(Math.max(1, duration));
+			if (averages.shortRtt > averages.longRtt * tolerance) {
+				decrease(start);
+			} else if (permits.getInFlight() * 2 >= limit) {
+				limit = Math.min(maxLimit, limit + 1 / limit);
+			}
+			applied = (int) limit;
+		}
+		apply(applied);
+	}
+
+	/**
+	 * 报告一个遇到暂时性故障的请求，并归还许可。
+	 * 
+	 * @param start 发送请求的时间，即 <code>System.currentTimeMillis()</code> 的返回值。
+	 */
+	public void onDropped(long start) {
+		int applied;
+
+		synchronized (this) {
+			decrease(start);
+			applied = (int) limit;
+		}
+		apply(applied);
+	}
+
+	/**
+	 * 报告一个结果不能说明主机负载的请求（例如授权错误），并归还许可，不调整限制值。
+	 */
+	public void onIgnored() {
+		permits.release();
+	}
+
+	private RttAverages getAverages(String path) {
+		RttAverages averages = rtts.get(path);
+
+		if (averages == null) {
+			if (rtts.size() >= MAX_PATHS) {
+				path = null;
+				averages = rtts.get(null);
+			}
+			if (averages == null) {
+				averages = new RttAverages();
+				rtts.put(path, averages);
+			}
+		}
+		return averages;
+	}
+
+	private void decrease(long start) {
+		if (start >= lastDecrease) {
+			limit = Math.max(minLimit, limit * backoffRatio);
+			lastDecrease = System.currentTimeMillis();
+			decreases++;
+		}
+	}
+
+	/**
+	 * Hands the new limit to the permits and releases the caller's permit. The
+	 * limit is applied outside the lock, because granting queued permits runs
+	 * their callers' continuations on this thread.
+	 */
+	private void apply(int applied) {
+		if (permits.getLimit() != applied) {
+			permits.setLimit(applied);
+		}
+		permits.release();
+	}
+
+	private CompletableFuture<Void> enqueue() {
+		CompletableFuture<Void> permit = permits.acquire(maxQueueLength);
+
+		if (permit == null) {
+			synchronized (this) {
+				rejectedCalls++;
+			}
+		}
+		return permit;
+	}
+
+	/**
+	 * Gives up a permit the caller no longer waits for. If it was granted in the
+	 * meantime, it is returned at once.
+	 */
+	private void abandon(CompletableFuture<Void> permit) {
+		if (!permit.cancel(false)) {
+			permits.release();
+		}
+	}
+
+	/**
+	 * 返回排队已满或等待超时的异常。
+	 * 
+	 * @return 请求被拒绝的异常。
+	 */
+	YuntuException newRejection() {
+		return new YuntuException("并发请求过多，超过了 " + host + " 的并发限制 " + getLimit());
+	}
+
+	/**
+	 * 返回服务器网址。
+	 * 
+	 * @return 服务器网址。
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * 返回当前的限制值，即允许同时发往主机的请求数。
+	 * 
+	 * @return 当前的限制值。
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * 设置当前的限制值，之后仍会自动调整。
+	 * 
+	 * @param limit 限制值，介于最小限制值和最大限制值之间。
+	 */
+	public void setLimit(int limit) {
+		synchronized (this) {
+			if (limit < minLimit || limit > maxLimit) {
+				throw new IllegalArgumentException("limit");
+			}
+			this.limit = limit;
+		}
+		permits.setLimit(limit);
+	}
+
+	/**
+	 * 返回正在发送的请求数。
+	 * 
+	 * @return 正在发送的请求数。
+	 */
+	public int getInFlight() {
+		return permits.getInFlight();
+	}
+
+	/**
+	 * 返回排队等待的请求数。
+	 * 
+	 * @return 排队等待的请求数。
+	 */
+	public int getQueueLength() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * 返回最多排队的请求数。
+	 * 
+	 * @return 最多排队的请求数。
+	 */
+	public int getMaxQueueLength() {
+		return maxQueueLength;
+	}
+
+	/**
+	 * 设置最多排队的请求数。
+	 * 
+	 * @param maxQueueLength 最多排队的请求数，为 0 时超出限制值的请求立即失败。
+	 */
+	public void setMaxQueueLength(int maxQueueLength) {
+		if (maxQueueLength < 0) {
+			throw new IllegalArgumentException("maxQueueLength");
+		}
+		this.maxQueueLength = maxQueueLength;
+	}
+
+	/**
+	 * 返回指定路径的短期平均响应时间，即该路径最近的响应时间。
+	 * 
+	 * @param path 请求路径。
+	 * @return 短期平均响应时间，单位为毫秒；该路径尚无成功的请求时返回 <code>Double.NaN</code>。
+	 */
+	public synchronized double getShortRtt(String path) {
+		RttAverages averages = rtts.get(path);
+
+		return averages == null ? Double.NaN : averages.shortRtt;
+	}
+
+	/**
+	 * 返回指定路径的长期平均响应时间，即主机没有过载时该路径的响应时间。
+	 * 
+	 * @param path 请求路径。
+	 * @return 长期平均响应时间，单位为毫秒；该路径尚无成功的请求时返回 <code>Double.NaN</code>。
+	 */
+	public synchronized double getLongRtt(String path) {
+		RttAverages averages = rtts.get(path);
+
+		return averages == null ? Double.NaN : averages.longRtt;
+	}
+
+	/**
+	 * 返回最小限制值。
+	 * 
+	 * @return 最小限制值。
+	 */
+	public synchronized int getMinLimit() {
+		return minLimit;
+	}
+
+	/**
+	 * 返回最大限制值。
+	 * 
+	 * @return 最大限制值。
+	 */
+	public synchronized int getMaxLimit() {
+		return maxLimit;
+	}
+
+	/**
+	 * 设置限制值的范围。当前的限制值超出范围时被调整到范围内。
+	 * 
+	 * @param minLimit 最小限制值，至少为 1。
+	 * @param maxLimit 最大限制值，不小于最小限制值。
+	 */
+	public void setLimits(int minLimit, int maxLimit) {
+		int applied;
+
+		synchronized (this) {
+			if (minLimit < 1 || maxLimit < minLimit) {
+				throw new IllegalArgumentException("limit");
+			}
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+			limit = Math.max(minLimit, Math.min(maxLimit, limit));
+			applied = (int) limit;
+		}
+		permits.setLimit(applied);
+	}
+
+	/**
+	 * 返回允许的短期平均响应时间与长期平均响应时间之比。
+	 * 
+	 * @return 允许的响应时间之比。
+	 */
+	public synchronized double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * 设置允许的短期平均响应时间与长期平均响应时间之比，超过该比例时降低限制值。
+	 * 
+	 * @param tolerance 允许的响应时间之比，大于 1。
+	 */
+	public synchronized void setTolerance(double tolerance) {
+		if (!(tolerance > 1)) {
+			throw new IllegalArgumentException("tolerance");
+		}
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * 返回降低限制值的比例。
+	 * 
+	 * @return 降低限制值的比例。
+	 */
+	public synchronized double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	/**
+	 * 设置降低限制值的比例。
+	 * 
+	 * @param backoffRatio 降低限制值的比例，大于 0 且小于 1。
+	 */
+	public synchronized void setBackoffRatio(double backoffRatio) {
+		if (!(backoffRatio > 0 && backoffRatio < 1)) {
+			throw new IllegalArgumentException("backoffRatio");
+		}
+		this.backoffRatio = backoffRatio;
+	}
+
+	/**
+	 * 返回降低限制值的次数。
+	 * 
+	 * @return 降低限制值的次数。
+	 */
+	public synchronized long getDecreases() {
+		return decreases;
+	}
+
+	/**
+	 * 返回因排队已满或等待超时而被拒绝的请求数。
+	 * 
+	 * @return 被拒绝的请求数。
+	 */
+	public synchronized long getRejectedCalls() {
+		return rejectedCalls;
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter[" + host + ", limit=" + getLimit() + ", inFlight=" + getInFlight() + ", queue="
+				+ getQueueLength() + "]";
+	}
+
+	/**
+	 * 一个路径的短期和长期平均响应时间，由所属的限制器同步。
+	 */
+	private static class RttAverages {
+
+		private static final double SHORT_WEIGHT = 2.0 / (SHORT_RTT_SAMPLES + 1);
+
+		private static final double LONG_WEIGHT = 2.0 / (LONG_RTT_SAMPLES + 1);
+
+		/** 短期平均响应时间，单位为毫秒。 */
+		double shortRtt = Double.NaN;
+
+		/** 长期平均响应时间，单位为毫秒。 */
+		double longRtt = Double.NaN;
+
+		void add(long duration) {
+			if (Double.isNaN(longRtt)) {
+				shortRtt = duration;
+				longRtt = duration;
+				return;
+			}
+			shortRtt += (duration - shortRtt) * SHORT_WEIGHT;
+			longRtt += (duration - longRtt) * LONG_WEIGHT;
+			// The long-term average climbs during an overload; once the host
+			// recovers, bring it back faster than its own weight would.
+			if (longRtt > shortRtt * 2) {
+				longRtt *= 0.95;
+			}
+		}
+	}
+}
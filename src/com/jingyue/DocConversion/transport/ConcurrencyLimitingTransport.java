@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.Deadline;
+import com.jingyue.DocConversion.internal.Futures;
+
+/**
+ * 按照 {@link ConcurrencyLimiter} 自适应限制每个主机并发请求数的传输层，包装另一个传输层实现。
+ * <p>
+ * 对转换服务接口（<code>/execute/*</code>）的 GET 请求，测量每个请求的响应时间和错误，据此调整主机的并发限制。
+ * 超出限制的请求排队等待：{@link #get(String, String, Map, Map)} 阻塞等待，{@link #getAsync(String, String, Map, Map)}
+ * 等待期间不占用线程，得到许可后在指定的线程池中发送请求，而不是在归还许可的线程中；排队已满或等待时间超过 {@link #getMaxWait()}
+ * 的请求立即以 <code>YuntuException</code> 失败，该异常不是暂时性故障，不会被 {@link RetryingTransport} 重试。
+ * </p>
+ * <p>
+ * 限制值的调整算法仍在验证中，<code>Converter</code> 的默认传输层不包含该传输层；需要时请自行包装。
+ * </p>
+ * <p>
+ * 应把该传输层放在 {@link RateLimitingTransport} 之内、{@link CircuitBreakingTransport} 之外，使测得的响应时间不包括等待限流令牌的时间。
+ * POST 请求直接交给被包装的传输层。
+ * </p>
+ */
+public class ConcurrencyLimitingTransport implements YuntuTransport {
+
+	/** 默认的最长等待时间，单位为毫秒。 */
+	public static final long DEFAULT_MAX_WAIT = 30 * 1000L;
+
+	private final YuntuTransport transport;
+
+	private final long maxWait;
+
+	private final Executor executor;
+
+	/**
+	 * 用默认的最长等待时间 {@link #DEFAULT_MAX_WAIT} 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 */
+	public ConcurrencyLimitingTransport(YuntuTransport transport) {
+		this(transport, DEFAULT_MAX_WAIT);
+	}
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 * @param maxWait   排队等待的最长时间，单位为毫秒；为 0 时超出限制的请求立即失败。
+	 */
+	public ConcurrencyLimitingTransport(YuntuTransport transport, long maxWait) {
+		this(transport, maxWait, Futures.getExecutor());
+	}
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 * @param maxWait   排队等待的最长时间，单位为毫秒；为 0 时超出限制的请求立即失败。
+	 * @param executor  异步请求排队后得到许可时，用于发送请求的线程池。被包装的传输层的
+	 *                  {@link YuntuTransport#getAsync(String, String, Map, Map)} 可能阻塞，线程池应能容纳同时发送的请求；
+	 *                  默认使用 SDK 内部的线程池，空闲的线程会退出。
+	 */
+	public ConcurrencyLimitingTransport(YuntuTransport transport, long maxWait, Executor executor) {
+		if (transport == null) {
+			throw new IllegalArgumentException("transport");
+		}
+		if (maxWait < 0) {
+			throw new IllegalArgumentException("maxWait");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("executor");
+		}
+		this.transport = transport;
+		this.maxWait = maxWait;
+		this.executor = executor;
+	}
+
+	/**
+	 * 返回实际发送请求的传输层。
+	 * 
+	 * @return 实际发送请求的传输层。
+	 */
+	public YuntuTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * 返回排队等待的最长时间，单位为毫秒。
+	 * 
+	 * @return 最长等待时间。
+	 */
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	@Override
+	public String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException {
+
+		if (!isLimited(path)) {
+			return transport.get(host, path, headers, querys);
+		}
+
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.forHost(host);
+
+		if (!limiter.tryAcquire(Deadline.timeout(maxWait), TimeUnit.MILLISECONDS)) {
+			Deadline.check();
+			throw limiter.newRejection();
+		}
+
+		long start = System.currentTimeMillis();
+
+		try {
+			String body = transport.get(host, path, headers, querys);
+
+			limiter.onSuccess(path, start, System.currentTimeMillis() - start);
+			return body;
+		} catch (YuntuException e) {
+			report(limiter, start, e);
+			throw e;
+		} catch (RuntimeException e) {
+			limiter.onIgnored();
+			throw e;
+		}
+	}
+
+	@Override
+	public CompletableFuture<String> getAsync(final String host, final String path, final Map<String, String> headers,
+			final Map<String, String> querys) {
+
+		if (!isLimited(path)) {
+			return transport.getAsync(host, path, headers, querys);
+		}
+
+		final ConcurrencyLimiter limiter = ConcurrencyLimiter.forHost(host);
+
+		return Futures.thenComposeAsync(limiter.acquireAsync(maxWait, TimeUnit.MILLISECONDS), granted -> {
+			final long start = System.currentTimeMillis();
+			CompletableFuture<String> response;
+
+			try {
+				response = transport.getAsync(host, path, headers, querys);
+			} catch (RuntimeException e) {
+				limiter.onIgnored();
+				throw e;
+			}
+			response.whenComplete((body, e) -> {
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+				if (cause == null) {
+					limiter.onSuccess(path, start, System.currentTimeMillis() - start);
+				} else {
+					report(limiter, start, cause);
+				}
+			});
+			return response;
+		}, limiter::onIgnored, executor);
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return transport.isAbortable();
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, contentLength, mimeType);
+	}
+
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		return transport.warmUp(host, connections);
+	}
+
+	@Override
+	public int warmUp(String host, int connections, boolean signed) throws YuntuException {
+		return transport.warmUp(host, connections, signed);
+	}
+
+	/**
+	 * 暂时性故障说明主机过载，降低限制值；熔断、授权错误等其他失败不说明主机的负载，只归还许可。
+	 */
+	private static void report(ConcurrencyLimiter limiter, long start, Throwable e) {
+		if (!(e instanceof CircuitOpenException) && RetryPolicy.DEFAULT.isRetryable(e)) {
+			limiter.onDropped(start);
+		} else {
+			limiter.onIgnored();
+		}
+	}
+
+	private static boolean isLimited(String path) {
+		return path != null && path.startsWith("/execute/");
+	}
+}
@@ -0,0 +1,523 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.Deadline;
+
+/**
+ * 对查询转换状态（QueryStatus）和获取转换结果（GetOutputResult）请求进行对冲（hedging）的传输层，包装另一个传输层实现，用于降低尾延迟。
+ * <p>
+ * 这两种请求是幂等的只读请求。发出请求后，如果在最近响应时间的 {@link #getPercentile()} 分位数内还没有收到响应，
+ * 就再发送一个相同的请求，采用先到达的响应，并取消另一个请求。偶尔遇到慢速的网关节点时，请求不必一直等待该节点。
+ * 每个主机和路径分别统计最近 {@link #WINDOW_SIZE} 次响应时间，样本不足 {@link #MIN_SAMPLES} 个时不进行对冲。
+ * </p>
+ * <p>
+ * 对冲预算限制额外的请求量：每个请求存入 {@link #getBudgetRatio()} 个令牌，桶中最多保存 {@link #getBudgetCapacity()}
+ * 个令牌，每次对冲取出一个令牌，令牌不足时不再对冲。因此对冲请求最多约为请求数的该比例，服务端整体变慢时不会成倍放大请求量。
+ * </p>
+ * <p>
+ * 只有被包装的传输层可以中止（{@link YuntuTransport#isAbortable()}，例如 {@link JdkHttpTransport} 及包装它的内置传输层）时才进行对冲：
+ * {@link #get(String, String, Map, Map)} 和 {@link #getAsync(String, String, Map, Map)} 都通过被包装传输层的异步请求发送原请求和对冲请求，
+ * 不为等待响应占用额外的线程；落后的请求被中止，立即归还其占用的连接和许可，其响应被丢弃，但它可能已经在服务端执行。
+ * 被包装的传输层不能中止时（例如 {@link LegacyTransport}），落后的请求会一直占用连接和线程直到响应返回，因此不进行对冲，请求直接交给被包装的传输层。
+ * 应把该传输层放在最外层，使每个对冲请求各自经过重试、熔断和限流：
+ * 
+ * <pre>
+ * converter.setTransport(new HedgingTransport(converter.getTransport()));
+ * </pre>
+ * </p>
+ * <p>
+ * 其他请求直接交给被包装的传输层，不进行对冲。
+ * </p>
+ */
+public class HedgingTransport implements YuntuTransport {
+
+	/** 每个主机和路径保存的最近响应时间的个数。 */
+	public static final int WINDOW_SIZE = 128;
+
+	/** 开始对冲所需的最少响应时间样本数。 */
+	public static final int MIN_SAMPLES = 20;
+
+	/** 默认在最近响应时间的 95 分位数时对冲。 */
+	public static final double DEFAULT_PERCENTILE = 0.95;
+
+	/** 默认对冲请求不超过请求数的 5%。 */
+	public static final double DEFAULT_BUDGET_RATIO = 0.05;
+
+	/** 默认最多允许连续对冲 10 次。 */
+	public static final int DEFAULT_BUDGET_CAPACITY = 10;
+
+	private final YuntuTransport transport;
+
+	private final double percentile;
+
+	private final double budgetRatio;
+
+	private final int budgetCapacity;
+
+	/** 对冲预算中的令牌数。 */
+	private double tokens;
+
+	private final ConcurrentMap<String, LatencyWindow> windows = new ConcurrentHashMap<String, LatencyWindow>();
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private final AtomicLong hedges = new AtomicLong();
+
+	private final AtomicLong hedgeWins = new AtomicLong();
+
+	private final AtomicLong rejectedHedges = new AtomicLong();
+
+	/**
+	 * 用默认的分位数和对冲预算构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 */
+	public HedgingTransport(YuntuTransport transport) {
+		this(transport, DEFAULT_PERCENTILE, DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_CAPACITY);
+	}
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param transport      实际发送请求的传输层。
+	 * @param percentile     发送对冲请求的响应时间分位数，大于 0 且小于 1，例如 0.95。
+	 * @param budgetRatio    每个请求存入对冲预算的令牌数，即对冲请求占请求数的最大比例。
+	 * @param budgetCapacity 对冲预算最多保存的令牌数，即允许连续对冲的次数。
+	 */
+	public HedgingTransport(YuntuTransport transport, double percentile, double budgetRatio, int budgetCapacity) {
+		if (transport == null) {
+			throw new IllegalArgumentException("transport");
+		}
+		if (!(percentile > 0 && percentile < 1)) {
+			throw new IllegalArgumentException("percentile");
+		}
+		if (budgetRatio < 0 || budgetCapacity < 0) {
+			throw new IllegalArgumentException("budget");
+		}
+		this.transport = transport;
+		this.percentile = percentile;
+		this.budgetRatio = budgetRatio;
+		this.budgetCapacity = budgetCapacity;
+		this.tokens = budgetCapacity;
+	}
+
+	/**
+	 * 返回实际发送请求的传输层。
+	 * 
+	 * @return 实际发送请求的传输层。
+	 */
+	public YuntuTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * 返回发送对冲请求的响应时间分位数。
+	 * 
+	 * @return 响应时间分位数。
+	 */
+	public double getPercentile() {
+		return percentile;
+	}
+
+	/**
+	 * 返回每个请求存入对冲预算的令牌数。
+	 * 
+	 * @return 每个请求存入的令牌数。
+	 */
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	/**
+	 * 返回对冲预算最多保存的令牌数。
+	 * 
+	 * @return 最多保存的令牌数。
+	 */
+	public int getBudgetCapacity() {
+		return budgetCapacity;
+	}
+
+	/**
+	 * 返回当前发送对冲请求前等待的时间，即最近响应时间的 {@link #getPercentile()} 分位数。
+	 * 
+	 * @param host 服务器网址。
+	 * @param path 请求路径。
+	 * @return 等待的时间，单位为毫秒；该请求不进行对冲或样本不足时返回 -1。
+	 */
+	public long getHedgeDelay(String host, String path) {
+		if (!isHedged(path)) {
+			return -1;
+		}
+		return getWindow(host, path).getPercentile(percentile);
+	}
+
+	/**
+	 * 返回经过该实例、可以对冲的请求数，不包括对冲请求。
+	 * 
+	 * @return 请求数。
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * 返回发送的对冲请求数。
+	 * 
+	 * @return 对冲请求数。
+	 */
+	public long getHedges() {
+		return hedges.get();
+	}
+
+	/**
+	 * 返回对冲请求先于原请求返回的次数。
+	 * 
+	 * @return 对冲请求胜出的次数。
+	 */
+	public long getHedgeWins() {
+		return hedgeWins.get();
+	}
+
+	/**
+	 * 返回因对冲预算耗尽而放弃对冲的次数。
+	 * 
+	 * @return 放弃对冲的次数。
+	 */
+	public long getRejectedHedges() {
+		return rejectedHedges.get();
+	}
+
+	@Override
+	public String get(final String host, final String path, final Map<String, String> headers,
+			Map<String, String> querys) throws YuntuException {
+
+		if (!isHedged(path) || !transport.isAbortable()) {
+			return transport.get(host, path, headers, querys);
+		}
+
+		CompletableFuture<String> result = hedge(host, path, querys,
+				attemptQuerys -> transport.getAsync(host, path, headers, attemptQuerys));
+
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new YuntuException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof YuntuException) {
+				throw (YuntuException) e.getCause();
+			}
+			throw new YuntuException(e.getCause());
+		}
+	}
+
+	@Override
+	public CompletableFuture<String> getAsync(final String host, final String path, final Map<String, String> headers,
+			Map<String, String> querys) {
+
+		if (!isHedged(path) || !transport.isAbortable()) {
+			return transport.getAsync(host, path, headers, querys);
+		}
+		return hedge(host, path, querys, attemptQuerys -> transport.getAsync(host, path, headers, attemptQuerys));
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return transport.isAbortable();
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, contentLength, mimeType);
+	}
+
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		return transport.warmUp(host, connections);
+	}
+
+	@Override
+	public int warmUp(String host, int connections, boolean signed) throws YuntuException {
+		return transport.warmUp(host, connections, signed);
+	}
+
+	/**
+	 * 发送原请求，并在等待时间到达后视对冲预算发送对冲请求。
+	 */
+	private CompletableFuture<String> hedge(String host, String path, Map<String, String> querys,
+			Function<Map<String, String>, CompletableFuture<String>> send) {
+
+		deposit();
+
+		LatencyWindow window = getWindow(host, path);
+		final Exchange exchange = new Exchange(window, querys, Deadline.current(), send);
+		long delay = window.getPercentile(percentile);
+
+		exchange.launch(false);
+		if (delay >= 0 && !exchange.result.isDone()) {
+			CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+				if (exchange.result.isDone()) {
+					return;
+				}
+				if (!withdraw()) {
+					rejectedHedges.incrementAndGet();
+					return;
+				}
+				hedges.incrementAndGet();
+				exchange.launch(true);
+			});
+		}
+		return exchange.result;
+	}
+
+	private LatencyWindow getWindow(String host, String path) {
+		String key = host + path;
+		LatencyWindow window = windows.get(key);
+
+		if (window == null) {
+			LatencyWindow created = new LatencyWindow();
+
+			window = windows.putIfAbsent(key, created);
+			if (window == null) {
+				window = created;
+			}
+		}
+		return window;
+	}
+
+	private synchronized void deposit() {
+		requests.incrementAndGet();
+		tokens = Math.min(budgetCapacity, tokens + budgetRatio);
+	}
+
+	private synchronized boolean withdraw() {
+		if (tokens < 1) {
+			return false;
+		}
+		tokens--;
+		return true;
+	}
+
+	private static boolean isHedged(String path) {
+		return "/execute/QueryStatus".equals(path) || "/execute/GetOutputResult".equals(path);
+	}
+
+	/**
+	 * 一个请求的原请求和对冲请求。第一个成功的响应完成 {@link #result}，另一个请求被取消；两个请求都失败时，以第一个失败结束。
+	 */
+	private final class Exchange {
+
+		final CompletableFuture<String> result = new CompletableFuture<String>() {
+
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+				cancelAll(null);
+				return cancelled;
+			}
+		};
+
+		private final LatencyWindow window;
+
+		private final Map<String, String> querys;
+
+		/** The caller's deadline, which the hedge sent from the timer thread keeps. */
+		private final Deadline deadline;
+
+		private final Function<Map<String, String>, CompletableFuture<String>> send;
+
+		private CompletableFuture<String> primary = null;
+
+		private CompletableFuture<String> backup = null;
+
+		private long primaryStart = 0;
+
+		private long backupStart = 0;
+
+		private int pending = 0;
+
+		private Throwable failure = null;
+
+		Exchange(LatencyWindow window, Map<String, String> querys, Deadline deadline,
+				Function<Map<String, String>, CompletableFuture<String>> send) {
+
+			this.window = window;
+			this.querys = querys;
+			this.deadline = deadline;
+			this.send = send;
+		}
+
+		void launch(boolean isBackup) {
+			synchronized (this) {
+				pending++;
+			}
+
+			long start = System.nanoTime();
+			CompletableFuture<String> attempt;
+
+			try {
+				// Signed requests take "key" and "secret" out of the query map, so each
+				// attempt sends its own copy.
+				final Map<String, String> copy = querys == null ? null : new HashMap<String, String>(querys);
+
+				attempt = Deadline.with(deadline, () -> send.apply(copy));
+			} catch (YuntuException | RuntimeException e) {
+				attempt = new CompletableFuture<String>();
+				attempt.completeExceptionally(e);
+			}
+
+			final CompletableFuture<String> launched = attempt;
+			boolean done;
+
+			synchronized (this) {
+				if (isBackup) {
+					backup = launched;
+					backupStart = start;
+				} else {
+					primary = launched;
+					primaryStart = start;
+				}
+				done = result.isDone();
+			}
+			if (done) {
+				launched.cancel(true);
+			}
+			launched.whenComplete((body, e) -> complete(launched, body, e));
+		}
+
+		private void complete(CompletableFuture<String> attempt, String body, Throwable e) {
+			boolean isBackup;
+			long start;
+			Throwable failed = null;
+
+			synchronized (this) {
+				isBackup = attempt == backup;
+				start = isBackup ? backupStart : primaryStart;
+				pending--;
+				if (e != null && !(e instanceof CancellationException)) {
+					if (failure == null) {
+						failure = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+					}
+					if (pending == 0) {
+						failed = failure;
+					}
+				}
+			}
+			if (e == null) {
+				window.record(elapsed(start));
+				if (result.complete(body)) {
+					if (isBackup) {
+						hedgeWins.incrementAndGet();
+					}
+					cancelAll(attempt);
+				}
+			} else if (failed != null) {
+				result.completeExceptionally(failed);
+			}
+		}
+
+		/**
+		 * Cancels every attempt but the winner. A cancelled attempt has already
+		 * taken at least as long as the winner, so its elapsed time is recorded
+		 * as a lower bound of its latency; dropping it would hide the very tail
+		 * that hedging reacts to.
+		 */
+		private void cancelAll(CompletableFuture<String> winner) {
+			CompletableFuture<String> first;
+			CompletableFuture<String> second;
+			long firstStart;
+			long secondStart;
+
+			synchronized (this) {
+				first = primary;
+				second = backup;
+				firstStart = primaryStart;
+				secondStart = backupStart;
+			}
+			if (first != null && first != winner && first.cancel(true) && winner != null) {
+				window.record(elapsed(firstStart));
+			}
+			if (second != null && second != winner && second.cancel(true) && winner != null) {
+				window.record(elapsed(secondStart));
+			}
+		}
+	}
+
+	private static long elapsed(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * 最近 {@link #WINDOW_SIZE} 次响应时间。
+	 */
+	private static class LatencyWindow {
+
+		private final long[] samples = new long[WINDOW_SIZE];
+
+		private int count = 0;
+
+		private int next = 0;
+
+		synchronized void record(long millis) {
+			samples[next] = millis;
+			next = (next + 1) % samples.length;
+			if (count < samples.length) {
+				count++;
+			}
+		}
+
+		synchronized long getPercentile(double percentile) {
+			if (count < MIN_SAMPLES) {
+				return -1;
+			}
+
+			long[] sorted = Arrays.copyOf(samples, count);
+
+			Arrays.sort(sorted);
+			return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.HttpUtils;
+
+/**
+ * 基于 Apache HttpClient 连接池的传输层实现。授权码请求和签名请求共用连接池，连接在请求之间保持复用。每个
+ * {@link TrafficClass} 使用独立的连接池，每个主机的连接数由
+ * {@link com.jingyue.DocConversion.Converter#setMaxConnections(TrafficClass, int)} 分别控制。
+ */
+public class HttpClientTransport implements YuntuTransport {
+
+	/** 共享实例。 */
+	public static final HttpClientTransport INSTANCE = new HttpClientTransport();
+
+	@Override
+	public String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException {
+
+		try {
+			HttpRequestBase request;
+
+			if (HttpUtils.isSigned(querys)) {
+				request = HttpUtils.sign(host, path, headers, querys);
+			} else {
+				request = new HttpGet(HttpUtils.buildUrl(host, path, querys));
+				addHeaders(request, headers);
+			}
+			return execute(request, path, TrafficClass.of(path));
+		} catch (YuntuException e) {
+			throw e;
+		} catch (IOException e) {
+			throw HttpUtils.getIOError(e);
+		} catch (Exception e) {
+			throw new YuntuException(e);
+		}
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return post(host, path, headers, querys, inStream, -1, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		try {
+			HttpPost request = new HttpPost(HttpUtils.buildUrl(host, path, querys));
+
+			addHeaders(request, headers);
+			request.setEntity(new InputStreamEntity(inStream, contentLength, ContentType.parse(mimeType)));
+			try {
+				return execute(request, path, TrafficClass.UPLOAD);
+			} finally {
+				inStream.close();
+			}
+		} catch (IOException e) {
+			throw HttpUtils.getIOError(e);
+		}
+	}
+
+	/**
+	 * 在转换控制请求（{@link TrafficClass#CONTROL}）的连接池中建立连接，并以空闲状态放回连接池。
+	 */
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		try {
+			return HttpUtils.openPooledConnections(host, connections);
+		} catch (IOException e) {
+			throw new YuntuException(e);
+		}
+	}
+
+	private static void addHeaders(HttpRequestBase request, Map<String, String> headers) {
+		if (headers != null) {
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				if (header.getKey() != null && header.getValue() != null) {
+					request.setHeader(header.getKey(), header.getValue());
+				}
+			}
+		}
+	}
+
+	private static String execute(HttpRequestBase request, String path, TrafficClass trafficClass)
+			throws IOException, YuntuException {
+
+		request.setHeader("Accept-Encoding", HttpUtils.ACCEPT_ENCODING);
+		request.setConfig(HttpUtils.getRequestConfig());
+
+		CloseableHttpResponse response = HttpUtils.getPooledClient(trafficClass).execute(request);
+
+		try {
+			int status = response.getStatusLine().getStatusCode();
+			String body = HttpUtils.getEntityAsString(response, path);
+
+			if (status == 200) {
+				return body;
+			}
+			throw new YuntuException("Please check the AppCode, " + status + ":" + body, status);
+		} finally {
+			response.close();
+		}
+	}
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.AsyncLimiter;
+import com.jingyue.DocConversion.internal.DaemonThreadFactory;
+import com.jingyue.DocConversion.internal.Deadline;
+import com.jingyue.DocConversion.internal.Futures;
+import com.jingyue.DocConversion.internal.HttpUtils;
+import com.jingyue.DocConversion.internal.SharedSSLContext;
+
+/**
+ * 基于 JDK 11 及以上版本提供的 <code>java.net.http.HttpClient</code> 的传输层实现。每个实例持有一个
+ * <code>HttpClient</code>，连接在请求之间保持复用。签名请求先由 API 网关 SDK 签名，再通过该客户端发送。
+ * <p>
+ * {@link #getAsync(String, String, Map, Map)} 使用非阻塞 I/O：所有连接由 <code>HttpClient</code> 的一个
+ * selector 线程统一调度，响应在一个小型线程池中处理，等待响应时不占用任何线程。因此少量线程即可同时维持上万个查询请求。
+ * 每个主机同时发出的请求数仍按 {@link TrafficClass} 分别受
+ * {@link com.jingyue.DocConversion.Converter#setMaxConnections(TrafficClass, int)} 限制，超出的请求排队等待，不阻塞调用线程。
+ * <code>HttpClient</code> 的连接由所有类别共用，各类别之间只通过并发数隔离。
+ * </p>
+ * <p>
+ * 取消 {@link #getAsync(String, String, Map, Map)} 返回的 <code>CompletableFuture</code> 会立即归还并发数；排队中的请求不再发送，
+ * 已经发出的请求由 <code>HttpClient</code> 中止（JDK 16 及以上版本）。因此该实现可以中止（{@link #isAbortable()}）。
+ * </p>
+ */
+public class JdkHttpTransport implements YuntuTransport {
+
+	/** 默认构造的 <code>HttpClient</code> 用于处理响应的线程数。 */
+	public static final int DEFAULT_THREADS = 2;
+
+	/** 所有默认构造的 <code>HttpClient</code> 共用的响应处理线程池，不随实例的创建而增加线程。 */
+	private static final Executor DEFAULT_EXECUTOR = Executors.newFixedThreadPool(DEFAULT_THREADS,
+			new DaemonThreadFactory("YuntuHttp"));
+
+	private final HttpClient client;
+
+	private final AtomicLong http1Responses = new AtomicLong();
+
+	private final AtomicLong http2Responses = new AtomicLong();
+
+	/**
+	 * 构建传输层实例，使用 HTTP/1.1 协议。
+	 */
+	public JdkHttpTransport() {
+		this(HttpClient.Version.HTTP_1_1);
+	}
+
+	/**
+	 * 构建传输层实例，并指定优先使用的 HTTP 协议版本。所有这样构建的实例共用一个 {@link #DEFAULT_THREADS} 个线程的响应处理线程池，
+	 * 创建多个实例不会增加线程，实例也无需关闭。
+	 * <p>
+	 * 指定 <code>HttpClient.Version.HTTP_2</code> 时，对每个主机只建立一个连接，所有请求作为该连接上的并发流发送：HTTPS 通过
+	 * ALPN 协商 h2，HTTP 通过 h2c 升级。如果服务器不支持 HTTP/2，自动回退到 HTTP/1.1。可通过
+	 * {@link #getHttp2Responses()} 和 {@link #getHttp1Responses()} 查看实际使用的协议。
+	 * </p>
+	 * 
+	 * @param version 优先使用的 HTTP 协议版本。
+	 */
+	public JdkHttpTransport(HttpClient.Version version) {
+		this(HttpClient.newBuilder().version(version).followRedirects(HttpClient.Redirect.NORMAL)
+				.sslContext(SharedSSLContext.getContext())
+				.executor(DEFAULT_EXECUTOR)
+				.build());
+	}
+
+	/**
+	 * 使用指定的 <code>HttpClient</code> 构建传输层实例。
+	 * 
+	 * @param client 发送请求使用的 <code>HttpClient</code>。
+	 */
+	public JdkHttpTransport(HttpClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * 返回发送请求使用的 <code>HttpClient</code>。
+	 * 
+	 * @return 发送请求使用的 <code>HttpClient</code>。
+	 */
+	public HttpClient getClient() {
+		return client;
+	}
+
+	/**
+	 * 返回通过 HTTP/1.1 协议收到的响应数。
+	 * 
+	 * @return 通过 HTTP/1.1 协议收到的响应数。
+	 */
+	public long getHttp1Responses() {
+		return http1Responses.get();
+	}
+
+	/**
+	 * 返回通过 HTTP/2 协议收到的响应数。
+	 * 
+	 * @return 通过 HTTP/2 协议收到的响应数。
+	 */
+	public long getHttp2Responses() {
+		return http2Responses.get();
+	}
+
+	@Override
+	public String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException {
+
+		try {
+			return send(host, path, TrafficClass.of(path), newGetRequest(host, path, headers, querys));
+		} catch (YuntuException e) {
+			throw e;
+		} catch (IOException e) {
+			throw HttpUtils.getIOError(e);
+		} catch (Exception e) {
+			throw new YuntuException(e);
+		}
+	}
+
+	@Override
+	public CompletableFuture<String> getAsync(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) {
+
+		final HttpRequest request;
+
+		try {
+			request = newGetRequest(host, path, headers, querys);
+		} catch (Exception e) {
+			CompletableFuture<String> failed = new CompletableFuture<String>();
+
+			failed.completeExceptionally(e instanceof YuntuException ? e : new YuntuException(e));
+			return failed;
+		}
+
+		final AsyncLimiter limiter = HttpUtils.getAsyncLimiter(TrafficClass.of(path), host);
+
+		CompletableFuture<HttpResponse<byte[]>> sent = Futures.thenCompose(limiter.acquire(), granted -> {
+			CompletableFuture<HttpResponse<byte[]>> response = client.sendAsync(request,
+					HttpResponse.BodyHandlers.ofByteArray());
+
+			response.whenComplete((received, e) -> limiter.release());
+			return response;
+		}, limiter::release);
+
+		return Futures.compose(sent, (response, e) -> {
+			CompletableFuture<String> future = new CompletableFuture<String>();
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+			try {
+				if (cause == null) {
+					future.complete(getBody(response, new ByteArrayInputStream(response.body()), path));
+					return future;
+				}
+			} catch (Exception failure) {
+				cause = failure;
+			}
+			if (cause instanceof YuntuException) {
+				future.completeExceptionally(cause);
+			} else if (cause instanceof IOException) {
+				future.completeExceptionally(
+						new YuntuException("Please check the AppCode, " + cause.getLocalizedMessage(), cause));
+			} else {
+				future.completeExceptionally(new YuntuException(cause));
+			}
+			return future;
+		}, null);
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return true;
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return post(host, path, headers, querys, inStream, -1, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			final InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(HttpUtils.buildUrl(host, path, querys)));
+
+			builder.setHeader("Accept-Encoding", HttpUtils.ACCEPT_ENCODING);
+			addHeaders(builder, headers);
+			builder.header("Content-Type", mimeType);
+			HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofInputStream(new Supplier<InputStream>() {
+
+				@Override
+				public InputStream get() {
+					return inStream;
+				}
+			});
+
+			if (contentLength >= 0) {
+				body = HttpRequest.BodyPublishers.fromPublisher(body, contentLength);
+			}
+			builder.POST(body);
+			builder.timeout(Duration.ofMillis(Deadline.getReadTimeout()));
+			try {
+				return send(host, path, TrafficClass.UPLOAD, builder.build());
+			} finally {
+				inStream.close();
+			}
+		} catch (IOException e) {
+			throw HttpUtils.getIOError(e);
+		}
+	}
+
+	/**
+	 * <code>HttpClient</code> 只有发送请求时才会建立连接，而预热不应向服务器发送任何业务请求，因此这里只通过共用的
+	 * TLS 上下文与服务器完成一次握手并缓存会话，之后 <code>HttpClient</code> 建立的连接可以恢复会话，不必进行完整的 TLS
+	 * 握手。不预先建立可供复用的连接，返回 0。
+	 */
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		try {
+			HttpUtils.openTlsSession(host);
+		} catch (IOException e) {
+			throw new YuntuException(e);
+		}
+		return 0;
+	}
+
+	private HttpRequest newGetRequest(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) throws Exception {
+
+		HttpRequest.Builder builder;
+
+		if (HttpUtils.isSigned(querys)) {
+			HttpRequestBase signedRequest = HttpUtils.sign(host, path, headers, querys);
+
+			signedRequest.setHeader("Accept-Encoding", HttpUtils.ACCEPT_ENCODING);
+			builder = HttpRequest.newBuilder(signedRequest.getURI());
+			for (Header header : signedRequest.getAllHeaders()) {
+				if (!isRestrictedHeader(header.getName())) {
+					builder.header(header.getName(), header.getValue());
+				}
+			}
+		} else {
+			builder = HttpRequest.newBuilder(URI.create(HttpUtils.buildUrl(host, path, querys)));
+			builder.setHeader("Accept-Encoding", HttpUtils.ACCEPT_ENCODING);
+			addHeaders(builder, headers);
+		}
+		return builder.GET().timeout(Duration.ofMillis(Deadline.getReadTimeout())).build();
+	}
+
+	private String send(String host, String path, TrafficClass trafficClass, HttpRequest request)
+			throws IOException, YuntuException {
+
+		AsyncLimiter permits = HttpUtils.acquire(trafficClass, host);
+
+		try {
+			HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+			return getBody(response, response.body(), path);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new YuntuException(e);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private String getBody(HttpResponse<?> response, InputStream stream, String path)
+			throws IOException, YuntuException {
+
+		if (response.version() == HttpClient.Version.HTTP_2) {
+			http2Responses.incrementAndGet();
+		} else {
+			http1Responses.incrementAndGet();
+		}
+
+		String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+		String body = HttpUtils.decodeBody(path, stream, encoding, "UTF-8");
+
+		if (response.statusCode() == 200) {
+			return body;
+		}
+		throw new YuntuException("Please check the AppCode, " + response.statusCode() + ":" + body,
+				response.statusCode());
+	}
+
+	private static void addHeaders(HttpRequest.Builder builder, Map<String, String> headers) {
+		if (headers != null) {
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				if (header.getKey() != null && header.getValue() != null && !isRestrictedHeader(header.getKey())) {
+					builder.setHeader(header.getKey(), header.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * The JDK client sets these headers itself and rejects requests that carry
+	 * them.
+	 */
+	private static boolean isRestrictedHeader(String name) {
+		return "host".equalsIgnoreCase(name) || "content-length".equalsIgnoreCase(name)
+				|| "connection".equalsIgnoreCase(name) || "expect".equalsIgnoreCase(name)
+				|| "upgrade".equalsIgnoreCase(name);
+	}
+}
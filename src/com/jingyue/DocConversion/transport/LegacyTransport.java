@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.HttpUtils;
+
+/**
+ * 默认的传输层实现。授权码请求使用 <code>HttpURLConnection</code> 发送，签名请求使用共享的 Apache
+ * HttpClient 连接池发送。
+ */
+public class LegacyTransport implements YuntuTransport {
+
+	/** 共享实例。 */
+	public static final LegacyTransport INSTANCE = new LegacyTransport();
+
+	@Override
+	public String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException {
+
+		return HttpUtils.get(host, path, headers, querys);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return HttpUtils.post(host, path, headers, querys, inStream, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		return HttpUtils.post(host, path, headers, querys, inStream, contentLength, mimeType);
+	}
+
+	/**
+	 * 在签名请求使用的连接池中建立连接，并以空闲状态放回连接池，不发送任何请求。
+	 */
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		return warmUp(host, connections, true);
+	}
+
+	/**
+	 * 签名请求：在其使用的连接池中建立连接，并以空闲状态放回连接池，不发送任何请求。
+	 * <p>
+	 * 授权码请求：使用的 <code>HttpURLConnection</code> 只有发送请求时才会建立连接，连接池中的连接对它没有用处，因此不建立连接，
+	 * 返回 0；HTTPS 主机只完成一次 TLS 握手并缓存会话，之后的连接可以恢复会话，不必进行完整的 TLS 握手。
+	 * </p>
+	 */
+	@Override
+	public int warmUp(String host, int connections, boolean signed) throws YuntuException {
+		try {
+			if (!signed) {
+				HttpUtils.openTlsSession(host);
+				return 0;
+			}
+			return HttpUtils.openPooledConnections(host, connections);
+		} catch (IOException e) {
+			throw new YuntuException(e);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * 本地限流器在最长等待时间内无法得到令牌，请求没有发送。
+ * <p>
+ * 该异常不是网关返回的 HTTP 429 响应，状态码为 0。{@link RetryingTransport} 不会重试，以免重试本身再次消耗令牌、加剧排队。
+ * </p>
+ */
+public class RateLimitExceededException extends YuntuException {
+
+	/** 系统自动生成的系列号。 */
+	private static final long serialVersionUID = -2906145083772315210L;
+
+	private final String host;
+
+	private final String path;
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param host 服务器网址。
+	 * @param path 服务接口路径。
+	 * @param rate 限流器当前的速率，即每秒请求数。
+	 */
+	public RateLimitExceededException(String host, String path, double rate) {
+		super("请求过于频繁，超过了 " + host + path + " 的限流速率 " + rate + "/s");
+		this.host = host;
+		this.path = path;
+	}
+
+	/**
+	 * 返回服务器网址。
+	 * 
+	 * @return 服务器网址。
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * 返回服务接口路径。
+	 * 
+	 * @return 服务接口路径。
+	 */
+	public String getPath() {
+		return path;
+	}
+}
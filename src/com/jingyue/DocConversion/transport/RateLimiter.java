@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.Futures;
+
+/**
+ * 令牌桶限流器，由 {@link RateLimitingTransport} 使用，限制发往 API 市场网关的请求速率。
+ * <p>
+ * 阿里云、百度等 API 市场按授权码限制每秒请求数（QPS），超过配额的请求会被网关拒绝。每个（服务器、授权码、服务接口）
+ * 组合对应一个限流器，例如同一授权码的 Convert、QueryStatus 和 GetOutputResult 请求分别限流。限流器以 {@link #getRate()}
+ * 的速率产生令牌，最多积累 {@link #getBurst()} 个，每个请求消耗一个令牌。令牌不足时，调用者可以阻塞等待
+ * （{@link #acquire()}）、限时等待（{@link #tryAcquire(long, TimeUnit)}），或得到一个在令牌可用时完成的
+ * <code>CompletableFuture</code>（{@link #acquireAsync(long, TimeUnit)}），等待期间不占用线程。
+ * </p>
+ * <p>
+ * 各套餐的配额不同，因此默认不设上限（{@link #DEFAULT_RATE}）：限流器从网关的响应中学习速率。收到第一个 HTTP 429 响应之前不限速；
+ * 收到 429 响应时（{@link #onThrottled()}），速率降为此前一秒实际发送速率的一半，并清空积累的令牌；之后每个成功的请求
+ * （{@link #onSuccess()}）使速率增加该实际速率的 1%，直至再次收到 429 响应。因此速率在网关实际允许的速率附近上下浮动。
+ * 已知配额时，可以用 {@link #setDefaults(double, int)} 或 {@link #setRate(double)} 设定速率上限，学习到的速率不会超过该上限。
+ * </p>
+ */
+public class RateLimiter {
+
+	/** 默认的速率上限：不设上限，速率从网关的 429 响应中学习。 */
+	public static final double DEFAULT_RATE = Double.POSITIVE_INFINITY;
+
+	/** 默认最多积累的令牌数。 */
+	public static final int DEFAULT_BURST = 10;
+
+	/** 速率降低后，不再因 429 响应而继续降低的时间，单位为毫秒。 */
+	private static final long THROTTLE_COOLDOWN = 1000;
+
+	/** 自适应调整的速率下限，即每秒请求数。 */
+	private static final double MIN_RATE = 1;
+
+	/** 统计实际发送速率的时间窗口，单位为纳秒。 */
+	private static final long WINDOW = 1000000000L;
+
+	private static final ConcurrentMap<String, RateLimiter> limiters = new ConcurrentHashMap<String, RateLimiter>();
+
+	private static volatile double defaultRate = DEFAULT_RATE;
+
+	private static volatile int defaultBurst = DEFAULT_BURST;
+
+	private final String host;
+
+	private final String path;
+
+	/** 设定的速率上限；不设上限时为正无穷。 */
+	private double maxRate;
+
+	/** 当前的速率；尚未受限时为正无穷。 */
+	private double rate;
+
+	/** 每个成功的请求使速率增加的量。 */
+	private double step;
+
+	/** 当前统计窗口的开始时间和其中得到令牌的请求数。 */
+	private long windowStart = System.nanoTime();
+
+	private int windowCount = 0;
+
+	/** 上一个统计窗口中得到令牌的请求数。 */
+	private int previousCount = 0;
+
+	private int burst;
+
+	/** 令牌数，预约了令牌的等待者会使其成为负数。 */
+	private double tokens;
+
+	private long refilledAt = System.nanoTime();
+
+	private long throttledAt = 0;
+
+	private long throttles = 0;
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param host  服务器网址。
+	 * @param path  服务接口路径。
+	 * @param rate  速率上限，即每秒请求数；为 {@link Double#POSITIVE_INFINITY} 时不设上限，速率从 429 响应中学习。
+	 * @param burst 最多积累的令牌数。
+	 */
+	public RateLimiter(String host, String path, double rate, int burst) {
+		if (!(rate > 0)) {
+			throw new IllegalArgumentException("rate");
+		}
+		if (burst < 1) {
+			throw new IllegalArgumentException("burst");
+		}
+		this.host = host;
+		this.path = path;
+		this.maxRate = rate;
+		this.rate = rate;
+		this.step = rate / 100;
+		this.burst = burst;
+		this.tokens = burst;
+	}
+
+	/**
+	 * 返回指定服务器、授权码和服务接口的限流器，新建的限流器使用默认的速率和令牌数。
+	 * 
+	 * @param host       服务器网址。
+	 * @param credential 授权码，或签名密钥的 key；未授权的请求为空字符串。
+	 * @param path       服务接口路径，例如 "/execute/Convert"。
+	 * @return 返回对应的限流器。
+	 */
+	public static RateLimiter forEndpoint(String host, String credential, String path) {
+		String key = host + " " + credential + " " + path;
+		RateLimiter limiter = limiters.get(key);
+
+		if (limiter == null) {
+			RateLimiter created = new RateLimiter(host, path, defaultRate, defaultBurst);
+
+			limiter = limiters.putIfAbsent(key, created);
+			if (limiter == null) {
+				limiter = created;
+			}
+		}
+		return limiter;
+	}
+
+	/**
+	 * 设置新建限流器的默认速率上限，通常与 API 市场套餐的 QPS 配额一致。已经创建的限流器不受影响。
+	 * 
+	 * @param rate  速率上限，即每秒请求数；为 {@link Double#POSITIVE_INFINITY} 时不设上限。
+	 * @param burst 最多积累的令牌数。
+	 */
+	public static void setDefaults(double rate, int burst) {
+		if (!(rate > 0)) {
+			throw new IllegalArgumentException("rate");
+		}
+		if (burst < 1) {
+			throw new IllegalArgumentException("burst");
+		}
+		defaultRate = rate;
+		defaultBurst = burst;
+	}
+
+	/**
+	 * 阻塞等待，直到得到一个令牌。
+	 * 
+	 * @throws YuntuException 调用线程在等待时被中断。
+	 */
+	public void acquire() throws YuntuException {
+		sleep(reserve(Long.MAX_VALUE));
+	}
+
+	/**
+	 * 在指定时间内等待一个令牌。如果在该时间内无法得到令牌，立即返回，不会等待。
+	 * 
+	 * @param timeout 最长等待时间。
+	 * @param unit    时间单位。
+	 * @return 得到令牌时返回 <code>true</code>。
+	 * @throws YuntuException 调用线程在等待时被中断。
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit unit) throws YuntuException {
+		long wait = reserve(unit.toNanos(timeout));
+
+		if (wait < 0) {
+			return false;
+		}
+		sleep(wait);
+		return true;
+	}
+
+	/**
+	 * 异步申请一个令牌，等待期间不占用线程。需要等待时，返回的 <code>CompletableFuture</code> 在 SDK 内部的线程池中完成，
+	 * 不带线程池添加的后续操作也在该线程池中执行，不占用公共线程池 <code>ForkJoinPool.commonPool()</code>。
+	 * 
+	 * @param timeout 最长等待时间。
+	 * @param unit    时间单位。
+	 * @return 返回一个 <code>CompletableFuture</code>，得到令牌时完成；在指定时间内无法得到令牌时，立即以
+	 *         {@link RateLimitExceededException}（状态码为 0，表示请求没有发送）异常结束。
+	 */
+	public CompletableFuture<Void> acquireAsync(long timeout, TimeUnit unit) {
+		long wait = reserve(unit.toNanos(timeout));
+
+		if (wait == 0) {
+			return CompletableFuture.completedFuture(null);
+		} else if (wait > 0) {
+			return Futures.delay(wait, TimeUnit.NANOSECONDS);
+		}
+
+		CompletableFuture<Void> rejected = new CompletableFuture<Void>();
+
+		rejected.completeExceptionally(newRejection());
+		return rejected;
+	}
+
+	/**
+	 * 返回令牌不足时使用的异常。请求没有发送，{@link RetryPolicy} 不会重试。
+	 * 
+	 * @return 令牌不足的异常。
+	 */
+	RateLimitExceededException newRejection() {
+		return new RateLimitExceededException(host, path, getRate());
+	}
+
+	/**
+	 * 预约一个令牌。
+	 * 
+	 * @param maxWait 最长等待时间，单位为纳秒。
+	 * @return 得到令牌之前需要等待的纳秒数；需要等待的时间超过 maxWait 时返回 -1，并且不预约令牌。
+	 */
+	private synchronized long reserve(long maxWait) {
+		long now = System.nanoTime();
+
+		if (rate == Double.POSITIVE_INFINITY) {
+			count(now);
+			return 0;
+		}
+		tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+		refilledAt = now;
+
+		long wait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate * 1e9);
+
+		if (wait > maxWait) {
+			return -1;
+		}
+		tokens--;
+		count(now);
+		return wait;
+	}
+
+	/**
+	 * 统计一个得到令牌的请求。
+	 */
+	private void count(long now) {
+		if (now - windowStart >= WINDOW) {
+			previousCount = now - windowStart < 2 * WINDOW ? windowCount : 0;
+			windowStart = now;
+			windowCount = 0;
+		}
+		windowCount++;
+	}
+
+	private static void sleep(long nanos) throws YuntuException {
+		if (nanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new YuntuException(e);
+			}
+		}
+	}
+
+	/**
+	 * 报告一个请求被网关以 HTTP 429 拒绝。速率降为此前一秒实际发送速率（不超过当前速率）的一半，积累的令牌被清空；
+	 * 一秒内的多个 429 响应只降低一次速率。
+	 */
+	public synchronized void onThrottled() {
+		long now = System.currentTimeMillis();
+
+		throttles++;
+		if (now - throttledAt >= THROTTLE_COOLDOWN) {
+			long nanos = System.nanoTime();
+			double sent = nanos - windowStart >= 2 * WINDOW ? 0 : Math.max(previousCount, windowCount);
+			double ceiling = Math.max(MIN_RATE, Math.min(rate, sent));
+
+			throttledAt = now;
+			rate = Math.min(maxRate, Math.max(MIN_RATE, ceiling / 2));
+			step = ceiling / 100;
+			tokens = Math.min(tokens, 0);
+			refilledAt = nanos;
+		}
+	}
+
+	/**
+	 * 报告一个请求成功，速率增加上一次收到 429 响应时实际速率的 1%，不超过设定的速率上限。
+	 */
+	public synchronized void onSuccess() {
+		if (rate < maxRate) {
+			rate = Math.min(maxRate, rate + step);
+		}
+	}
+
+	/**
+	 * 返回服务器网址。
+	 * 
+	 * @return 服务器网址。
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * 返回服务接口路径。
+	 * 
+	 * @return 服务接口路径。
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * 返回当前的速率，即每秒请求数。收到 429 响应后，当前速率可能低于设定的速率上限。
+	 * 
+	 * @return 当前的速率；不设上限且尚未收到 429 响应时为 {@link Double#POSITIVE_INFINITY}。
+	 */
+	public synchronized double getRate() {
+		return rate;
+	}
+
+	/**
+	 * 返回设定的速率上限，即每秒请求数。
+	 * 
+	 * @return 设定的速率上限；不设上限时为 {@link Double#POSITIVE_INFINITY}。
+	 */
+	public synchronized double getMaxRate() {
+		return maxRate;
+	}
+
+	/**
+	 * 设置速率上限，当前速率同时恢复为该速率。
+	 * 
+	 * @param rate 速率上限，即每秒请求数；为 {@link Double#POSITIVE_INFINITY} 时不设上限，速率重新从 429 响应中学习。
+	 */
+	public synchronized void setRate(double rate) {
+		if (!(rate > 0)) {
+			throw new IllegalArgumentException("rate");
+		}
+		this.maxRate = rate;
+		this.rate = rate;
+		this.step = rate / 100;
+		this.tokens = Math.min(tokens, burst);
+		this.refilledAt = System.nanoTime();
+	}
+
+	/**
+	 * 返回最多积累的令牌数。
+	 * 
+	 * @return 最多积累的令牌数。
+	 */
+	public synchronized int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * 设置最多积累的令牌数。
+	 * 
+	 * @param burst 最多积累的令牌数。
+	 */
+	public synchronized void setBurst(int burst) {
+		if (burst < 1) {
+			throw new IllegalArgumentException("burst");
+		}
+		this.burst = burst;
+		this.tokens = Math.min(tokens, burst);
+	}
+
+	/**
+	 * 返回收到的 429 响应数。
+	 * 
+	 * @return 收到的 429 响应数。
+	 */
+	public synchronized long getThrottles() {
+		return throttles;
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimiter[" + host + path + ", rate=" + getRate() + "/" + getMaxRate() + ", burst=" + getBurst()
+				+ "]";
+	}
+}
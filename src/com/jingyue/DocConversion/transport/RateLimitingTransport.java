@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.Deadline;
+import com.jingyue.DocConversion.internal.Futures;
+
+/**
+ * 按照 {@link RateLimiter} 限制 GET 请求速率的传输层，包装另一个传输层实现。
+ * <p>
+ * 每个（服务器、授权码、服务接口）组合使用一个限流器。令牌不足时，{@link #get(String, String, Map, Map)} 阻塞等待，
+ * {@link #getAsync(String, String, Map, Map)} 在令牌可用后才发送请求，等待期间不占用线程，等待结束后在 SDK 内部的线程池中发送；等待时间超过
+ * {@link #getMaxWait()} 的请求没有发送，立即以 {@link RateLimitExceededException} 失败，外层的 {@link RetryingTransport}
+ * 不会重试。默认不设速率上限，收到网关的 429 响应时，对应限流器才开始限速，见 {@link RateLimiter}。
+ * </p>
+ * <p>
+ * POST 请求用于上传文档，不受 API 市场的配额限制，不经过限流器。
+ * </p>
+ */
+public class RateLimitingTransport implements YuntuTransport {
+
+	/** 默认的最长等待时间，单位为毫秒。 */
+	public static final long DEFAULT_MAX_WAIT = 30 * 1000L;
+
+	private final YuntuTransport transport;
+
+	private final long maxWait;
+
+	/**
+	 * 用默认的最长等待时间 {@link #DEFAULT_MAX_WAIT} 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 */
+	public RateLimitingTransport(YuntuTransport transport) {
+		this(transport, DEFAULT_MAX_WAIT);
+	}
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 * @param maxWait   等待令牌的最长时间，单位为毫秒；为 0 时令牌不足的请求立即失败。
+	 */
+	public RateLimitingTransport(YuntuTransport transport, long maxWait) {
+		if (transport == null) {
+			throw new IllegalArgumentException("transport");
+		}
+		if (maxWait < 0) {
+			throw new IllegalArgumentException("maxWait");
+		}
+		this.transport = transport;
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * 返回实际发送请求的传输层。
+	 * 
+	 * @return 实际发送请求的传输层。
+	 */
+	public YuntuTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * 返回等待令牌的最长时间，单位为毫秒。
+	 * 
+	 * @return 最长等待时间。
+	 */
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * 返回请求使用的限流器。
+	 * 
+	 * @param host    服务器网址。
+	 * @param path    请求路径。
+	 * @param headers 请求头，可以为 <code>null</code>。
+	 * @param querys  查询参数，可以为 <code>null</code>。
+	 * @return 返回请求使用的限流器。
+	 */
+	public static RateLimiter getRateLimiter(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) {
+
+		return RateLimiter.forEndpoint(host, getCredential(headers, querys), path);
+	}
+
+	/**
+	 * 返回请求携带的授权码或签名密钥的 key。
+	 */
+	private static String getCredential(Map<String, String> headers, Map<String, String> querys) {
+		if (querys != null) {
+			if (querys.get("key") != null) {
+				return querys.get("key");
+			}
+			if (querys.get("yuntuKey") != null) {
+				return querys.get("yuntuKey");
+			}
+		}
+		if (headers != null) {
+			if (headers.get("Authorization") != null) {
+				return headers.get("Authorization");
+			}
+			if (headers.get("X-Bce-Signature") != null) {
+				return headers.get("X-Bce-Signature");
+			}
+		}
+		return "";
+	}
+
+	@Override
+	public String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException {
+
+		RateLimiter limiter = getRateLimiter(host, path, headers, querys);
+
+		if (!limiter.tryAcquire(Deadline.timeout(maxWait), TimeUnit.MILLISECONDS)) {
+			Deadline.check();
+			throw limiter.newRejection();
+		}
+		try {
+			String body = transport.get(host, path, headers, querys);
+
+			limiter.onSuccess();
+			return body;
+		} catch (YuntuException e) {
+			if (e.getStatusCode() == 429) {
+				limiter.onThrottled();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public CompletableFuture<String> getAsync(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) {
+
+		final RateLimiter limiter = getRateLimiter(host, path, headers, querys);
+
+		return Futures.thenCompose(limiter.acquireAsync(maxWait, TimeUnit.MILLISECONDS), granted -> {
+			CompletableFuture<String> response = transport.getAsync(host, path, headers, querys);
+
+			response.whenComplete((body, e) -> {
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+				if (cause == null) {
+					limiter.onSuccess();
+				} else if (cause instanceof YuntuException && ((YuntuException) cause).getStatusCode() == 429) {
+					limiter.onThrottled();
+				}
+			});
+			return response;
+		}, null);
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return transport.isAbortable();
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, contentLength, mimeType);
+	}
+
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		return transport.warmUp(host, connections);
+	}
+
+	@Override
+	public int warmUp(String host, int connections, boolean signed) throws YuntuException {
+		return transport.warmUp(host, connections, signed);
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.security.cert.CertificateException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+import com.jingyue.DocConversion.common.DeadlineExceededException;
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * 请求失败后的重试策略，由 {@link RetryingTransport} 使用。
+ * <p>
+ * 策略决定哪些失败可以重试、最多尝试几次、两次尝试之间等待多久，以及重试预算的大小：
+ * <ul>
+ * <li>网络错误（连接失败、超时、连接被重置等）和 HTTP 状态码 429、502、503、504 视为暂时性故障，可以重试；其他状态码（例如授权错误
+ * 401、403）、TLS 证书错误、URL 错误等视为永久性故障，立即失败；</li>
+ * <li>只有幂等的请求（查询转换状态、获取转换结果、获取上传授权）遇到暂时性故障时才重试。提交转换等非幂等的请求失败时，服务端可能已经执行了请求，
+ * 重试会重复提交，因此只在确定请求没有发出时（连接被拒绝、连接超时、域名解析失败）重试；</li>
+ * <li>等待时间采用去相关抖动（decorrelated jitter）的指数退避：每次等待的时间在基础等待时间和上一次等待时间的三倍之间随机选取，且不超过最大等待时间，
+ * 避免大量客户端在同一时刻重试；</li>
+ * <li>重试预算是一个令牌桶：每个请求存入 {@link #getBudgetRatio()} 个令牌，桶中最多保存 {@link #getBudgetCapacity()}
+ * 个令牌，每次重试取出一个令牌，令牌不足时不再重试。因此重试次数最多约为请求数的该比例，服务端出现故障时，重试不会成倍放大请求量。</li>
+ * </ul>
+ * 实例不可变，可以被多个 {@link RetryingTransport} 共享。
+ * </p>
+ */
+public class RetryPolicy {
+
+	/** 默认策略：最多尝试 3 次，等待 100 毫秒至 5 秒，重试次数不超过请求数的 10%。 */
+	public static final RetryPolicy DEFAULT = new RetryPolicy(3, 100, 5000, 0.1, 10);
+
+	/** 不重试的策略。 */
+	public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0, 0);
+
+	private final int maxAttempts;
+
+	private final long baseDelay;
+
+	private final long maxDelay;
+
+	private final double budgetRatio;
+
+	private final int budgetCapacity;
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param maxAttempts    每个请求最多尝试的次数，包括第一次请求，至少为 1。
+	 * @param baseDelay      基础等待时间，单位为毫秒。
+	 * @param maxDelay       最大等待时间，单位为毫秒，不小于基础等待时间。
+	 * @param budgetRatio    每个请求存入重试预算的令牌数，即重试次数占请求数的最大比例。
+	 * @param budgetCapacity 重试预算最多保存的令牌数，即允许连续重试的次数。
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, double budgetRatio, int budgetCapacity) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts");
+		}
+		if (baseDelay < 0 || maxDelay < baseDelay) {
+			throw new IllegalArgumentException("delay");
+		}
+		if (budgetRatio < 0 || budgetCapacity < 0) {
+			throw new IllegalArgumentException("budget");
+		}
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.budgetRatio = budgetRatio;
+		this.budgetCapacity = budgetCapacity;
+	}
+
+	/**
+	 * 返回每个请求最多尝试的次数，包括第一次请求。
+	 * 
+	 * @return 最多尝试的次数。
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * 返回基础等待时间，单位为毫秒。
+	 * 
+	 * @return 基础等待时间。
+	 */
+	public long getBaseDelay() {
+		return baseDelay;
+	}
+
+	/**
+	 * 返回最大等待时间，单位为毫秒。
+	 * 
+	 * @return 最大等待时间。
+	 */
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	/**
+	 * 返回每个请求存入重试预算的令牌数。
+	 * 
+	 * @return 每个请求存入的令牌数。
+	 */
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	/**
+	 * 返回重试预算最多保存的令牌数。
+	 * 
+	 * @return 最多保存的令牌数。
+	 */
+	public int getBudgetCapacity() {
+		return budgetCapacity;
+	}
+
+	/**
+	 * 判断返回指定 HTTP 状态码的请求是否可以重试。
+	 * 
+	 * @param statusCode HTTP 状态码。
+	 * @return 状态码为 429、502、503 或 504 时返回 <code>true</code>。
+	 */
+	public boolean isRetryable(int statusCode) {
+		return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+
+	/**
+	 * 判断导致请求失败的异常是否表示暂时性故障。
+	 * 
+	 * @param e 请求失败的异常。
+	 * @return 可以重试时返回 <code>true</code>。
+	 */
+	public boolean isRetryable(Throwable e) {
+		while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+			e = e.getCause();
+		}
+		if (e instanceof DeadlineExceededException) {
+			return false;
+		}
+		if (e instanceof YuntuException && ((YuntuException) e).getStatusCode() != 0) {
+			return isRetryable(((YuntuException) e).getStatusCode());
+		}
+
+		boolean io = false;
+
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SSLHandshakeException || cause instanceof SSLPeerUnverifiedException
+					|| cause instanceof CertificateException || cause instanceof MalformedURLException) {
+				return false;
+			}
+			io |= cause instanceof IOException;
+		}
+		return io;
+	}
+
+	/**
+	 * 判断对指定路径的请求失败后能否重试：幂等的请求遇到暂时性故障时可以重试，非幂等的请求只在确定没有发出时重试。
+	 * 
+	 * @param path 请求路径。
+	 * @param e    请求失败的异常。
+	 * @return 可以重试时返回 <code>true</code>。
+	 * @see #isIdempotent(String)
+	 */
+	public boolean isRetryable(String path, Throwable e) {
+		return isRetryable(e) && (isIdempotent(path) || isNotSent(e));
+	}
+
+	/**
+	 * 判断指定路径的请求是否幂等，即重复发送与发送一次的效果相同。
+	 * 
+	 * @param path 请求路径。
+	 * @return 查询转换状态（QueryStatus）、获取转换结果（GetOutputResult）和获取上传授权（UploadFileAction）的请求返回
+	 *         <code>true</code>；提交转换（Convert）等其他请求返回 <code>false</code>。
+	 */
+	public boolean isIdempotent(String path) {
+		return "/execute/QueryStatus".equals(path) || "/execute/GetOutputResult".equals(path)
+				|| "/execute/UploadFileAction".equals(path);
+	}
+
+	/**
+	 * 判断请求是否在发出之前就已失败，即服务端一定没有收到请求：连接被拒绝、无法路由、域名解析失败、连接超时或等待连接池超时。
+	 * 
+	 * @param e 请求失败的异常。
+	 * @return 请求一定没有发出时返回 <code>true</code>。
+	 */
+	public static boolean isNotSent(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConnectException || cause instanceof NoRouteToHostException
+					|| cause instanceof UnknownHostException || cause instanceof ConnectTimeoutException
+					|| cause instanceof ConnectionPoolTimeoutException
+					|| cause instanceof HttpConnectTimeoutException) {
+				return true;
+			}
+			// HttpURLConnection reports a connect timeout as a SocketTimeoutException.
+			if (cause instanceof SocketTimeoutException && cause.getMessage() != null
+					&& cause.getMessage().toLowerCase().startsWith("connect timed out")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 计算下一次重试前的等待时间。
+	 * 
+	 * @param previousDelay 上一次重试前的等待时间，第一次重试时为 0。
+	 * @return 等待时间，单位为毫秒。
+	 */
+	public long nextDelay(long previousDelay) {
+		long upper = Math.min(maxDelay, Math.max(baseDelay, previousDelay) * 3);
+
+		if (upper <= baseDelay) {
+			return baseDelay;
+		}
+		return ThreadLocalRandom.current().nextLong(baseDelay, upper + 1);
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy[maxAttempts=" + maxAttempts + ", delay=" + baseDelay + "-" + maxDelay + "ms, budget="
+				+ budgetRatio + "/" + budgetCapacity + "]";
+	}
+}
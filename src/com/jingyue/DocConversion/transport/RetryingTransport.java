@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jingyue.DocConversion.common.YuntuException;
+import com.jingyue.DocConversion.internal.Deadline;
+import com.jingyue.DocConversion.internal.Futures;
+
+/**
+ * 按照 {@link RetryPolicy} 自动重试失败请求的传输层，包装另一个传输层实现。
+ * <p>
+ * 幂等的 GET 请求遇到暂时性故障（网络错误、HTTP 429、502、503、504）时，等待一段带随机抖动的时间后重新发送；遇到永久性故障时立即失败。
+ * 提交转换等非幂等的请求只在确定没有发出时重试，见 {@link RetryPolicy#isRetryable(String, Throwable)}。
+ * 所有经过同一实例的请求共用一个重试预算，服务端持续故障时，预算耗尽后的请求不再重试，直接失败。
+ * {@link #getAsync(String, String, Map, Map)} 的等待不占用线程，等待结束后在指定的线程池中重新发送请求，不占用公共线程池
+ * <code>ForkJoinPool.commonPool()</code>。
+ * </p>
+ * <p>
+ * POST 请求的内容是只能读取一次的数据流，因此不会重试。
+ * </p>
+ */
+public class RetryingTransport implements YuntuTransport {
+
+	private final YuntuTransport transport;
+
+	private final RetryPolicy policy;
+
+	private final Executor executor;
+
+	/** 重试预算中的令牌数。 */
+	private double tokens;
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private final AtomicLong retries = new AtomicLong();
+
+	private final AtomicLong rejectedRetries = new AtomicLong();
+
+	/**
+	 * 用默认的重试策略 {@link RetryPolicy#DEFAULT} 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 */
+	public RetryingTransport(YuntuTransport transport) {
+		this(transport, RetryPolicy.DEFAULT);
+	}
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 * @param policy    重试策略。
+	 */
+	public RetryingTransport(YuntuTransport transport, RetryPolicy policy) {
+		this(transport, policy, Futures.getExecutor());
+	}
+
+	/**
+	 * 构造函数。
+	 * 
+	 * @param transport 实际发送请求的传输层。
+	 * @param policy    重试策略。
+	 * @param executor  异步请求等待结束后用于重新发送请求的线程池。被包装的传输层的
+	 *                  {@link YuntuTransport#getAsync(String, String, Map, Map)} 可能阻塞，线程池应能容纳同时重试的请求；
+	 *                  默认使用 SDK 内部的线程池，空闲的线程会退出。
+	 */
+	public RetryingTransport(YuntuTransport transport, RetryPolicy policy, Executor executor) {
+		if (transport == null) {
+			throw new IllegalArgumentException("transport");
+		}
+		if (policy == null) {
+			throw new IllegalArgumentException("policy");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("executor");
+		}
+		this.transport = transport;
+		this.policy = policy;
+		this.executor = executor;
+		this.tokens = policy.getBudgetCapacity();
+	}
+
+	/**
+	 * 返回实际发送请求的传输层。
+	 * 
+	 * @return 实际发送请求的传输层。
+	 */
+	public YuntuTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * 返回重试策略。
+	 * 
+	 * @return 重试策略。
+	 */
+	public RetryPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * 返回经过该实例的 GET 请求数，不包括重试。
+	 * 
+	 * @return 请求数。
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * 返回重试的次数。
+	 * 
+	 * @return 重试的次数。
+	 */
+	public long getRetries() {
+		return retries.get();
+	}
+
+	/**
+	 * 返回因重试预算耗尽而放弃重试的次数。
+	 * 
+	 * @return 放弃重试的次数。
+	 */
+	public long getRejectedRetries() {
+		return rejectedRetries.get();
+	}
+
+	@Override
+	public String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException {
+
+		deposit();
+
+		long delay = 0;
+
+		for (int attempt = 1;; attempt++) {
+			try {
+				return transport.get(host, path, headers, copy(querys));
+			} catch (YuntuException e) {
+				long next = policy.nextDelay(delay);
+
+				if (!Deadline.allows(next) || !canRetry(path, e, attempt)) {
+					throw e;
+				}
+				delay = next;
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	@Override
+	public CompletableFuture<String> getAsync(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) {
+
+		deposit();
+		return getAsync(host, path, headers, querys, 1, 0);
+	}
+
+	private CompletableFuture<String> getAsync(final String host, final String path,
+			final Map<String, String> headers, final Map<String, String> querys, final int attempt,
+			final long delay) {
+
+		return Futures.compose(transport.getAsync(host, path, headers, copy(querys)), (body, e) -> {
+			if (e == null) {
+				return CompletableFuture.completedFuture(body);
+			}
+
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+			if (!canRetry(path, cause, attempt)) {
+				CompletableFuture<String> failed = new CompletableFuture<String>();
+
+				failed.completeExceptionally(cause);
+				return failed;
+			}
+
+			long next = policy.nextDelay(delay);
+
+			return Futures.thenCompose(Futures.delay(next, TimeUnit.MILLISECONDS, executor),
+					waited -> getAsync(host, path, headers, querys, attempt + 1, next), null);
+		}, null);
+	}
+
+	@Override
+	public boolean isAbortable() {
+		return transport.isAbortable();
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, mimeType);
+	}
+
+	@Override
+	public String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		return transport.post(host, path, headers, querys, inStream, contentLength, mimeType);
+	}
+
+	@Override
+	public int warmUp(String host, int connections) throws YuntuException {
+		return transport.warmUp(host, connections);
+	}
+
+	@Override
+	public int warmUp(String host, int connections, boolean signed) throws YuntuException {
+		return transport.warmUp(host, connections, signed);
+	}
+
+	/**
+	 * 判断第 attempt 次尝试失败后能否重试；可以重试时从预算中取出一个令牌。
+	 */
+	private boolean canRetry(String path, Throwable e, int attempt) {
+		if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(path, e)) {
+			return false;
+		}
+		if (!withdraw()) {
+			rejectedRetries.incrementAndGet();
+			return false;
+		}
+		retries.incrementAndGet();
+		return true;
+	}
+
+	private synchronized void deposit() {
+		requests.incrementAndGet();
+		tokens = Math.min(policy.getBudgetCapacity(), tokens + policy.getBudgetRatio());
+	}
+
+	private synchronized boolean withdraw() {
+		if (tokens < 1) {
+			return false;
+		}
+		tokens--;
+		return true;
+	}
+
+	/**
+	 * 签名请求会从查询参数中取走 "key" 和 "secret"，因此每次尝试都使用一份副本。
+	 */
+	private static Map<String, String> copy(Map<String, String> querys) {
+		return querys == null ? null : new HashMap<String, String>(querys);
+	}
+}
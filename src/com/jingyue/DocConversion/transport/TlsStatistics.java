@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTPS 连接的 TLS 握手统计。
+ * <p>
+ * SDK 建立的所有 HTTPS 连接共用一个 TLS 会话缓存，新连接可以恢复之前协商的会话，省去完整握手的往返和密钥交换开销。
+ * {@link #getResumptionRatio()} 是恢复会话的握手占全部握手的比例。<code>HttpURLConnection</code>、
+ * {@link HttpClientTransport} 和零拷贝上传的握手都会被统计；{@link JdkHttpTransport} 同样使用共享的会话缓存，但其握手不在统计范围内。
+ * </p>
+ */
+public class TlsStatistics {
+
+	private static final AtomicLong handshakes = new AtomicLong();
+
+	private static final AtomicLong resumedHandshakes = new AtomicLong();
+
+	private TlsStatistics() {
+	}
+
+	/**
+	 * 记录一次完成的握手。自定义的传输层实现也可以调用该方法。
+	 *
+	 * @param resumed 该握手是否恢复了之前的会话。
+	 */
+	public static void record(boolean resumed) {
+		handshakes.incrementAndGet();
+		if (resumed) {
+			resumedHandshakes.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 返回完成的握手次数。
+	 *
+	 * @return 完成的握手次数。
+	 */
+	public static long getHandshakes() {
+		return handshakes.get();
+	}
+
+	/**
+	 * 返回恢复会话的握手次数。
+	 *
+	 * @return 恢复会话的握手次数。
+	 */
+	public static long getResumedHandshakes() {
+		return resumedHandshakes.get();
+	}
+
+	/**
+	 * 返回完整握手的次数。
+	 *
+	 * @return 完整握手的次数。
+	 */
+	public static long getFullHandshakes() {
+		return getHandshakes() - getResumedHandshakes();
+	}
+
+	/**
+	 * 返回恢复会话的握手占全部握手的比例。
+	 *
+	 * @return 恢复会话的比例，介于 0 和 1 之间；尚无握手时返回 0。
+	 */
+	public static double getResumptionRatio() {
+		long total = handshakes.get();
+
+		return total == 0 ? 0 : (double) resumedHandshakes.get() / total;
+	}
+}
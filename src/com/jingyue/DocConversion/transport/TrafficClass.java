@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+/**
+ * 请求的流量类别。
+ * <p>
+ * 每个类别使用独立的连接池和并发限制（舱壁隔离），互不争用：大量上传大文件时，查询转换状态等控制请求仍然可以立即得到连接，
+ * 响应时间不受影响。每个类别的最大并发数可以通过
+ * {@link com.jingyue.DocConversion.Converter#setMaxConnections(TrafficClass, int)} 分别设置。
+ * </p>
+ */
+public enum TrafficClass {
+
+	/** 上传文档：获取上传授权、上传文档到 OSS，以及所有 POST 请求。每个主机默认最多 4 个并发请求。 */
+	UPLOAD(4),
+
+	/** 转换控制：提交转换（Convert）、查询转换状态（QueryStatus）等请求。每个主机默认最多 20 个并发请求。 */
+	CONTROL(20),
+
+	/** 获取结果：获取转换结果（GetOutputResult）的请求。每个主机默认最多 20 个并发请求。 */
+	OUTPUT(20);
+
+	private final int defaultMaxConnections;
+
+	private TrafficClass(int defaultMaxConnections) {
+		this.defaultMaxConnections = defaultMaxConnections;
+	}
+
+	/**
+	 * 返回每个主机默认的最大并发请求数。
+	 * 
+	 * @return 默认的最大并发请求数。
+	 */
+	public int getDefaultMaxConnections() {
+		return defaultMaxConnections;
+	}
+
+	/**
+	 * 返回 GET 请求的流量类别。POST 请求总是属于 {@link #UPLOAD}。
+	 * 
+	 * @param path 请求路径。
+	 * @return 请求的流量类别。
+	 */
+	public static TrafficClass of(String path) {
+		if ("/execute/GetOutputResult".equals(path)) {
+			return OUTPUT;
+		} else if ("/execute/UploadFileAction".equals(path)) {
+			return UPLOAD;
+		}
+		return CONTROL;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按服务接口统计的响应流量，例如 "/execute/GetOutputResult"。
+ * <p>
+ * 传输层会在请求头中发送 <code>Accept-Encoding: gzip, deflate</code>，并以流的方式解压响应内容。
+ * {@link #getWireBytes()} 是网络上实际收到的字节数，{@link #getDecodedBytes()} 是解压后的字节数，二者之差即压缩节省的流量。
+ * </p>
+ */
+public class TrafficStatistics {
+
+	private static final ConcurrentMap<String, TrafficStatistics> endpoints = new ConcurrentHashMap<String, TrafficStatistics>();
+
+	private final String endpoint;
+
+	private final AtomicLong responses = new AtomicLong();
+
+	private final AtomicLong compressedResponses = new AtomicLong();
+
+	private final AtomicLong wireBytes = new AtomicLong();
+
+	private final AtomicLong decodedBytes = new AtomicLong();
+
+	private TrafficStatistics(String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	/**
+	 * 返回指定服务接口的流量统计。
+	 * 
+	 * @param endpoint 服务接口路径，例如 "/execute/QueryStatus"。
+	 * @return 返回指定服务接口的流量统计。
+	 */
+	public static TrafficStatistics forEndpoint(String endpoint) {
+		TrafficStatistics statistics = endpoints.get(endpoint);
+
+		if (statistics == null) {
+			TrafficStatistics created = new TrafficStatistics(endpoint);
+
+			statistics = endpoints.putIfAbsent(endpoint, created);
+			if (statistics == null) {
+				statistics = created;
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * 返回所有服务接口的流量统计。
+	 * 
+	 * @return 以服务接口路径为键的流量统计。
+	 */
+	public static Map<String, TrafficStatistics> getAll() {
+		return Collections.unmodifiableMap(new TreeMap<String, TrafficStatistics>(endpoints));
+	}
+
+	/**
+	 * 记录一个响应的流量。自定义的传输层实现也可以调用该方法。
+	 * 
+	 * @param wire       网络上实际收到的字节数。
+	 * @param decoded    解压后的字节数。
+	 * @param compressed 响应内容是否经过压缩。
+	 */
+	public void record(long wire, long decoded, boolean compressed) {
+		responses.incrementAndGet();
+		if (compressed) {
+			compressedResponses.incrementAndGet();
+		}
+		wireBytes.addAndGet(wire);
+		decodedBytes.addAndGet(decoded);
+	}
+
+	/**
+	 * 返回服务接口路径。
+	 * 
+	 * @return 服务接口路径。
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * 返回收到的响应数。
+	 * 
+	 * @return 收到的响应数。
+	 */
+	public long getResponses() {
+		return responses.get();
+	}
+
+	/**
+	 * 返回经过压缩的响应数。
+	 * 
+	 * @return 经过压缩的响应数。
+	 */
+	public long getCompressedResponses() {
+		return compressedResponses.get();
+	}
+
+	/**
+	 * 返回网络上实际收到的响应字节数。
+	 * 
+	 * @return 网络上实际收到的响应字节数。
+	 */
+	public long getWireBytes() {
+		return wireBytes.get();
+	}
+
+	/**
+	 * 返回解压后的响应字节数。
+	 * 
+	 * @return 解压后的响应字节数。
+	 */
+	public long getDecodedBytes() {
+		return decodedBytes.get();
+	}
+
+	/**
+	 * 返回压缩节省的字节数。
+	 * 
+	 * @return 压缩节省的字节数。
+	 */
+	public long getSavedBytes() {
+		return getDecodedBytes() - getWireBytes();
+	}
+
+	@Override
+	public String toString() {
+		return endpoint + ": responses=" + getResponses() + ", compressed=" + getCompressedResponses() + ", wire="
+				+ getWireBytes() + ", decoded=" + getDecodedBytes();
+	}
+}
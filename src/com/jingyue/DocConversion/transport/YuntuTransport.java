@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.jingyue.DocConversion.transport;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.jingyue.DocConversion.common.YuntuException;
+
+/**
+ * 访问九云图服务时使用的 HTTP 传输层。
+ * <p>
+ * <code>Converter</code> 通过该接口发送所有请求，可以用
+ * {@link com.jingyue.DocConversion.Converter#setTransport(YuntuTransport)}
+ * 替换为不同的实现。内置的实现包括：
+ * <ul>
+ * <li>{@link LegacyTransport} - 授权码请求使用 <code>HttpURLConnection</code>，签名请求使用连接池；<code>Converter</code>
+ * 默认使用该实现，并依次用 {@link CircuitBreakingTransport}、{@link RateLimitingTransport} 和 {@link RetryingTransport}
+ * 包装；</li>
+ * <li>{@link HttpClientTransport} - 所有请求均使用 Apache HttpClient 连接池；</li>
+ * <li>{@link JdkHttpTransport} - 使用 JDK 11 及以上版本提供的 <code>java.net.http.HttpClient</code>，支持非阻塞 I/O 和
+ * HTTP/2；</li>
+ * <li>{@link RetryingTransport} - 包装另一个实现，按照 {@link RetryPolicy} 自动重试暂时性故障；</li>
+ * <li>{@link CircuitBreakingTransport} - 包装另一个实现，主机故障时按照 {@link CircuitBreaker} 快速失败；</li>
+ * <li>{@link RateLimitingTransport} - 包装另一个实现，按照 {@link RateLimiter} 限制请求速率；</li>
+ * <li>{@link ConcurrencyLimitingTransport} - 包装另一个实现，按照 {@link ConcurrencyLimiter} 自适应限制并发请求数，默认不使用；</li>
+ * <li>{@link HedgingTransport} - 包装另一个实现，查询状态和获取结果的请求迟迟没有响应时发送对冲请求，降低尾延迟。</li>
+ * </ul>
+ * 实现类必须是线程安全的，同一个实例可以被多个 <code>Converter</code> 共享。
+ * </p>
+ */
+public interface YuntuTransport {
+
+	/**
+	 * 发送 HTTP GET 请求。如果查询参数中包含 "key" 和 "secret"，请求需要经过 API 网关签名。
+	 * 
+	 * @param host    服务器网址。
+	 * @param path    请求路径。
+	 * @param headers 请求头，可以为 <code>null</code>。
+	 * @param querys  查询参数，可以为 <code>null</code>。
+	 * @return 返回响应内容。
+	 * @throws YuntuException 请求失败。
+	 */
+	String get(String host, String path, Map<String, String> headers, Map<String, String> querys)
+			throws YuntuException;
+
+	/**
+	 * 异步发送 HTTP GET 请求。请求失败时，返回的 <code>CompletableFuture</code> 以
+	 * <code>YuntuException</code> 异常结束。
+	 * <p>
+	 * 默认实现在调用线程中同步调用 {@link #get(String, String, Map, Map)}。支持非阻塞 I/O 的实现应覆盖该方法，
+	 * 例如 {@link JdkHttpTransport}。
+	 * </p>
+	 * 
+	 * @param host    服务器网址。
+	 * @param path    请求路径。
+	 * @param headers 请求头，可以为 <code>null</code>。
+	 * @param querys  查询参数，可以为 <code>null</code>。
+	 * @return 返回一个 <code>CompletableFuture</code>，完成时包含响应内容。
+	 */
+	default CompletableFuture<String> getAsync(String host, String path, Map<String, String> headers,
+			Map<String, String> querys) {
+
+		CompletableFuture<String> future = new CompletableFuture<String>();
+
+		try {
+			future.complete(get(host, path, headers, querys));
+		} catch (YuntuException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * 返回 {@link #getAsync(String, String, Map, Map)} 能否中止：等待响应时不占用线程，并且取消返回的
+	 * <code>CompletableFuture</code> 会中止请求，归还其占用的连接和许可。{@link HedgingTransport} 只对可以中止的传输层对冲请求。
+	 * <p>
+	 * 默认实现返回 <code>false</code>。包装另一个实现的传输层应返回被包装传输层的结果，并把取消传递给被包装传输层的请求。
+	 * </p>
+	 * 
+	 * @return 异步请求可以中止时返回 <code>true</code>。
+	 */
+	default boolean isAbortable() {
+		return false;
+	}
+
+	/**
+	 * 发送 HTTP POST 请求。
+	 * 
+	 * @param host     服务器网址。
+	 * @param path     请求路径。
+	 * @param headers  请求头，可以为 <code>null</code>。
+	 * @param querys   查询参数，可以为 <code>null</code>。
+	 * @param inStream 请求内容，发送完成后会被关闭。
+	 * @param mimeType 请求内容的 MIME 类型。
+	 * @return 返回响应内容。
+	 * @throws YuntuException 请求失败。
+	 */
+	String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, String mimeType) throws YuntuException;
+
+	/**
+	 * 发送 HTTP POST 请求，并指定请求内容的长度。请求内容以流的方式发送，不会整体读入内存。
+	 * <p>
+	 * 默认实现忽略长度，调用 {@link #post(String, String, Map, Map, InputStream, String)}。
+	 * </p>
+	 * 
+	 * @param host          服务器网址。
+	 * @param path          请求路径。
+	 * @param headers       请求头，可以为 <code>null</code>。
+	 * @param querys        查询参数，可以为 <code>null</code>。
+	 * @param inStream      请求内容，发送完成后会被关闭。
+	 * @param contentLength 请求内容的字节数，未知时为 -1。
+	 * @param mimeType      请求内容的 MIME 类型。
+	 * @return 返回响应内容。
+	 * @throws YuntuException 请求失败。
+	 */
+	default String post(String host, String path, Map<String, String> headers, Map<String, String> querys,
+			InputStream inStream, long contentLength, String mimeType) throws YuntuException {
+
+		return post(host, path, headers, querys, inStream, mimeType);
+	}
+
+	/**
+	 * 预先建立到指定主机的 keep-alive 连接，之后的请求可以直接复用，不必再进行 TCP 和 TLS 握手。
+	 * <p>
+	 * 默认实现不建立任何连接，返回 0。
+	 * </p>
+	 * 
+	 * @param host        服务器网址。
+	 * @param connections 希望建立的连接数，最多为
+	 *                    {@link com.jingyue.DocConversion.Converter#getMaxConnectionsPerHost()}。
+	 * @return 返回可供复用的连接数。
+	 * @throws YuntuException 无法连接服务器。
+	 */
+	default int warmUp(String host, int connections) throws YuntuException {
+		return 0;
+	}
+
+	/**
+	 * 预先建立到指定主机的 keep-alive 连接，供签名请求或授权码请求复用。两种请求可能经由不同的连接发送，只应建立之后的请求实际会使用的连接。
+	 * <p>
+	 * 默认实现调用 {@link #warmUp(String, int)}。
+	 * </p>
+	 * 
+	 * @param host        服务器网址。
+	 * @param connections 希望建立的连接数，最多为
+	 *                    {@link com.jingyue.DocConversion.Converter#getMaxConnectionsPerHost()}。
+	 * @param signed      之后的请求是否签名（使用 AppKey 和 AppSecret），否则使用授权码。
+	 * @return 返回可供这些请求复用的连接数。
+	 * @throws YuntuException 无法连接服务器。
+	 */
+	default int warmUp(String host, int connections, boolean signed) throws YuntuException {
+		return warmUp(host, connections);
+	}
+}